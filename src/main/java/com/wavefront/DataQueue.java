@@ -1,53 +1,423 @@
 package com.wavefront;
 
+import com.wavefront.datastructures.RingBuffer;
+import com.wavefront.datastructures.RingBuffer.WaitStrategy;
 import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.SpanDictionary;
+import com.wavefront.datastructures.SpanRecordQueue;
+import com.wavefront.datastructures.SpanSpill;
 import com.wavefront.datastructures.Trace;
+import com.wavefront.datastructures.TraceRecipe;
+import com.wavefront.datastructures.TraceRecipeQueue;
+import com.wavefront.helpers.RateLimitedLogger;
 
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * A thread-safe data queue where Generators add traces/spans and from which Senders pick them up.
+ * For real time sending spans are kept in a bounded lock-free {@link RingBuffer}, so generators
+ * are throttled by the sender when the buffer is full. For saving to file the whole output is
+ * generated before it is written, so an unbounded queue is used instead.
+ * <p>
+ * The bounded queue can be split into shards, one per sender worker. Spans are sharded by the
+ * trace UUID, so all spans of a trace are sent by the same worker.
+ * <p>
+ * The bounded queue can keep spans off the heap, as binary records in {@link SpanRecordQueue}s
+ * of direct buffers. Names, tag keys, rendered tags and line templates are shared by all shards
+ * through a {@link SpanDictionary}, and spans are decoded when they are taken, so the heap only
+ * holds the spans being generated and sent.
+ * <p>
+ * The bounded queue can spill over to disk, see {@link #setSpill(File, int)}: spans which don't
+ * fit into the shard are written to its {@link SpanSpill} instead of waiting, and are read back
+ * after the spans kept in memory.
+ * <p>
+ * The queue can keep {@link TraceRecipe}s instead of spans, see {@link #setLazyTraces()}:
+ * generators add recipes of the traces, and spans are materialized when the senders take them.
+ * <p>
+ * Generators can be kept within a horizon of the senders, see {@link #setHorizon(long, int)}:
+ * senders report the spans they are done with, and generators wait while they are too far ahead,
+ * so the spans in flight are bounded by the rate and the horizon rather than by the heap.
  *
  * @author Davit Baghdasaryan (dbagdasarya@vmware.com)
  */
 @ThreadSafe
 public class DataQueue {
-  private final LinkedList<Span> spanQueue = new LinkedList<>();
-  private final LinkedList<Trace> traceQueue = new LinkedList<>();
+  private static final Logger LOGGER = Logger.getLogger(DataQueue.class.getCanonicalName());
+  private static final long MIN_HORIZON_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long MAX_HORIZON_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private static final long SPILL_FAILURE_LOG_INTERVAL_MILLIS = 5_000;
+  private static final long MAX_RECORDS_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int RECORDS_SEGMENT_SIZE = 1024 * 1024;
+  private static final int MAX_DICTIONARY_ENTRIES = 1 << 16;
+  private final RateLimitedLogger spillFailureLogger =
+      new RateLimitedLogger(LOGGER, SPILL_FAILURE_LOG_INTERVAL_MILLIS);
+  private final List<RingBuffer<Span>> spanRings = new ArrayList<>();
+  /**
+   * Shards of the bounded queue kept off the heap, used instead of the rings.
+   */
+  private final List<SpanRecordQueue> spanRecords = new ArrayList<>();
+  /**
+   * Spills of the shards, empty if spilling is off.
+   */
+  private final List<SpanSpill> spanSpills = new ArrayList<>();
+  /**
+   * Recipes of the shards, used instead of everything else if traces are lazy.
+   */
+  private final List<TraceRecipeQueue> recipeQueues = new ArrayList<>();
+  @Nullable
+  private final Queue<Span> unboundedSpanQueue;
+  private final Queue<Trace> traceQueue = new ConcurrentLinkedQueue<>();
   private final AtomicInteger traceCount = new AtomicInteger(0);
   private final AtomicInteger spanCount = new AtomicInteger(0);
-  private boolean keepTraces;
+  private final boolean keepTraces;
+  private final int shardCapacity;
+  private final WaitStrategy waitStrategy;
+  private long maxAheadNanos = 0;
+  private int maxAheadSpans = 0;
+  private boolean heapThrottling = false;
+  /**
+   * Spans the senders are done with, sent or given up.
+   */
+  private final LongAdder releasedSpans = new LongAdder();
+  /**
+   * Clock of the senders: the latest intended sending moment of the released spans.
+   */
+  private final AtomicLong sendersNanos = new AtomicLong(System.nanoTime());
 
   /**
-   * DataQueue constructor.
+   * DataQueue constructor for the unbounded queue.
    *
    * @param keepTraces If true, traces will be stored for saving to file.
    */
-  DataQueue(boolean keepTraces) {
+  public DataQueue(boolean keepTraces) {
+    this(keepTraces, 0, WaitStrategy.BLOCKING, 1);
+  }
+
+  /**
+   * DataQueue constructor.
+   *
+   * @param keepTraces   If true, traces will be stored for saving to file.
+   * @param capacity     Maximal number of spans in the queue. If it is not positive the queue is
+   *                     unbounded.
+   * @param waitStrategy Strategy of waiting for generators when the queue is full.
+   * @param shards       Number of shards of the bounded queue, the capacity is split between
+   *                     them. The unbounded queue always has a single shard.
+   */
+  DataQueue(boolean keepTraces, int capacity, @Nonnull WaitStrategy waitStrategy, int shards) {
+    this(keepTraces, capacity, waitStrategy, shards, false);
+  }
+
+  /**
+   * DataQueue constructor.
+   *
+   * @param keepTraces   If true, traces will be stored for saving to file.
+   * @param capacity     Maximal number of spans in the queue. If it is not positive the queue is
+   *                     unbounded.
+   * @param waitStrategy Strategy of waiting for generators when the queue is full.
+   * @param shards       Number of shards of the bounded queue, the capacity is split between
+   *                     them. The unbounded queue always has a single shard.
+   * @param offHeap      If true, the bounded queue keeps spans off the heap as binary records.
+   */
+  DataQueue(boolean keepTraces, int capacity, @Nonnull WaitStrategy waitStrategy, int shards,
+            boolean offHeap) {
     this.keepTraces = keepTraces;
+    this.waitStrategy = waitStrategy;
+    if (capacity > 0) {
+      this.shardCapacity = Math.max(1, capacity / Math.max(1, shards));
+      final SpanDictionary dictionary = offHeap ? new SpanDictionary(MAX_DICTIONARY_ENTRIES) : null;
+      for (int n = 0; n < Math.max(1, shards); n++) {
+        if (offHeap) {
+          spanRecords.add(SpanRecordQueue.offHeap(RECORDS_SEGMENT_SIZE, dictionary));
+        } else {
+          spanRings.add(new RingBuffer<>(shardCapacity, waitStrategy));
+        }
+      }
+      this.unboundedSpanQueue = null;
+    } else {
+      this.shardCapacity = 0;
+      this.unboundedSpanQueue = new LinkedBlockingQueue<>();
+    }
   }
 
+  /**
+   * Adds all spans of the trace to the queue. If the queue is bounded and full, waits while the
+   * senders free enough space, unless the spans can be spilled over to disk.
+   *
+   * @param trace Trace to be added.
+   */
   public void addTrace(Trace trace) {
     if (trace == null) {
       return;
     }
 
-    synchronized (spanQueue) {
-      if (keepTraces) {
-        traceQueue.add(trace);
+    if (keepTraces) {
+      traceQueue.add(trace);
+    }
+    final long queuedNanos = System.nanoTime();
+    if (!recipeQueues.isEmpty()) {
+      // The trace is already materialized, but the generator may still add spans to it, like to
+      // the statistics trace, so only the spans added so far are queued.
+      final Trace added = new Trace(trace.getLevels(), trace.getTraceUUID());
+      for (int level = 0; level < trace.getSpans().size(); level++) {
+        for (Span span : trace.getSpans().get(level)) {
+          span.setQueuedNanos(queuedNanos);
+          added.add(level, span);
+        }
       }
-      trace.getSpans().forEach(spans -> {
-        spanQueue.addAll(spans);
+      addRecipe(added);
+      return;
+    }
+    final int shard = getShard(trace.getTraceUUID());
+    final RingBuffer<Span> spanRing = spanRings.isEmpty() ? null : spanRings.get(shard);
+    final SpanRecordQueue spanRecordQueue = spanRecords.isEmpty() ? null : spanRecords.get(shard);
+    final SpanSpill spanSpill = spanSpills.isEmpty() ? null : spanSpills.get(shard);
+    try {
+      for (List<Span> spans : trace.getSpans()) {
+        for (Span span : spans) {
+          span.setQueuedNanos(queuedNanos);
+          if (spanRecordQueue != null) {
+            addRecord(spanRecordQueue, spanSpill, span);
+          } else if (spanSpill != null) {
+            addOrSpill(spanRing, spanSpill, span);
+          } else if (spanRing != null) {
+            spanRing.put(span);
+          } else {
+            unboundedSpanQueue.add(span);
+          }
+        }
         spanCount.addAndGet(spans.size());
-      });
+      }
+    } catch (InterruptedException e) {
+      LOGGER.warning("Adding of the trace " + trace.getTraceUUID() + " was interrupted!");
+      Thread.currentThread().interrupt();
     }
     traceCount.addAndGet(1);
   }
 
+  /**
+   * Adds the recipe of a trace. If traces aren't lazy, the trace is materialized and added right
+   * away. If the queue is bounded and full, waits while the senders free enough space.
+   *
+   * @param recipe Recipe of the trace, which sets the queued time of the spans itself.
+   */
+  public void addRecipe(@Nonnull TraceRecipe recipe) {
+    if (recipeQueues.isEmpty()) {
+      addTrace(recipe.materialize());
+      return;
+    }
+    try {
+      recipeQueues.get(getShard(recipe.getTraceUUID())).put(recipe);
+      spanCount.addAndGet(recipe.getSpansCount());
+    } catch (InterruptedException e) {
+      LOGGER.warning("Adding of the trace " + recipe.getTraceUUID() + " was interrupted!");
+      Thread.currentThread().interrupt();
+    }
+    traceCount.addAndGet(1);
+  }
+
+  /**
+   * Makes the queue keep recipes of the traces instead of the spans, see {@link TraceRecipe}, so
+   * the memory of the queue doesn't depend on the size of the traces. The shards and the capacity
+   * stay the same, but the capacity is counted in traces. Spans aren't kept in memory, off the
+   * heap or spilled then. Should be set before traces are added, and can't be used if traces are
+   * kept for saving to file.
+   */
+  void setLazyTraces() {
+    if (keepTraces) {
+      throw new IllegalStateException("Traces kept for saving to file can't be lazy!");
+    }
+    if (!recipeQueues.isEmpty()) {
+      return;
+    }
+    for (int n = 0; n < getShardsCount(); n++) {
+      recipeQueues.add(new TraceRecipeQueue(shardCapacity, waitStrategy));
+    }
+    spanRings.clear();
+    spanRecords.clear();
+    spanSpills.clear();
+  }
+
+  /**
+   * @return True if generators should add recipes instead of traces.
+   */
+  public boolean hasLazyTraces() {
+    return !recipeQueues.isEmpty();
+  }
+
+  /**
+   * Makes generators stay within the horizon of the senders, see {@link #awaitSenders(long)}.
+   * Should be set before generation starts.
+   *
+   * @param maxAheadNanos Maximal time generated spans are intended to be sent ahead of the
+   *                      senders' clock. Not limited if it's not positive.
+   * @param maxAheadSpans Maximal number of spans generated, but not released by the senders yet.
+   *                      Not limited if it's not positive.
+   */
+  void setHorizon(long maxAheadNanos, int maxAheadSpans) {
+    this.maxAheadNanos = maxAheadNanos;
+    this.maxAheadSpans = maxAheadSpans;
+  }
+
+  /**
+   * @param heapThrottling If true, generators poll the heap usage and wait for the senders when
+   *                       the heap is almost full.
+   */
+  void setHeapThrottling(boolean heapThrottling) {
+    this.heapThrottling = heapThrottling;
+  }
+
+  public boolean isHeapThrottling() {
+    return heapThrottling;
+  }
+
+  /**
+   * Waits while the generator is beyond the horizon of the senders: the span to be generated is
+   * intended to be sent more than the horizon time after the latest released span, or too many
+   * spans are in flight. Nothing is waited for if nothing is in flight, so the generator is
+   * never stuck.
+   *
+   * @param intendedNanos Intended sending moment of the next span, 0 if it isn't known.
+   */
+  public void awaitSenders(long intendedNanos) {
+    if (maxAheadNanos <= 0 && maxAheadSpans <= 0) {
+      return;
+    }
+    long parkNanos = MIN_HORIZON_PARK_NANOS;
+    while (isBeyondHorizon(intendedNanos) && !Thread.currentThread().isInterrupted()) {
+      LockSupport.parkNanos(parkNanos);
+      parkNanos = Math.min(parkNanos << 1, MAX_HORIZON_PARK_NANOS);
+    }
+  }
+
+  private boolean isBeyondHorizon(long intendedNanos) {
+    // Entered spans are counted in int, so the difference is taken in int as well.
+    final int inFlight = spanCount.get() - (int) releasedSpans.sum();
+    if (inFlight <= 0) {
+      return false;
+    }
+    return (maxAheadSpans > 0 && inFlight >= maxAheadSpans) || (maxAheadNanos > 0 &&
+        intendedNanos != 0 && intendedNanos - sendersNanos.get() > maxAheadNanos);
+  }
+
+  /**
+   * Called by senders for every span they are done with: sent, failed or dropped.
+   *
+   * @param span Released span.
+   */
+  void onReleased(@Nonnull Span span) {
+    releasedSpans.increment();
+    final long intendedNanos = span.getIntendedNanos();
+    if (intendedNanos != 0 && intendedNanos - sendersNanos.get() > 0) {
+      sendersNanos.accumulateAndGet(intendedNanos,
+          (current, intended) -> intended - current > 0 ? intended : current);
+    }
+  }
+
+  /**
+   * Spans are spilled once the shard is full, and while anything is spilled, so they are taken in
+   * the order they were added. If spilling fails, the span waits for the free space.
+   */
+  private void addOrSpill(RingBuffer<Span> spanRing, SpanSpill spanSpill, Span span)
+      throws InterruptedException {
+    if (spanSpill.isEmpty() && spanRing.offer(span)) {
+      return;
+    }
+    try {
+      spanSpill.add(span);
+    } catch (IOException e) {
+      spillFailureLogger.warning("Spilling of the span " + span.getSpanUUID() + " failed: " + e);
+      spanRing.put(span);
+    }
+  }
+
+  /**
+   * Encodes the span to the records of the shard, waiting while the shard is full unless the span
+   * can be spilled.
+   */
+  private void addRecord(SpanRecordQueue spanRecordQueue, @Nullable SpanSpill spanSpill,
+                         Span span) throws InterruptedException {
+    if (spanSpill != null && (!spanSpill.isEmpty() || spanRecordQueue.size() >= shardCapacity)) {
+      try {
+        spanSpill.add(span);
+        return;
+      } catch (IOException e) {
+        spillFailureLogger.warning("Spilling of the span " + span.getSpanUUID() + " failed: " + e);
+      }
+    }
+    long parkNanos = MIN_HORIZON_PARK_NANOS;
+    while (spanRecordQueue.size() >= shardCapacity) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (waitStrategy == WaitStrategy.SPINNING) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(parkNanos);
+        parkNanos = Math.min(parkNanos << 1, MAX_RECORDS_PARK_NANOS);
+      }
+    }
+    try {
+      spanRecordQueue.add(span);
+    } catch (IOException e) {
+      // Direct buffers are allocated without I/O.
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Makes the bounded queue spill spans over to disk instead of waiting when a shard is full, so
+   * the queue capacity is a memory budget rather than a limit. Should be set before spans are
+   * added.
+   *
+   * @param directory   Directory of the spill files.
+   * @param segmentSize Size of a spill file in bytes.
+   */
+  void setSpill(@Nonnull File directory, int segmentSize) {
+    if (unboundedSpanQueue != null) {
+      throw new IllegalStateException("Only the bounded queue can spill spans!");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Spill directory " + directory + " can't be created!");
+    }
+    spanSpills.clear();
+    for (int n = 0; n < getShardsCount(); n++) {
+      spanSpills.add(new SpanSpill(directory, segmentSize));
+    }
+  }
+
+  /**
+   * @return Number of spans spilled to disk and not taken yet.
+   */
+  public int getSpilledSpanCount() {
+    return spanSpills.stream().mapToInt(SpanSpill::size).sum();
+  }
+
+  /**
+   * @return Bytes of the spans kept off the heap, 0 if the queue keeps span objects.
+   */
+  public long getOffHeapBytes() {
+    return spanRecords.stream().mapToLong(SpanRecordQueue::getBytes).sum();
+  }
+
   public int getEnteredTraceCount() {
     return traceCount.get();
   }
@@ -56,36 +426,124 @@ public class DataQueue {
     return spanCount.get();
   }
 
+  /**
+   * @return Number of shards, each shard should be consumed by its own sender.
+   */
+  public int getShardsCount() {
+    return Math.max(1, recipeQueues.isEmpty() ? spanRings.size() + spanRecords.size() :
+        recipeQueues.size());
+  }
+
+  /**
+   * Shard of the trace. All spans of a trace are placed to the same shard.
+   *
+   * @param traceUUID Trace UUID.
+   * @return Shard index.
+   */
+  public int getShard(@Nullable UUID traceUUID) {
+    return traceUUID == null ? 0 : Math.floorMod(traceUUID.hashCode(), getShardsCount());
+  }
+
+  @Nullable
   public Span pollFirstSpan() {
-    synchronized (spanQueue) {
-      return spanQueue.pollFirst();
+    if (!recipeQueues.isEmpty()) {
+      for (TraceRecipeQueue recipeQueue : recipeQueues) {
+        final Span span = recipeQueue.poll();
+        if (span != null) {
+          return span;
+        }
+      }
+      return null;
+    }
+    if (unboundedSpanQueue != null) {
+      return unboundedSpanQueue.poll();
+    }
+    for (int shard = 0; shard < getShardsCount(); shard++) {
+      Span span = spanRecords.isEmpty() ? spanRings.get(shard).poll() :
+          spanRecords.get(shard).poll();
+      if (span == null && !spanSpills.isEmpty()) {
+        span = spanSpills.get(shard).poll();
+      }
+      if (span != null) {
+        return span;
+      }
     }
+    return null;
   }
 
   public Trace pollFirstTrace() {
     if (!keepTraces) {
       return null;
     }
-    // Trace dump performed only in case saving to file and no need in synchronization.
-    return traceQueue.pollFirst();
+    return traceQueue.poll();
   }
 
   /**
-   * Gets all generated spans and clear the span queue
+   * Moves up to {@code max} of the oldest spans of the shard to the given buffer, so senders can
+   * reuse their buffers instead of copying the whole queue.
    *
-   * @return Generated spans
+   * @param shard  Shard index.
+   * @param buffer Destination buffer.
+   * @param max    Maximal number of spans to be moved.
+   * @return Number of moved spans.
    */
-  public List<Span> getReadySpans() {
-    synchronized (spanQueue) {
-      List<Span> spans = List.copyOf(spanQueue);
-      spanQueue.clear();
-      return spans;
+  public int drainTo(int shard, @Nonnull Collection<? super Span> buffer, int max) {
+    if (!recipeQueues.isEmpty()) {
+      return recipeQueues.get(shard).drainTo(buffer, max);
+    }
+    if (unboundedSpanQueue == null) {
+      // Spans kept in memory were added before the spilled ones.
+      final int drained = spanRecords.isEmpty() ? spanRings.get(shard).drainTo(buffer, max) :
+          spanRecords.get(shard).drainTo(buffer, max);
+      if (drained < max && !spanSpills.isEmpty()) {
+        return drained + spanSpills.get(shard).drainTo(buffer, max - drained);
+      }
+      return drained;
+    }
+    int drained = 0;
+    Span span;
+    while (drained < max && (span = unboundedSpanQueue.poll()) != null) {
+      buffer.add(span);
+      drained++;
     }
+    return drained;
   }
 
+  /**
+   * @return Number of spans in the queue (approximate while the queue is being modified).
+   */
   public int size() {
-    synchronized (spanQueue) {
-      return spanQueue.size();
+    if (!recipeQueues.isEmpty()) {
+      return recipeQueues.stream().mapToInt(TraceRecipeQueue::size).sum();
+    }
+    if (unboundedSpanQueue != null) {
+      return unboundedSpanQueue.size();
+    }
+    return spanRings.stream().mapToInt(RingBuffer::size).sum() +
+        spanRecords.stream().mapToInt(SpanRecordQueue::size).sum() + getSpilledSpanCount();
+  }
+
+  /**
+   * @param shard Shard index.
+   * @return Number of spans in the shard.
+   */
+  public int size(int shard) {
+    if (!recipeQueues.isEmpty()) {
+      return recipeQueues.get(shard).size();
+    }
+    if (unboundedSpanQueue != null) {
+      return unboundedSpanQueue.size();
     }
+    final int size = spanRecords.isEmpty() ? spanRings.get(shard).size() :
+        spanRecords.get(shard).size();
+    return size + (spanSpills.isEmpty() ? 0 : spanSpills.get(shard).size());
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public boolean isEmpty(int shard) {
+    return size(shard) == 0;
   }
 }
@@ -1,26 +1,34 @@
 package com.wavefront;
 
 import com.google.common.base.Strings;
-import com.google.common.base.Throwables;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wavefront.datastructures.Span;
 import com.wavefront.datastructures.SpanKind;
+import com.wavefront.datastructures.RetryQueue;
+import com.wavefront.datastructures.SpanSchedule;
 import com.wavefront.datastructures.Trace;
 import com.wavefront.helpers.Defaults;
-import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.helpers.ExponentialBackoff;
+import com.wavefront.helpers.RateLimitedLogger;
+import com.wavefront.helpers.RateLimiter;
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.sinks.SpanSink;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
@@ -30,36 +38,82 @@ import javax.annotation.Nullable;
  */
 public class SpanSender implements Runnable {
   private static final Logger LOGGER = Logger.getLogger(SpanSender.class.getCanonicalName());
-  private final WavefrontSender spanSender;
-  private final WavefrontSender statSender;
-  private final Integer rate;
+  /**
+   * Maximal number of spans taken from the queue at once.
+   */
+  private static final int DRAIN_BATCH_SIZE = 1024;
+  private static final long MIN_IDLE_PARK_NANOS = 10_000;
+  private static final long MAX_IDLE_PARK_NANOS = 1_000_000;
+  /**
+   * Maximal number of spans with start time in the future held by the sender. When it is
+   * reached, the sender stops taking spans from the queue until some of them become due.
+   */
+  private static final int MAX_FUTURE_SPANS = 1 << 16;
+  private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final long FAILURE_LOG_INTERVAL_MILLIS = 5_000;
+  private final SpanSink spanSink;
+  private final SpanSink statSink;
+  private final RateLimiter rateLimiter;
   private final String spanOutputFile;
   private final String traceOutputFile;
   private final DataQueue dataQueue;
+  private final int shard;
+  private final SenderStatistics senderStatistics;
   private final AtomicBoolean stopSending = new AtomicBoolean(false);
+  private final RateLimitedLogger failureLogger =
+      new RateLimitedLogger(LOGGER, FAILURE_LOG_INTERVAL_MILLIS);
+  private final ExponentialBackoff backoff =
+      new ExponentialBackoff(INITIAL_BACKOFF_NANOS, MAX_BACKOFF_NANOS);
+  private final RetryQueue retries;
+  private final int maxRetries;
+  private int consecutiveFailures = 0;
+  private long pausedUntilNanos;
   private boolean reportStat = false;
+  private boolean started = false;
 
 
-  public SpanSender(WavefrontSender wavefrontSender, WavefrontSender statSender, Integer rate,
-                    DataQueue dataQueue, boolean reportStat) {
-    this.spanSender = wavefrontSender;
-    this.statSender = statSender;
-    this.rate = rate;
+  /**
+   * SpanSender constructor for sending spans of one shard of the data queue.
+   *
+   * @param spanSink           Sink of spans, owned by this SpanSender.
+   * @param statSink           Sink of statistics spans, may be shared between SpanSenders.
+   * @param rateLimiter        Rate limiter, may be shared between SpanSenders.
+   * @param dataQueue          Source of spans.
+   * @param shard              Shard of the data queue served by this SpanSender.
+   * @param reportStat         If true, statistics spans will be sent via statSink.
+   * @param maxRetries         Maximal number of retries of a span whose sending failed.
+   * @param retryQueueCapacity Maximal number of spans waiting for retrying.
+   */
+  public SpanSender(SpanSink spanSink, SpanSink statSink, RateLimiter rateLimiter,
+                    DataQueue dataQueue, int shard, boolean reportStat, int maxRetries,
+                    int retryQueueCapacity) {
+    this.spanSink = spanSink;
+    this.statSink = statSink;
+    this.rateLimiter = rateLimiter;
     this.dataQueue = dataQueue;
+    this.shard = shard;
+    this.senderStatistics = new SenderStatistics("Sender " + shard);
     this.spanOutputFile = null;
     this.traceOutputFile = null;
     this.reportStat = reportStat;
+    this.maxRetries = maxRetries;
+    this.retries = new RetryQueue(retryQueueCapacity);
   }
 
   public SpanSender(String spanOutputFile, String traceOutputFile, DataQueue dataQueue,
                     boolean reportStat) {
-    this.spanSender = null;
-    this.statSender = null;
-    this.rate = null;
+    this.spanSink = null;
+    this.statSink = null;
+    this.rateLimiter = null;
     this.dataQueue = dataQueue;
+    this.shard = 0;
+    this.senderStatistics = new SenderStatistics("File");
     this.spanOutputFile = spanOutputFile;
     this.traceOutputFile = traceOutputFile;
     this.reportStat = reportStat;
+    this.maxRetries = 0;
+    this.retries = null;
   }
 
   public void saveToFile() throws Exception {
@@ -118,61 +172,208 @@ public class SpanSender implements Runnable {
   @Override
   public void run() {
     LOGGER.info("Sending spans ...");
-    if (rate == null || spanSender == null) {
+    if (rateLimiter == null || spanSink == null) {
       LOGGER.severe("SpanSender doesn't completely initialized!");
       return;
     }
 
-    long start = System.currentTimeMillis();
-    long current;
-    int mustBeSentSpans;
-    int sentSpans = 0;
-    List<Span> spansToSend = new LinkedList<>();
-    try {
-      while (!stopSending.get() || spansToSend.size() > 0) {
-        spansToSend.addAll(dataQueue.getReadySpans());
-        current = System.currentTimeMillis();
-        mustBeSentSpans = (int) (rate * (current - start) / 1000);
-
-        ListIterator<Span> iter = spansToSend.listIterator();
-        while (iter.hasNext() && sentSpans < mustBeSentSpans) {
-          Span tempSpan = iter.next();
-          if(tempSpan.getKind() == SpanKind.STATISTICS && reportStat ==true && statSender != null){
-            statSender.sendSpan(tempSpan.getName(),
-                tempSpan.getStartMillis(),
-                tempSpan.getDuration(),
-                tempSpan.getSource(),
-                tempSpan.getTraceUUID(),
-                tempSpan.getSpanUUID(),
-                tempSpan.getParents(),
-                null,
-                tempSpan.getTags(),
-                null);
+    long idleParkNanos = MIN_IDLE_PARK_NANOS;
+    final List<Span> drainedSpans = new ArrayList<>(DRAIN_BATCH_SIZE);
+    // Spans which can be sent right now.
+    final ArrayDeque<Span> readySpans = new ArrayDeque<>(DRAIN_BATCH_SIZE);
+    // Spans whose start time is in the future.
+    final SpanSchedule futureSpans = new SpanSchedule();
+    start();
+    while (!stopSending.get() || !readySpans.isEmpty() || !futureSpans.isEmpty() ||
+        !retries.isEmpty() || !dataQueue.isEmpty(shard)) {
+      final long now = System.currentTimeMillis();
+      if (readySpans.size() < DRAIN_BATCH_SIZE && futureSpans.size() < MAX_FUTURE_SPANS) {
+        drainedSpans.clear();
+        dataQueue.drainTo(shard, drainedSpans, DRAIN_BATCH_SIZE - readySpans.size());
+        final long drainedNanos = System.nanoTime();
+        for (Span span : drainedSpans) {
+          senderStatistics.onQueueTime(drainedNanos - span.getQueuedNanos());
+          if (isStatSpan(span) || span.getStartMillis() < now) {
+            readySpans.add(span);
+          } else {
+            futureSpans.schedule(span);
           }
-          else if (tempSpan.getStartMillis() < System.currentTimeMillis()) {
-            try {
-              Thread.sleep(1);
-              spanSender.sendSpan(
-                  tempSpan.getName(),
-                  tempSpan.getStartMillis(),
-                  tempSpan.getDuration(),
-                  tempSpan.getSource(),
-                  tempSpan.getTraceUUID(),
-                  tempSpan.getSpanUUID(),
-                  tempSpan.getParents(),
-                  null,
-                  tempSpan.getTags(),
-                  null);
-              sentSpans++;
-              iter.remove();
-            } catch (IOException e) {
-              LOGGER.severe(Throwables.getStackTraceAsString(e));
-            }
+        }
+      }
+      if (futureSpans.getNextDueMillis() < now) {
+        // Spans started in the future shouldn't be sent before their start.
+        final long nowNanos = System.nanoTime();
+        final int first = readySpans.size();
+        futureSpans.releaseDue(now, readySpans);
+        readySpans.stream().skip(first).forEach(span -> span.setIntendedNanos(Math.max(
+            span.getIntendedNanos(), nowNanos - (now - span.getStartMillis()) * 1_000_000)));
+      }
+
+      boolean sent = false;
+      // Nothing is sent while backing off after a failure, so the queue fills up and generation
+      // slows down instead of losing spans.
+      if (System.nanoTime() - pausedUntilNanos >= 0) {
+        RetryQueue.Retry retry;
+        while ((retry = retries.pollDue(System.nanoTime())) != null) {
+          senderStatistics.onRetried();
+          if (!send(retry.getSpan(), retry.getAttempts())) {
+            break;
+          }
+          sent = true;
+        }
+        Span tempSpan;
+        while (!isPaused() && (tempSpan = readySpans.poll()) != null) {
+          if (isStatSpan(tempSpan)) {
+            sendStat(tempSpan);
+          } else {
+            sent = send(tempSpan, 0) || sent;
           }
         }
       }
-    } catch (InterruptedException | IOException e) {
-      LOGGER.severe(Throwables.getStackTraceAsString(e));
+
+      // Nothing is ready for sending, so don't spin on the queue.
+      if (sent) {
+        idleParkNanos = MIN_IDLE_PARK_NANOS;
+      } else {
+        onIdle();
+        final long nowNanos = System.nanoTime();
+        long untilDueNanos = Math.min(idleParkNanos, TimeUnit.MILLISECONDS.toNanos(
+            futureSpans.getNextDueMillis() - System.currentTimeMillis()));
+        if (!retries.isEmpty()) {
+          untilDueNanos = Math.min(untilDueNanos, retries.getNextDueNanos() - nowNanos);
+        }
+        if (isPaused()) {
+          untilDueNanos = pausedUntilNanos - nowNanos;
+        }
+        LockSupport.parkNanos(Math.max(MIN_IDLE_PARK_NANOS, untilDueNanos));
+        idleParkNanos = Math.min(idleParkNanos << 1, MAX_IDLE_PARK_NANOS);
+      }
+    }
+    try {
+      spanSink.flush();
+    } catch (IOException e) {
+      LOGGER.severe("Failed to flush spans: " + e.getMessage());
+    }
+    senderStatistics.onLost(spanSink.getLostSpans());
+    senderStatistics.stop();
+  }
+
+  /**
+   * Sends the spans of the trace right away by the calling thread, without the data queue, when
+   * generator threads send the traces they generate. Every generator thread should have its own
+   * SpanSender then. Spans aren't held until their start time. While the sender backs off after a
+   * failure the caller waits, and due retries are sent first, so generation slows down instead of
+   * losing spans. Retries not due yet are sent by {@link #run()}, once generation completes.
+   *
+   * @param trace Trace to be sent.
+   */
+  public void sendTrace(@Nonnull Trace trace) {
+    start();
+    for (List<Span> spans : trace.getSpans()) {
+      for (Span span : spans) {
+        sendDueRetries();
+        send(span, 0);
+      }
+    }
+  }
+
+  /**
+   * Waits while the sender backs off, and sends the retries which are due.
+   */
+  private void sendDueRetries() {
+    while (!Thread.currentThread().isInterrupted()) {
+      final long now = System.nanoTime();
+      if (now - pausedUntilNanos < 0) {
+        LockSupport.parkNanos(pausedUntilNanos - now);
+        continue;
+      }
+      final RetryQueue.Retry retry = retries.pollDue(now);
+      if (retry == null) {
+        return;
+      }
+      senderStatistics.onRetried();
+      send(retry.getSpan(), retry.getAttempts());
+    }
+  }
+
+  /**
+   * Sending starts either by {@link #run()} or by the first {@link #sendTrace(Trace)}.
+   */
+  private void start() {
+    if (!started) {
+      started = true;
+      senderStatistics.start();
+      pausedUntilNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * Sends the span. If it fails, the sender backs off and the span is queued for retrying unless
+   * its retry budget is exhausted or the retry queue is full.
+   *
+   * @param span     Span to be sent.
+   * @param attempts Number of previous failed attempts of the span.
+   * @return True if the span is sent.
+   */
+  private boolean send(Span span, int attempts) {
+    rateLimiter.acquire();
+    final long start = System.nanoTime();
+    try {
+      spanSink.send(span);
+      final long end = System.nanoTime();
+      senderStatistics.onSendLatency(end - start);
+      // Spans of generators which don't follow the rate profile are late since they are queued.
+      senderStatistics.onScheduleDelay(start - (span.getIntendedNanos() != 0 ?
+          span.getIntendedNanos() : span.getQueuedNanos()));
+      senderStatistics.onSent();
+      dataQueue.onReleased(span);
+      consecutiveFailures = 0;
+      return true;
+    } catch (IOException e) {
+      senderStatistics.onSendLatency(System.nanoTime() - start);
+      failureLogger.severe(senderStatistics.getWorkerName() + " failed to send span: " + e);
+      final long now = System.nanoTime();
+      pausedUntilNanos = now + backoff.getDelayNanos(++consecutiveFailures);
+      if (attempts >= maxRetries) {
+        senderStatistics.onFailed();
+        dataQueue.onReleased(span);
+      } else if (!retries.offer(span, attempts + 1,
+          now + backoff.getDelayNanos(attempts + 1))) {
+        senderStatistics.onDropped();
+        dataQueue.onReleased(span);
+      }
+      return false;
+    }
+  }
+
+  private void sendStat(Span span) {
+    try {
+      statSink.send(span);
+    } catch (IOException e) {
+      failureLogger.warning("Failed to send statistics span: " + e);
+    }
+    dataQueue.onReleased(span);
+  }
+
+  private boolean isPaused() {
+    return System.nanoTime() - pausedUntilNanos < 0;
+  }
+
+  /**
+   * Statistics spans are sent without delays via a separate sender if it's requested.
+   */
+  private boolean isStatSpan(Span span) {
+    return span.getKind() == SpanKind.STATISTICS && reportStat && statSink != null;
+  }
+
+  /**
+   * Lets the sink send the spans it buffers, since nothing is to be sent for a while.
+   */
+  public void onIdle() {
+    try {
+      spanSink.onIdle();
+    } catch (IOException e) {
+      failureLogger.severe(senderStatistics.getWorkerName() + " failed to flush spans: " + e);
     }
   }
 
@@ -183,4 +384,21 @@ public class SpanSender implements Runnable {
   public void stopSending() {
     stopSending.set(true);
   }
+
+  public SenderStatistics getSenderStatistics() {
+    return senderStatistics;
+  }
+
+  /**
+   * Closes the span sink owned by this SpanSender.
+   */
+  public void close() {
+    if (spanSink != null) {
+      try {
+        spanSink.close();
+      } catch (IOException e) {
+        LOGGER.warning("Failed to close the sender: " + e.getMessage());
+      }
+    }
+  }
 }
\ No newline at end of file
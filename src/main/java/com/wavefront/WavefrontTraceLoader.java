@@ -3,16 +3,37 @@ package com.wavefront;
 import com.google.common.base.Strings;
 
 import com.wavefront.config.ApplicationConfig;
+import com.wavefront.datastructures.RateProfile;
+import com.wavefront.distributed.Coordinator;
+import com.wavefront.distributed.CoordinatorMessage;
+import com.wavefront.distributed.WorkerClient;
 import com.wavefront.generators.BasicGenerator;
 import com.wavefront.generators.ReIngestGenerator;
+import com.wavefront.helpers.RateLimiter;
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.helpers.Statistics;
 import com.wavefront.internal.reporter.WavefrontInternalReporter;
 import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.proxy.LocalProxy;
 import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.common.clients.WavefrontClientFactory;
+import com.wavefront.sinks.ConsistentHashSink;
+import com.wavefront.sinks.RawSocketSink;
+import com.wavefront.sinks.SpanSink;
+import com.wavefront.sinks.WavefrontSenderSink;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Input point of application to generate and send traces to wavefront.
@@ -20,9 +41,21 @@ import java.io.IOException;
  * @author Sirak Ghazaryan (sghazaryan@vmware.com)
  */
 public class WavefrontTraceLoader extends AbstractTraceLoader {
+  private static final long RATE_UPDATE_MILLIS = 100;
+  private static final String LOCAL_PROXY_SERVER = "http://localhost";
+  private static final int ROUTED_TRACES_CAPACITY = 1 << 16;
+  private static final int WORKERS_TIMEOUT_MILLIS = 120_000;
+  private static final long START_DELAY_MILLIS = 1000;
+  private String[] args = new String[0];
   private DataQueue dataQueue;
+  private RateLimiter rateLimiter;
   private BasicGenerator basicGenerator;
-  private SpanSender spanSender;
+  private final List<SpanSender> spanSenders = new ArrayList<>();
+  private LocalProxy localProxy;
+  private Coordinator coordinator;
+  private WorkerClient workerClient;
+  private List<CoordinatorMessage> workerReports;
+  private boolean fusedSending;
 
   WavefrontTraceLoader(ApplicationConfig applicationConfig) {
     this.applicationConfig = applicationConfig;
@@ -35,36 +68,28 @@ public class WavefrontTraceLoader extends AbstractTraceLoader {
     new WavefrontTraceLoader().start(args);
   }
 
+  @Override
+  public void start(String[] args) {
+    // Launched workers get the same arguments.
+    this.args = args.clone();
+    super.start(args);
+  }
+
   @Override
   void setupSenders() throws IOException {
     if (applicationConfig == null) {
       throw new IOException("Application config should contain proxy or direction ingestion info.");
     }
+    spanSenders.clear();
+    if (generatorConfig.isCoordinating()) {
+      // Workers send spans.
+      return;
+    }
     // Spans or Traces should be exported to file.
-    if (!Strings.isNullOrEmpty(applicationConfig.getSpanOutputFile())
-        || !Strings.isNullOrEmpty(applicationConfig.getTraceOutputFile())) {
-      spanSender = new SpanSender(applicationConfig.getSpanOutputFile(),
-          applicationConfig.getTraceOutputFile(), dataQueue, applicationConfig.getReportStat());
+    if (isSavingToFile()) {
+      spanSenders.add(new SpanSender(applicationConfig.getSpanOutputFile(),
+          applicationConfig.getTraceOutputFile(), dataQueue, applicationConfig.getReportStat()));
     } else {
-      WavefrontSender wfSender;
-      WavefrontClientFactory wfClientFactory = new WavefrontClientFactory();
-      if (applicationConfig.getProxyServer() != null) {
-        wfClientFactory.addClient(applicationConfig.getProxyServer() + ":" +
-            applicationConfig.getMetricsPort() + "/");
-        wfClientFactory.addClient(applicationConfig.getProxyServer() + ":" +
-            applicationConfig.getDistributionPort() + "/");
-        wfClientFactory.addClient(applicationConfig.getProxyServer() + ":" +
-            applicationConfig.getTracingPort() + "/");
-        wfClientFactory.addClient(applicationConfig.getProxyServer() + ":" +
-            applicationConfig.getCustomTracingPorts() + "/");
-      } else {
-        wfClientFactory.addClient("https://" + applicationConfig.getToken() +
-            "@" + applicationConfig.getServer());
-      }
-      wfSender = wfClientFactory.getClient();
-      WavefrontSpanReporter wfSpanReporter = new WavefrontSpanReporter.Builder().build(wfSender);
-      wfSpanReporter.setMetricsReporter(new WavefrontInternalReporter.Builder().build(wfSender));
-
       WavefrontSender statSender;
       WavefrontClientFactory statClientFactory = new WavefrontClientFactory();
       if (applicationConfig.getStatServer() != null || applicationConfig.getServer() != null) {
@@ -82,68 +107,369 @@ public class WavefrontTraceLoader extends AbstractTraceLoader {
         statSender = statClientFactory.getClient();
         WavefrontSpanReporter statSpanReporter = new WavefrontSpanReporter.Builder().build(statSender);
         statSpanReporter.setMetricsReporter(new WavefrontInternalReporter.Builder().build(statSender));
-        spanSender = new SpanSender(wfSender, statSender, generatorConfig.getSpansRate(), dataQueue
-            , applicationConfig.getReportStat());
       }
       else if(applicationConfig.getReportStat() == true){
         throw new IOException("Statistics reporting requested, but no destination provided.");
       }
       else {
-        spanSender = new SpanSender(wfSender, null, generatorConfig.getSpansRate(), dataQueue
-            , applicationConfig.getReportStat());
+        statSender = null;
+      }
+
+      // Every worker has its own connection, but all of them share the same rate.
+      final SpanSink statSink = statSender == null ? null : new WavefrontSenderSink(statSender);
+      rateLimiter = createRateLimiter();
+      for (int shard = 0; shard < dataQueue.getShardsCount(); shard++) {
+        spanSenders.add(new SpanSender(createSpanSink(), statSink, rateLimiter, dataQueue,
+            shard, applicationConfig.getReportStat(), applicationConfig.getMaxRetries(),
+            applicationConfig.getRetryQueueCapacity()));
       }
     }
   }
 
+  private SpanSink createSpanSink() throws IOException {
+    final List<String> proxyServers = getProxyServers();
+    if (proxyServers.size() > 1) {
+      // Every trace goes to a single proxy, while the rate limiter paces all of them together.
+      final List<SpanSink> sinks = new ArrayList<>();
+      for (String proxyServer : proxyServers) {
+        sinks.add(createSpanSink(proxyServer));
+      }
+      return new ConsistentHashSink(proxyServers, sinks, ROUTED_TRACES_CAPACITY);
+    }
+    return createSpanSink(proxyServers.isEmpty() ? null : proxyServers.get(0));
+  }
+
+  private SpanSink createSpanSink(String proxyServer) throws IOException {
+    if (applicationConfig.getSink() == SpanSink.Type.RAW) {
+      if (proxyServer == null) {
+        throw new IOException("RAW sink requires the proxy server.");
+      }
+      return new RawSocketSink(getProxyHost(proxyServer), applicationConfig.getTracingPort(),
+          applicationConfig.getFlushSize());
+    }
+    return new WavefrontSenderSink(createWavefrontSender(proxyServer));
+  }
+
+  /**
+   * Proxy server is set as URL for the SDK sender, but the host only is needed for the socket.
+   */
+  private static String getProxyHost(String proxyServer) {
+    return proxyServer.contains("://") ? URI.create(proxyServer).getHost() : proxyServer;
+  }
+
+  private WavefrontSender createWavefrontSender(String proxyServer) {
+    WavefrontClientFactory wfClientFactory = new WavefrontClientFactory();
+    if (proxyServer != null) {
+      wfClientFactory.addClient(proxyServer + ":" + applicationConfig.getMetricsPort() + "/");
+      wfClientFactory.addClient(proxyServer + ":" + applicationConfig.getDistributionPort() + "/");
+      wfClientFactory.addClient(proxyServer + ":" + applicationConfig.getTracingPort() + "/");
+      wfClientFactory.addClient(proxyServer + ":" + applicationConfig.getCustomTracingPorts() +
+          "/");
+    } else {
+      wfClientFactory.addClient("https://" + applicationConfig.getToken() +
+          "@" + applicationConfig.getServer());
+    }
+    WavefrontSender wfSender = wfClientFactory.getClient();
+    WavefrontSpanReporter wfSpanReporter = new WavefrontSpanReporter.Builder().build(wfSender);
+    wfSpanReporter.setMetricsReporter(new WavefrontInternalReporter.Builder().build(wfSender));
+    return wfSender;
+  }
+
+  /**
+   * @return Configured proxy servers, or the local one if the local proxy stand-in is used. Empty
+   * list means the direct ingestion.
+   */
+  private List<String> getProxyServers() {
+    if (!applicationConfig.getProxyServers().isEmpty()) {
+      return applicationConfig.getProxyServers();
+    }
+    if (applicationConfig.getProxyServer() != null) {
+      return List.of(applicationConfig.getProxyServer());
+    }
+    return applicationConfig.getLocalProxy() ? List.of(LOCAL_PROXY_SERVER) : List.of();
+  }
+
+  /**
+   * Starts the local proxy stand-in on all the proxy ports, since the SDK sender sends spans to
+   * every configured port.
+   */
+  private LocalProxy startLocalProxy() throws IOException {
+    final LinkedHashSet<Integer> ports = new LinkedHashSet<>(List.of(
+        applicationConfig.getTracingPort(), applicationConfig.getCustomTracingPorts(),
+        applicationConfig.getMetricsPort(), applicationConfig.getDistributionPort()));
+    final LocalProxy proxy = new LocalProxy(new ArrayList<>(ports), false);
+    proxy.start();
+    return proxy;
+  }
+
+  private boolean isSavingToFile() {
+    return !Strings.isNullOrEmpty(applicationConfig.getSpanOutputFile())
+        || !Strings.isNullOrEmpty(applicationConfig.getTraceOutputFile());
+  }
+
+  private RateLimiter createRateLimiter() {
+    final double rate = workerShare(generatorConfig.getRateProfile().cursor().getRate());
+    return new RateLimiter(Math.max(1, rate), generatorConfig.getBurstSize());
+  }
+
+  /**
+   * @return Share of the rate sent by this process, when several workers split the generation.
+   */
+  private double workerShare(double rate) {
+    return rate / Math.max(1, generatorConfig.getWorkers());
+  }
+
+  /**
+   * Makes the senders pace spans according to the rate profile. The rate of the last segment is
+   * kept after the profile ends, so the rest of the queue isn't throttled.
+   *
+   * @return Executor updating the rate, should be shut down when sending completes.
+   */
+  private ScheduledExecutorService startRateUpdates() {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          final Thread thread = new Thread(runnable, "rate-updater");
+          thread.setDaemon(true);
+          return thread;
+        });
+    final RateProfile.Cursor rateCursor = generatorConfig.getRateProfile().cursor();
+    final long start = System.nanoTime();
+    executor.scheduleAtFixedRate(() -> {
+      rateCursor.advance((System.nanoTime() - start) / 1e9);
+      if (!rateCursor.isComplete()) {
+        rateLimiter.setRate(Math.max(1, workerShare(rateCursor.getRate())));
+      }
+    }, RATE_UPDATE_MILLIS, RATE_UPDATE_MILLIS, TimeUnit.MILLISECONDS);
+    return executor;
+  }
+
   @Override
   void initialize() {
-    dataQueue = new DataQueue(!Strings.isNullOrEmpty(applicationConfig.getTraceOutputFile()));
+    if (generatorConfig.isCoordinating()) {
+      return;
+    }
+    final boolean keepingTraces =
+        !Strings.isNullOrEmpty(applicationConfig.getTraceOutputFile());
+    fusedSending = applicationConfig.getFusedSending() && !isSavingToFile() &&
+        Strings.isNullOrEmpty(applicationConfig.getWfTracesFile());
+    if (applicationConfig.getFusedSending() && !fusedSending) {
+      LOGGER.warning("Generators don't send traces themselves, since traces are saved to file " +
+          "or re-ingested.");
+    }
+    // Senders collect the statistics of lazy traces, so they must run along with the generators.
+    final boolean lazyTraces = applicationConfig.getLazyTraces() && !isSavingToFile() &&
+        !fusedSending;
+    if (applicationConfig.getLazyTraces() && isSavingToFile()) {
+      LOGGER.warning("Traces aren't lazy, since they are saved to file.");
+    }
+    final boolean spilling = !lazyTraces && !fusedSending &&
+        !Strings.isNullOrEmpty(applicationConfig.getSpillDirectory());
+    if (isSavingToFile() && spilling) {
+      // Everything is generated before saving to file, spans beyond the capacity go to disk.
+      dataQueue = new DataQueue(keepingTraces, applicationConfig.getQueueCapacity(),
+          applicationConfig.getQueueWaitStrategy(), 1, applicationConfig.getOffHeapQueue());
+    } else if (isSavingToFile()) {
+      // Everything is generated before saving to file.
+      dataQueue = new DataQueue(keepingTraces);
+    } else if (fusedSending) {
+      // Every generator thread sends its traces with its own sender, the queue only passes the
+      // statistics spans to the senders when generation completes.
+      dataQueue = new DataQueue(false, applicationConfig.getQueueCapacity(),
+          applicationConfig.getQueueWaitStrategy(),
+          Math.max(1, generatorConfig.getGeneratorThreads()));
+    } else {
+      // Generators and senders work simultaneously, so the queue can be bounded. Every sender
+      // worker consumes its own shard of the queue.
+      dataQueue = new DataQueue(false, applicationConfig.getQueueCapacity(),
+          applicationConfig.getQueueWaitStrategy(), applicationConfig.getSenderThreads(),
+          applicationConfig.getOffHeapQueue());
+      dataQueue.setHorizon((long) (applicationConfig.getMaxAheadSeconds() * 1e9),
+          applicationConfig.getMaxAheadSpans());
+      dataQueue.setHeapThrottling(applicationConfig.getHeapThrottling());
+    }
+    if (lazyTraces) {
+      // Recipes of the traces are queued instead of the spans.
+      dataQueue.setLazyTraces();
+    } else if (spilling) {
+      dataQueue.setSpill(new File(applicationConfig.getSpillDirectory()),
+          applicationConfig.getSpillSegmentSize());
+    }
   }
 
   @Override
   void startLoading() throws Exception {
-    if (Strings.isNullOrEmpty(applicationConfig.getSpanOutputFile())
-        && Strings.isNullOrEmpty(applicationConfig.getTraceOutputFile())) {
-      // Generate and send spans at the same time
-      realTimeSending();
-    } else {
+    if (generatorConfig.isCoordinating()) {
+      coordinate();
+      return;
+    }
+    if (generatorConfig.getCoordinator() != null) {
+      workerClient = new WorkerClient(generatorConfig.getCoordinator(),
+          generatorConfig.getWorkerIndex(), WORKERS_TIMEOUT_MILLIS);
+      workerClient.awaitStart(generatorConfig.getWorkers(), generatorConfig.getSeed());
+    }
+    if (isSavingToFile()) {
       // Saving generated spans to file.
       basicGenerator.generateForFile();
-      spanSender.saveToFile();
+      spanSenders.get(0).saveToFile();
+    } else {
+      // Generate and send spans at the same time
+      realTimeSending();
     }
   }
 
   @Override
   void setupGenerator() {
+    if (generatorConfig.isCoordinating()) {
+      return;
+    }
     if (applicationConfig != null && !Strings.isNullOrEmpty(applicationConfig.getWfTracesFile())) {
       this.basicGenerator = new ReIngestGenerator(applicationConfig.getWfTracesFile(), dataQueue);
+      basicGenerator.setIdGenerator(generatorConfig.createIdGenerator(0,
+          basicGenerator.getRandom()));
     } else {
       this.basicGenerator = generatorConfig.getGenerator(dataQueue);
     }
+    if (fusedSending && basicGenerator != null) {
+      basicGenerator.setSenders(spanSenders);
+    }
   }
 
   @Override
   void dumpStatistics() throws Exception {
+    if (generatorConfig.isCoordinating()) {
+      dumpWorkersStatistics();
+      return;
+    }
+    dumpGeneratorStatistics(basicGenerator.getStatistics());
+    if (!isSavingToFile()) {
+      final List<SenderStatistics> senderStatistics = spanSenders.stream().
+          map(SpanSender::getSenderStatistics).collect(Collectors.toList());
+      senderStatistics.forEach(stat -> LOGGER.info(stat.toString()));
+      LOGGER.info(SenderStatistics.total(senderStatistics).toString());
+      if (localProxy != null) {
+        LOGGER.info(localProxy.getSummary());
+      }
+      if (workerClient != null) {
+        workerClient.report(basicGenerator.getStatistics(),
+            SenderStatistics.total("Worker " + generatorConfig.getWorkerIndex(), senderStatistics));
+      }
+    } else if (workerClient != null) {
+      workerClient.report(basicGenerator.getStatistics(), null);
+    }
+    if (workerClient != null) {
+      workerClient.close();
+      workerClient = null;
+    }
+  }
+
+  private void dumpGeneratorStatistics(Statistics statistics) throws Exception {
     if (!Strings.isNullOrEmpty(generatorConfig.getStatisticsFile())) {
       FileWriter fileWriter = new FileWriter(new File(generatorConfig.getStatisticsFile()));
-      fileWriter.write(basicGenerator.getStatistics().toJSONString());
+      fileWriter.write(statistics.toJSONString());
       fileWriter.close();
     } else {
-      LOGGER.info(basicGenerator.getStatistics().toString());
+      LOGGER.info(statistics.toString());
+    }
+  }
+
+  /**
+   * Dumps statistics of all workers merged together, and throughput of every worker and of all
+   * of them, which is measured from the earliest start to the latest end.
+   */
+  private void dumpWorkersStatistics() throws Exception {
+    final Statistics statistics = new Statistics();
+    final List<SenderStatistics> senderStatistics = new ArrayList<>();
+    for (CoordinatorMessage report : workerReports) {
+      statistics.merge(report.getStatistics());
+      if (report.getSenderStatistics() != null) {
+        senderStatistics.add(report.getSenderStatistics());
+      }
+    }
+    dumpGeneratorStatistics(statistics);
+    if (!senderStatistics.isEmpty()) {
+      senderStatistics.forEach(stat -> LOGGER.info(stat.toString()));
+      LOGGER.info(SenderStatistics.total(senderStatistics).toString());
+    }
+    if (localProxy != null) {
+      LOGGER.info(localProxy.getSummary());
+    }
+  }
+
+  /**
+   * Starts the workers at the same moment and waits for their reports. The workers have to use
+   * the same seed, so when the seed isn't set, launched workers get a random one. Workers are
+   * launched once and run the same cycles as the coordinator, so the coordinator keeps listening
+   * for them between cycles. The local proxy stand-in, if set, is started by the coordinator for
+   * all workers.
+   */
+  private void coordinate() throws IOException {
+    final int workers = Math.max(1, generatorConfig.getWorkers());
+    if (generatorConfig.isLaunchWorkers() && isSavingToFile()) {
+      // Launched workers get the same application config, so they would write the same files.
+      throw new IOException("Launched workers can't save to the output files, start every " +
+          "worker with its own application config instead.");
+    }
+    if (coordinator == null) {
+      coordinator = new Coordinator(generatorConfig.getCoordinatorPort(), workers);
+      if (generatorConfig.isLaunchWorkers()) {
+        coordinator.launchWorkers(args, generatorConfig.getSeed() != null ?
+            generatorConfig.getSeed() : new Random().nextLong());
+      }
+    }
+    if (applicationConfig.getLocalProxy() && !isSavingToFile()) {
+      localProxy = startLocalProxy();
+    }
+    try {
+      LOGGER.info("Waiting for " + workers + " workers on port " + coordinator.getPort());
+      coordinator.awaitWorkers(WORKERS_TIMEOUT_MILLIS);
+      coordinator.startWorkers(START_DELAY_MILLIS);
+      workerReports = coordinator.collectReports();
+    } catch (IOException e) {
+      coordinator.close();
+      throw e;
+    } finally {
+      if (localProxy != null) {
+        localProxy.close();
+      }
     }
   }
 
-  void realTimeSending() throws InterruptedException {
+  void realTimeSending() throws InterruptedException, IOException {
+    // Workers send spans to the local proxy of the coordinator.
+    if (applicationConfig.getLocalProxy() && generatorConfig.getCoordinator() == null) {
+      localProxy = startLocalProxy();
+    }
     // Send spans to host.
     Thread generator = new Thread(basicGenerator);
-    Thread sender = new Thread(spanSender);
+    List<Thread> senders = new ArrayList<>();
+    for (int n = 0; n < spanSenders.size(); n++) {
+      senders.add(new Thread(spanSenders.get(n), "span-sender-" + n));
+    }
+    final ScheduledExecutorService rateUpdates =
+        generatorConfig.hasRateProfile() ? startRateUpdates() : null;
     generator.start();
-    sender.start();
+    if (!fusedSending) {
+      senders.forEach(Thread::start);
+    }
     // Waiting while generation completes.
     generator.join();
-    // Inform sender that generation completes.
-    spanSender.stopSending();
-    // Wait while sender devastates the span queue.
-    sender.join();
+    // Inform senders that generation completes.
+    spanSenders.forEach(SpanSender::stopSending);
+    if (fusedSending) {
+      // Generator threads have sent the traces, senders send the rest: statistics spans and
+      // retries.
+      senders.forEach(Thread::start);
+    }
+    // Wait while senders devastate the span queue.
+    for (Thread sender : senders) {
+      sender.join();
+    }
+    if (rateUpdates != null) {
+      rateUpdates.shutdownNow();
+    }
+    spanSenders.forEach(SpanSender::close);
+    if (localProxy != null) {
+      localProxy.close();
+    }
   }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.wavefront.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.wavefront.datastructures.RingBuffer.WaitStrategy;
 import com.wavefront.helpers.ApplicationConfigValidator;
+import com.wavefront.sinks.SpanSink;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,6 +48,13 @@ public class ApplicationConfig {
    */
   @JsonProperty
   private String proxyServer = null;
+  /**
+   * Several proxy servers sharing the traffic. Spans are distributed among them by consistent
+   * hashing of the trace ID, so every trace is sent to a single proxy. Used instead of the
+   * proxyServer if it's set.
+   */
+  @JsonProperty
+  private List<String> proxyServers = new ArrayList<>();
   /**
    * Metrics port.
    */
@@ -92,7 +101,102 @@ public class ApplicationConfig {
    */
   @JsonProperty
   private boolean reportStat = false;
-
+  /**
+   * Maximal number of spans waiting in the queue between generators and senders. Generators wait
+   * while the queue is full.
+   */
+  @JsonProperty
+  private int queueCapacity = 1 << 20;
+  /**
+   * How generators wait when the queue is full - BLOCKING (park the thread) or SPINNING (busy-spin).
+   */
+  @JsonProperty
+  private WaitStrategy queueWaitStrategy = WaitStrategy.BLOCKING;
+  /**
+   * Keep queued spans off the heap as compact binary records in direct buffers, with names, tag
+   * keys and tags shared through a dictionary. Saves heap and GC work for large queues at the cost
+   * of encoding and decoding the spans.
+   */
+  @JsonProperty
+  private boolean offHeapQueue = false;
+  /**
+   * Queue recipes of the traces instead of the spans, and generate the spans when they are sent,
+   * so the queue memory doesn't depend on the size of the traces. Not used when traces are saved
+   * to file, and takes precedence over keeping spans off the heap and spilling.
+   */
+  @JsonProperty
+  private boolean lazyTraces = false;
+  /**
+   * Every generator thread sends the traces it generates itself, with a sender of its own, instead
+   * of queueing the spans for the senders. Meant for throughput tests: spans are sent right away,
+   * even before their start time, and the sender threads setting is not used.
+   */
+  @JsonProperty
+  private boolean fusedSending = false;
+  /**
+   * Directory for spilling spans over to disk when the queue is full. If it's set, generators
+   * don't wait for the senders, and the queue capacity is the number of spans kept in memory.
+   */
+  @JsonProperty
+  private String spillDirectory = null;
+  /**
+   * Size of a spill file in bytes.
+   */
+  @JsonProperty
+  private int spillSegmentSize = 64 * 1024 * 1024;
+  /**
+   * Maximal time in seconds generated spans are intended to be sent ahead of the senders.
+   * Generators wait while they are further ahead. Not limited if it's not positive.
+   */
+  @JsonProperty
+  private double maxAheadSeconds = 10;
+  /**
+   * Maximal number of spans generated, but not sent yet. Generators wait while there are more of
+   * them. Not limited if it's not positive.
+   */
+  @JsonProperty
+  private int maxAheadSpans = 0;
+  /**
+   * If true, generators also poll the heap usage after every trace and wait for the senders when
+   * it reaches 90% of the maximal heap.
+   */
+  @JsonProperty
+  private boolean heapThrottling = false;
+  /**
+   * Number of sender workers, each with its own connection. Spans of a trace are always sent by
+   * the same worker.
+   */
+  @JsonProperty
+  private int senderThreads = 1;
+  /**
+   * How spans are sent - SDK (via Wavefront SDK sender) or RAW (rendered in the line format and
+   * written straight to the proxy tracing port). RAW requires the proxy server.
+   */
+  @JsonProperty
+  private SpanSink.Type sink = SpanSink.Type.SDK;
+  /**
+   * Number of bytes accumulated by RAW sink before writing them to the socket.
+   */
+  @JsonProperty
+  private int flushSize = 64 * 1024;
+  /**
+   * Maximal number of retries of a span whose sending failed. Retries are made with exponential
+   * backoff.
+   */
+  @JsonProperty
+  private int maxRetries = 3;
+  /**
+   * Maximal number of spans waiting for retrying per sender worker. Failed spans are dropped when
+   * it's full.
+   */
+  @JsonProperty
+  private int retryQueueCapacity = 1 << 16;
+  /**
+   * If true, a local stand-in of the proxy is started on the proxy ports for measuring the loader
+   * throughput. Received spans are counted and validated, but not forwarded.
+   */
+  @JsonProperty
+  private boolean localProxy = false;
 
   public String getWfTracesFile() {
     return wfTracesFile;
@@ -124,6 +228,8 @@ public class ApplicationConfig {
 
   public String getProxyServer() { return proxyServer; }
 
+  public List<String> getProxyServers() { return proxyServers; }
+
   public List<String> getInputJsonFiles() { return inputJsonFiles; }
 
   public Integer getMetricsPort() {
@@ -148,6 +254,70 @@ public class ApplicationConfig {
 
   public boolean getReportStat(){ return reportStat; }
 
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public WaitStrategy getQueueWaitStrategy() {
+    return queueWaitStrategy;
+  }
+
+  public boolean getOffHeapQueue() {
+    return offHeapQueue;
+  }
+
+  public boolean getLazyTraces() {
+    return lazyTraces;
+  }
+
+  public boolean getFusedSending() {
+    return fusedSending;
+  }
+
+  public String getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  public int getSpillSegmentSize() {
+    return spillSegmentSize;
+  }
+
+  public double getMaxAheadSeconds() {
+    return maxAheadSeconds;
+  }
+
+  public int getMaxAheadSpans() {
+    return maxAheadSpans;
+  }
+
+  public boolean getHeapThrottling() {
+    return heapThrottling;
+  }
+
+  public int getSenderThreads() {
+    return senderThreads;
+  }
+
+  public SpanSink.Type getSink() {
+    return sink;
+  }
+
+  public int getFlushSize() {
+    return flushSize;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public int getRetryQueueCapacity() {
+    return retryQueueCapacity;
+  }
+
+  public boolean getLocalProxy() {
+    return localProxy;
+  }
+
   @Override
   public String toString() {
     return "ApplicationConfig{" +
@@ -156,6 +326,7 @@ public class ApplicationConfig {
         ", traceOutputFile='" + traceOutputFile + '\'' +
         ", inputJsonFiles=" + inputJsonFiles +
         ", proxyServer='" + proxyServer + '\'' +
+        ", proxyServers=" + proxyServers +
         ", metricsPort=" + metricsPort +
         ", distributionPort=" + distributionPort +
         ", tracingPort=" + tracingPort +
@@ -164,6 +335,22 @@ public class ApplicationConfig {
         ", token='" + token + '\'' +
         ", statServer='" + statServer + '\'' +
         ", statToken='" + statToken + '\'' +
+        ", queueCapacity=" + queueCapacity +
+        ", queueWaitStrategy=" + queueWaitStrategy +
+        ", offHeapQueue=" + offHeapQueue +
+        ", lazyTraces=" + lazyTraces +
+        ", fusedSending=" + fusedSending +
+        ", spillDirectory='" + spillDirectory + '\'' +
+        ", spillSegmentSize=" + spillSegmentSize +
+        ", maxAheadSeconds=" + maxAheadSeconds +
+        ", maxAheadSpans=" + maxAheadSpans +
+        ", heapThrottling=" + heapThrottling +
+        ", senderThreads=" + senderThreads +
+        ", sink=" + sink +
+        ", flushSize=" + flushSize +
+        ", maxRetries=" + maxRetries +
+        ", retryQueueCapacity=" + retryQueueCapacity +
+        ", localProxy=" + localProxy +
         '}';
   }
 }
\ No newline at end of file
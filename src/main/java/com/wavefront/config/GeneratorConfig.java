@@ -5,18 +5,26 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wavefront.DataQueue;
+import com.wavefront.datastructures.RateProfile;
 import com.wavefront.datastructures.TraceTypePattern;
+import com.wavefront.generators.BasicGenerator;
 import com.wavefront.generators.FromPatternGenerator;
 import com.wavefront.generators.FromTopologyGenerator;
+import com.wavefront.generators.ParallelGenerator;
 import com.wavefront.generators.TraceGenerator;
 import com.wavefront.helpers.Defaults;
 import com.wavefront.helpers.DurationStringConverter;
+import com.wavefront.helpers.XoshiroRandom;
+import com.wavefront.ids.IdGenerator;
+import com.wavefront.ids.RandomIdGenerator;
+import com.wavefront.ids.SecureIdGenerator;
 import com.wavefront.topology.TraceTopology;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -42,6 +50,10 @@ public class GeneratorConfig {
       "per second).")
   private Integer spansRate = 100;
 
+  @Parameter(names = {"--burst"}, description = "Number of spans which can be sent at once to " +
+      "catch up the rate after a delay. If not set, spans of 100 milliseconds are allowed.")
+  private Integer burstSize = 0;
+
   @Parameter(names = {"--traceTypesCount"}, description = "Number of traces types for " +
       "auto-generation.")
   private Integer traceTypesCount = 3;
@@ -50,6 +62,56 @@ public class GeneratorConfig {
       "generation. This parameter disables duration")
   private Integer totalTraceCount = 0;
 
+  @Parameter(names = {"--generatorThreads"}, description = "Number of threads generating " +
+      "traces in parallel.")
+  private Integer generatorThreads = 1;
+
+  @Parameter(names = {"--seed"}, description = "Seed for deterministic generation: every trace " +
+      "depends only on the seed and its index, so runs with the same seed generate the same " +
+      "traces, and so do workers splitting the traces.")
+  private Long seed = null;
+
+  @Parameter(names = {"--workerIndex"}, description = "Index of this worker, when several " +
+      "processes split the generation.")
+  private Integer workerIndex = 0;
+
+  @Parameter(names = {"--workers"}, description = "Number of processes splitting the " +
+      "generation, every one generates its share of the traces and of the rate.")
+  private Integer workers = 1;
+
+  @Parameter(names = {"--coordinatorPort"}, description = "Port to coordinate worker processes " +
+      "on. The coordinator doesn't generate traces itself, but starts --workers workers at the " +
+      "same moment and aggregates their statistics.")
+  private Integer coordinatorPort = 0;
+
+  @Parameter(names = {"--launchWorkers"}, description = "Launch the worker processes on this " +
+      "host with the same arguments, when coordinating.")
+  private boolean launchWorkers = false;
+
+  @Parameter(names = {"--coordinator"}, description = "Host and port of the coordinator " +
+      "(host:port). The worker starts generation when the coordinator tells it, and reports its " +
+      "statistics to it.")
+  private String coordinator = null;
+
+  @Parameter(names = {"--idGenerator"}, description = "Generator of trace and span IDs: SECURE " +
+      "(UUID.randomUUID()), RANDOM (fast random 128-bit IDs) or RANDOM_64 (fast random 64-bit " +
+      "IDs).")
+  private IdGenerator.Type idGenerator = IdGenerator.Type.RANDOM;
+
+  @Parameter(names = {"--idSeed"}, description = "Seed for generating the same IDs on every run " +
+      "by RANDOM and RANDOM_64 ID generators.")
+  private Long idSeed = null;
+
+  @Parameter(names = {"--templatePoolSize"}, description = "Number of trace templates of every " +
+      "trace type of a topology, every trace takes a random one.")
+  private Integer templatePoolSize = 1;
+
+  @Parameter(names = {"--templateRefreshInterval"}, description = "Interval between rebuilding " +
+      "two trace templates of a topology in the background (00h00m00.0s). Templates aren't " +
+      "rebuilt if it isn't set or the seed is set.",
+      converter = DurationStringConverter.class)
+  private Duration templateRefreshInterval = Duration.ZERO;
+
   @Parameter(names = {"--errorRate"}, description = "Percentage of erroneous traces.")
   private Integer errorRate = 0;
 
@@ -71,6 +133,7 @@ public class GeneratorConfig {
   private List<String> unparsedParams;
 
   private LinkedList<TraceTypePattern> traceTypePatterns;
+  private RateProfile rateProfile;
   private TraceTopology traceTopology;
 
   public GeneratorConfig() {
@@ -85,6 +148,7 @@ public class GeneratorConfig {
     // read JSON like DOM Parser
     JsonNode rootNode = objectMapper.readTree(jsonData);
     spansRate = rootNode.path("spansRate").asInt();
+    burstSize = rootNode.path("burstSize").asInt(0);
     duration = (new DurationStringConverter()).convert(rootNode.path("duration").asText());
     errorRate = rootNode.path("errorRate").asInt(0);
     debugRate = rootNode.path("debugRate").asInt(0);
@@ -92,6 +156,31 @@ public class GeneratorConfig {
     // parameters
     traceTypesCount = rootNode.path("traceTypesCount").asInt(0);
     totalTraceCount = rootNode.path("totalTraceCount").asInt(0);
+    generatorThreads = rootNode.path("generatorThreads").asInt(generatorThreads);
+    if (rootNode.hasNonNull("idGenerator")) {
+      idGenerator = IdGenerator.Type.valueOf(rootNode.path("idGenerator").asText());
+    }
+    if (rootNode.hasNonNull("seed")) {
+      seed = rootNode.path("seed").asLong();
+    }
+    if (rootNode.hasNonNull("idSeed")) {
+      idSeed = rootNode.path("idSeed").asLong();
+    }
+    templatePoolSize = rootNode.path("templatePoolSize").asInt(templatePoolSize);
+    if (rootNode.hasNonNull("templateRefreshInterval")) {
+      templateRefreshInterval = (new DurationStringConverter()).convert(
+          rootNode.path("templateRefreshInterval").asText());
+    }
+    if (rootNode.hasNonNull("rateProfile")) {
+      rateProfile = new RateProfile(objectMapper.readValue(
+          rootNode.path("rateProfile").toString(),
+          new TypeReference<List<RateProfile.Segment>>() {
+          }));
+      // The run lasts as long as the profile, so a count of traces may never be reached.
+      if (totalTraceCount > 0) {
+        throw new IllegalArgumentException("Rate profile can't be used with totalTraceCount!");
+      }
+    }
 
     if (traceTypesCount <= 0) {
       if (rootNode.findValue("traceTypePatterns") != null) {
@@ -121,15 +210,20 @@ public class GeneratorConfig {
     // generate traces with default parameters
     traceTypePatterns = new LinkedList<>();
     Random rand = new Random(System.currentTimeMillis());
+    // Seeded runs pick their own default values, the same for all workers.
+    final Random seededRandom = seed == null ? null : new XoshiroRandom(seed);
     for (int n = 0; n < traceTypesCount; n++) {
       traceTypePatterns.add(
           new TraceTypePattern(
               Defaults.DEFAULT_TYPE_NAME_PREFIX + (n + 1),
               Defaults.DEFAULT_SPAN_NAME_SUFFIX,
-              Defaults.DEFAULT_NESTING_LEVEL,
+              seededRandom == null ? Defaults.DEFAULT_NESTING_LEVEL :
+                  Defaults.getNestingLevel(seededRandom),
               100 / traceTypesCount,
-              Defaults.DEFAULT_SPANS_DISTRIBUTIONS,
-              Defaults.DEFAULT_TRACE_DURATIONS,
+              seededRandom == null ? Defaults.DEFAULT_SPANS_DISTRIBUTIONS :
+                  Defaults.getSpansDistributions(seededRandom),
+              seededRandom == null ? Defaults.DEFAULT_TRACE_DURATIONS :
+                  Defaults.getTraceDurations(seededRandom),
               Defaults.DEFAULT_MANDATORY_TAGS,
               errorRate,
               debugRate));
@@ -148,6 +242,26 @@ public class GeneratorConfig {
     return spansRate;
   }
 
+  /**
+   * @return Rate profile from the generator config file, or the constant spans rate during the
+   * duration (unlimited if the total trace count is set).
+   */
+  public RateProfile getRateProfile() {
+    return rateProfile != null ? rateProfile :
+        RateProfile.constant(spansRate, totalTraceCount > 0 ? null : duration);
+  }
+
+  /**
+   * @return True if the rate profile is set in the generator config file.
+   */
+  public boolean hasRateProfile() {
+    return rateProfile != null;
+  }
+
+  public Integer getBurstSize() {
+    return burstSize;
+  }
+
   public Duration getDuration() {
     return duration;
   }
@@ -176,11 +290,112 @@ public class GeneratorConfig {
     return totalTraceCount;
   }
 
+  public Integer getGeneratorThreads() {
+    return generatorThreads;
+  }
+
+  public Long getSeed() {
+    return seed;
+  }
+
+  public Integer getWorkerIndex() {
+    return workerIndex;
+  }
+
+  public Integer getWorkers() {
+    return workers;
+  }
+
+  public Integer getCoordinatorPort() {
+    return coordinatorPort;
+  }
+
+  public boolean isLaunchWorkers() {
+    return launchWorkers;
+  }
+
+  public String getCoordinator() {
+    return coordinator;
+  }
+
+  /**
+   * @return True if the loader coordinates workers instead of generating traces itself.
+   */
+  public boolean isCoordinating() {
+    return coordinator == null && coordinatorPort > 0;
+  }
+
+  public Integer getTemplatePoolSize() {
+    return templatePoolSize;
+  }
+
+  public Duration getTemplateRefreshInterval() {
+    return templateRefreshInterval;
+  }
+
+  public IdGenerator.Type getIdGenerator() {
+    return idGenerator;
+  }
+
+  public Long getIdSeed() {
+    return idSeed;
+  }
+
+  /**
+   * Creates ID generator for a generator thread. With the ID seed set, every thread gets its own
+   * sequence of IDs derived from the seed. Otherwise, with the seed set, IDs are generated by the
+   * random of the generator, so they are determined by the seed and the trace index.
+   *
+   * @param partition       Index of the generator thread over all workers.
+   * @param generatorRandom Random of the generator.
+   * @return ID generator of the configured type.
+   */
+  public IdGenerator createIdGenerator(int partition, Random generatorRandom) {
+    if (idGenerator == IdGenerator.Type.SECURE) {
+      return new SecureIdGenerator();
+    }
+    final Random random;
+    if (idSeed != null) {
+      random = new XoshiroRandom(idSeed + partition * 0x9e3779b97f4a7c15L);
+    } else if (seed != null) {
+      random = generatorRandom;
+    } else {
+      random = new XoshiroRandom();
+    }
+    return new RandomIdGenerator(random, idGenerator == IdGenerator.Type.RANDOM_64);
+  }
+
   public String getStatisticsFile() {
     return statisticsFile;
   }
 
-  public TraceGenerator getGenerator(DataQueue dataQueue) {
+  /**
+   * @return Generator of traces, running several generators in parallel if more than one
+   * generator thread is set, or null if neither patterns nor topology are set.
+   */
+  public BasicGenerator getGenerator(DataQueue dataQueue) {
+    final int threads = Math.max(1, generatorThreads);
+    // Threads of all workers split the traces, workers get consecutive parts.
+    final int partitions = Math.max(1, workers) * threads;
+    final long partitionSeed = seed != null ? seed : new Random().nextLong();
+    final List<TraceGenerator> generators = new ArrayList<>();
+    for (int n = 0; n < threads; n++) {
+      final TraceGenerator generator = createTraceGenerator(dataQueue);
+      if (generator == null) {
+        return null;
+      }
+      final int partition = workerIndex * threads + n;
+      generator.setPartition(partition, partitions, partitionSeed);
+      if (seed != null) {
+        generator.setSeed(seed);
+      }
+      generator.setIdGenerator(createIdGenerator(partition, generator.getRandom()));
+      generators.add(generator);
+    }
+    return threads == 1 ? generators.get(0) : new ParallelGenerator(dataQueue, generators);
+  }
+
+  private TraceGenerator createTraceGenerator(DataQueue dataQueue) {
     if (traceTypePatterns != null) {
       return new FromPatternGenerator(this, dataQueue);
     } else if (traceTopology != null) {
@@ -11,15 +11,40 @@ import javax.annotation.Nonnull;
  * @author Norayr Chaparyan (nchaparyan@vmware.com)
  */
 public abstract class DistributionIterator<T extends Distribution> {
-  protected static final Random RANDOM = new Random(System.currentTimeMillis());
   protected List<T> distributions;
+  /**
+   * Random of the generator using the iterator.
+   */
+  @Nonnull
+  protected final Random random;
 
-  protected DistributionIterator(@Nonnull List<T> distributions) {
+  protected DistributionIterator(@Nonnull List<T> distributions, @Nonnull Random random) {
     this.distributions = distributions;
+    this.random = random;
   }
 
   /**
    * @return the next distribution to be generated.
    */
   public abstract T getNextDistribution();
+
+  /**
+   * Seekable access to the distributions, see {@link ExactDistributionIterator#getDistribution}.
+   * Iterators without it return the next distribution, which depends only on the random.
+   *
+   * @param index Index of the item.
+   * @return Distribution of the item.
+   */
+  public T getDistribution(int index) {
+    return getNextDistribution();
+  }
+
+  /**
+   * @param index Index of the item.
+   * @return Index of the item among the items of its distribution, if the iterator supports the
+   * seekable access, or the given index otherwise.
+   */
+  public int getIndexInDistribution(int index) {
+    return index;
+  }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.wavefront.datastructures;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * An iterator for providing distributions to generate exact numbers of items according to
@@ -10,11 +13,125 @@ import java.util.List;
  * @author Norayr Chaparyan (nchaparyan@vmware.com)
  */
 public class ExactDistributionIterator<T extends Distribution> extends DistributionIterator<T> {
+  private final Map<T, Range> ranges = new IdentityHashMap<>();
+  /**
+   * Distributions in the order their items are laid out, and the first item of every one of them,
+   * for the seekable access.
+   */
+  private final int count;
+  private final List<T> layout;
+  private final int[] starts;
+  private final IndexPermutation permutation;
 
-  public ExactDistributionIterator(List<T> distributions, int count) {
-    super(distributions);
-    Collections.shuffle(distributions);
+  public ExactDistributionIterator(List<T> distributions, int count, Random random) {
+    this(distributions, count, 0, count, random, random);
+  }
+
+  /**
+   * Constructor for iterating over a part of the items. The items of all distributions are laid
+   * out one after another, and only the given range of them is iterated over. So iterators over
+   * adjacent ranges, constructed with equally seeded shuffle randoms, together give exactly the
+   * same numbers of items as a single iterator over all of them. The same holds for the seekable
+   * access by {@link #getDistribution(int)}.
+   *
+   * @param distributions Distributions, the list is shuffled.
+   * @param count         Total number of items.
+   * @param from          Start of the range of items (inclusive).
+   * @param to            End of the range of items (exclusive).
+   * @param shuffleRandom Random used for shuffling distributions.
+   * @param random        Random used for picking distributions.
+   */
+  public ExactDistributionIterator(List<T> distributions, int count, int from, int to,
+                                   Random shuffleRandom, Random random) {
+    super(distributions, random);
+    Collections.shuffle(distributions, shuffleRandom);
     calculateDistributionsPortions(count);
+    this.count = count;
+    this.layout = List.copyOf(distributions);
+    this.starts = new int[layout.size()];
+    this.permutation = new IndexPermutation(count, shuffleRandom.nextLong());
+    int start = 0;
+    for (int n = 0; n < layout.size(); n++) {
+      final T distribution = layout.get(n);
+      final int total = (int) distribution.portion;
+      starts[n] = start;
+      final int rangeFrom = Math.min(Math.max(from - start, 0), total);
+      final int rangeTo = Math.max(Math.min(to - start, total), rangeFrom);
+      ranges.put(distribution, new Range(total, rangeFrom, rangeTo));
+      distribution.portion = rangeTo - rangeFrom;
+      start += total;
+    }
+  }
+
+  /**
+   * Seekable access to the items: the distribution of an item depends only on its index and the
+   * shuffle random the iterator was constructed with, not on the items iterated before. Items are
+   * permuted pseudo-randomly, so the distributions are mixed over any range of indexes.
+   *
+   * @param index Index of the item in [0, count).
+   * @return Distribution of the item, or null if the index is out of range.
+   */
+  @Override
+  public T getDistribution(int index) {
+    final int n = locate(index);
+    return n < 0 ? null : layout.get(n);
+  }
+
+  /**
+   * @param index Index of the item in [0, count).
+   * @return Index of the item among the items of its distribution, or -1 if the index is out of
+   * range.
+   */
+  @Override
+  public int getIndexInDistribution(int index) {
+    final int n = locate(index);
+    return n < 0 ? -1 : permutation.apply(index) - starts[n];
+  }
+
+  private int locate(int index) {
+    if (index < 0 || index >= count || layout.isEmpty()) {
+      return -1;
+    }
+    final int slot = permutation.apply(index);
+    // The last distribution starting at or before the slot, the empty ones are skipped.
+    int low = 0;
+    int high = starts.length - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (starts[middle] <= slot) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    final Range range = ranges.get(layout.get(low));
+    return slot < starts[low] + range.total ? low : -1;
+  }
+
+  /**
+   * @param distribution One of the distributions of the iterator.
+   * @return Items of the distribution and the range of them iterated over.
+   */
+  public Range getRange(T distribution) {
+    return ranges.get(distribution);
+  }
+
+  /**
+   * Range of items of a distribution.
+   */
+  public static class Range {
+    /**
+     * Number of items of the distribution over all ranges.
+     */
+    public final int total;
+    public final int from;
+    public final int to;
+
+    Range(int total, int from, int to) {
+      this.total = total;
+      this.from = from;
+      this.to = to;
+    }
   }
 
   /**
@@ -53,7 +170,7 @@ public class ExactDistributionIterator<T extends Distribution> extends Distribut
    */
   protected int weightedRand(int sumOfPercentages){
     int index = 0;
-    int rand = RANDOM.nextInt(sumOfPercentages);
+    int rand = random.nextInt(sumOfPercentages);
     for(int i = 0; i < distributions.size(); i++){
       if(distributions.get(i).percentage > rand){
         index = i;
@@ -0,0 +1,125 @@
+package com.wavefront.datastructures;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntPredicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Consistent hash ring mapping trace IDs to nodes. Every node is placed on the ring at several
+ * points derived from its name, so the keys are spread evenly and adding or removing a node moves
+ * only the keys of that node.
+ */
+@Immutable
+public class HashRing {
+  private final int nodesCount;
+  /**
+   * Sorted positions of the points on the ring and the nodes owning them.
+   */
+  private final long[] points;
+  private final int[] owners;
+
+  /**
+   * HashRing constructor.
+   *
+   * @param nodes        Names of the nodes, must be distinct.
+   * @param virtualNodes Number of points of every node on the ring.
+   */
+  public HashRing(@Nonnull List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty() || virtualNodes <= 0) {
+      throw new IllegalArgumentException("Hash ring must have nodes and virtual nodes!");
+    }
+    this.nodesCount = nodes.size();
+    final int size = nodesCount * virtualNodes;
+    final long[] keys = new long[size];
+    final int[] nodeOf = new int[size];
+    final Integer[] order = new Integer[size];
+    for (int node = 0; node < nodesCount; node++) {
+      final long nodeHash = hash(nodes.get(node));
+      for (int n = 0; n < virtualNodes; n++) {
+        final int index = node * virtualNodes + n;
+        keys[index] = mix(nodeHash + n * 0x9e3779b97f4a7c15L);
+        nodeOf[index] = node;
+        order[index] = index;
+      }
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+    this.points = new long[size];
+    this.owners = new int[size];
+    for (int n = 0; n < size; n++) {
+      points[n] = keys[order[n]];
+      owners[n] = nodeOf[order[n]];
+    }
+  }
+
+  public int getNodesCount() {
+    return nodesCount;
+  }
+
+  /**
+   * @param traceUUID Trace ID.
+   * @return Index of the node owning the trace.
+   */
+  public int getNode(@Nonnull UUID traceUUID) {
+    return owners[firstPoint(traceUUID)];
+  }
+
+  /**
+   * Finds the owner of the trace among available nodes, going clockwise from the trace position.
+   * So the keys of an unavailable node are spread among the others, while the keys of available
+   * nodes stay where they are.
+   *
+   * @param traceUUID Trace ID.
+   * @param available Tells whether the node with the given index is available.
+   * @return Index of the first available node, or of the owner if none of the nodes is available.
+   */
+  public int getNode(@Nonnull UUID traceUUID, @Nonnull IntPredicate available) {
+    final int first = firstPoint(traceUUID);
+    for (int n = 0; n < points.length; n++) {
+      final int node = owners[(first + n) % points.length];
+      if (available.test(node)) {
+        return node;
+      }
+    }
+    return owners[first];
+  }
+
+  private int firstPoint(UUID traceUUID) {
+    final long key = mix(traceUUID.getMostSignificantBits() ^
+        mix(traceUUID.getLeastSignificantBits()));
+    final int index = Arrays.binarySearch(points, key);
+    if (index >= 0) {
+      return index;
+    }
+    final int insertion = -index - 1;
+    return insertion == points.length ? 0 : insertion;
+  }
+
+  /**
+   * FNV-1a hash of the name.
+   */
+  private static long hash(String name) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Finalization step of MurmurHash3, spreads the bits over the whole ring.
+   */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
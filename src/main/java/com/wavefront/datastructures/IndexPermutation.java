@@ -0,0 +1,66 @@
+package com.wavefront.datastructures;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Keyed pseudo-random permutation of indexes [0, size). Indexes are mixed by a small Feistel
+ * network over the enclosing power of two, and the results outside the range are mixed again
+ * (cycle walking), so the permutation of any index is computed independently of the others.
+ */
+@Immutable
+class IndexPermutation {
+  private static final int ROUNDS = 4;
+  private final int size;
+  private final int halfBits;
+  private final long halfMask;
+  private final long[] keys = new long[ROUNDS];
+
+  /**
+   * IndexPermutation constructor.
+   *
+   * @param size Number of indexes.
+   * @param key  Key selecting the permutation.
+   */
+  IndexPermutation(int size, long key) {
+    this.size = size;
+    final int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1)));
+    this.halfBits = (bits + 1) / 2;
+    this.halfMask = (1L << halfBits) - 1;
+    for (int n = 0; n < ROUNDS; n++) {
+      key += 0x9e3779b97f4a7c15L;
+      keys[n] = mix(key);
+    }
+  }
+
+  /**
+   * @param index Index in [0, size).
+   * @return Permuted index in [0, size).
+   */
+  int apply(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of [0, " + size + ")");
+    }
+    long value = index;
+    do {
+      value = encrypt(value);
+    } while (value >= size);
+    return (int) value;
+  }
+
+  private long encrypt(long value) {
+    long left = value >>> halfBits;
+    long right = value & halfMask;
+    for (long key : keys) {
+      final long next = left ^ (mix(right ^ key) & halfMask);
+      left = right;
+      right = next;
+    }
+    return (left << halfBits) | right;
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -1,6 +1,7 @@
 package com.wavefront.datastructures;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * An iterator for providing distributions to generate random numbers of items.
@@ -8,8 +9,8 @@ import java.util.List;
  * @author Norayr Chaparyan (nchaparyan@vmware.com)
  */
 public class RandomDistributionIterator<T extends Distribution> extends DistributionIterator<T> {
-  public RandomDistributionIterator(List<T> distributions) {
-    super(distributions);
+  public RandomDistributionIterator(List<T> distributions, Random random) {
+    super(distributions, random);
     calculateDistributionsPortions();
   }
 
@@ -26,11 +27,22 @@ public class RandomDistributionIterator<T extends Distribution> extends Distribu
 
   @Override
   public T getNextDistribution() {
+    return getNextDistribution(random);
+  }
+
+  /**
+   * The iterator has no state besides the random, so the distributions can be drawn by another
+   * random as well, in another thread, once the portions are calculated.
+   *
+   * @param random Random to draw the distribution by.
+   * @return the next distribution drawn by the given random.
+   */
+  public T getNextDistribution(Random random) {
     if (distributions.isEmpty()) {
       return null;
     }
     // A binary search algorithm is used to find the index of the next distribution.
-    final double randomNumber = distributions.get(distributions.size() - 1).portion * RANDOM.nextDouble();
+    final double randomNumber = distributions.get(distributions.size() - 1).portion * random.nextDouble();
     int firstIndex = 0;
     int lastIndex = distributions.size() - 1;
     int middleIndex = 0;
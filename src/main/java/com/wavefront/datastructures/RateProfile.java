@@ -0,0 +1,270 @@
+package com.wavefront.datastructures;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.wavefront.helpers.DurationStringConverter;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Time-varying rate of spans defined as a sequence of segments (constant, ramp, step, sine and
+ * spike). The number of spans is computed from the closed-form integral of the rate, so it
+ * doesn't drift however the time is sampled.
+ */
+public class RateProfile {
+  private final List<Segment> segments;
+
+  public RateProfile(@Nonnull List<Segment> segments) {
+    if (segments.isEmpty()) {
+      throw new IllegalArgumentException("Rate profile must contain at least one segment!");
+    }
+    this.segments = List.copyOf(segments);
+  }
+
+  /**
+   * Creates a profile with the constant rate.
+   *
+   * @param spansRate Rate of spans per second.
+   * @param duration  Duration of the profile, or null if it's unlimited.
+   * @return Rate profile.
+   */
+  public static RateProfile constant(double spansRate, @Nullable Duration duration) {
+    return new RateProfile(List.of(new Segment(Segment.Type.CONSTANT, spansRate, spansRate,
+        duration == null ? Double.POSITIVE_INFINITY : duration.toMillis() / 1000.0, 1, 0, 0)));
+  }
+
+  /**
+   * @return Total duration of the profile in seconds, may be infinite.
+   */
+  public double getDurationSeconds() {
+    return segments.stream().mapToDouble(segment -> segment.duration).sum();
+  }
+
+  /**
+   * @return Total number of spans of the profile, may be infinite.
+   */
+  public double getTotalSpans() {
+    return segments.stream().mapToDouble(segment -> segment.spansUntil(segment.duration)).sum();
+  }
+
+  /**
+   * @return New cursor for walking through the profile from its beginning.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Walks through the profile forward in time. Only the current segment is evaluated, so the
+   * cost of every step doesn't depend on the number of segments or the elapsed time.
+   */
+  @NotThreadSafe
+  public class Cursor {
+    private int index = 0;
+    /**
+     * Start of the current segment (seconds since the profile start).
+     */
+    private double segmentStart = 0;
+    /**
+     * Time of the last step (seconds since the profile start).
+     */
+    private double position = 0;
+
+    private Cursor() {
+    }
+
+    /**
+     * Moves the cursor to the given moment.
+     *
+     * @param elapsedSeconds Time since the profile start, must not decrease between calls.
+     * @return Number of spans (fractional) between the previous and the given moments.
+     */
+    public double advance(double elapsedSeconds) {
+      double spans = 0;
+      while (index < segments.size()) {
+        final Segment segment = segments.get(index);
+        final double from = position - segmentStart;
+        if (elapsedSeconds < segmentStart + segment.duration) {
+          spans += segment.spansUntil(elapsedSeconds - segmentStart) - segment.spansUntil(from);
+          break;
+        }
+        spans += segment.spansUntil(segment.duration) - segment.spansUntil(from);
+        segmentStart += segment.duration;
+        position = segmentStart;
+        index++;
+      }
+      position = Math.max(position, elapsedSeconds);
+      return spans;
+    }
+
+    /**
+     * @return Rate of spans per second at the current moment, 0 after the end of the profile.
+     */
+    public double getRate() {
+      return index < segments.size() ?
+          segments.get(index).rateAt(position - segmentStart) : 0;
+    }
+
+    public boolean isComplete() {
+      return index >= segments.size();
+    }
+  }
+
+  /**
+   * Segment of the rate profile. Every segment goes from the "from" rate to the "to" rate in its
+   * own way.
+   */
+  public static class Segment {
+    public enum Type {
+      /**
+       * The "from" rate during the whole segment.
+       */
+      @JsonProperty("constant")
+      CONSTANT,
+      /**
+       * Linear change from the "from" rate to the "to" rate.
+       */
+      @JsonProperty("ramp")
+      RAMP,
+      /**
+       * Ladder of "steps" equal steps from the "from" rate to the "to" rate.
+       */
+      @JsonProperty("step")
+      STEP,
+      /**
+       * Sine wave starting at the "from" rate and reaching the "to" rate in the middle of every
+       * period.
+       */
+      @JsonProperty("sine")
+      SINE,
+      /**
+       * The "from" rate with the "to" rate during the first "spikeDuration" of every period.
+       */
+      @JsonProperty("spike")
+      SPIKE
+    }
+
+    private final Type type;
+    private final double from;
+    private final double to;
+    /**
+     * Durations are kept in seconds.
+     */
+    private final double duration;
+    private final int steps;
+    private final double period;
+    private final double spikeDuration;
+
+    private Segment(Type type, double from, double to, double duration, int steps,
+                    double period, double spikeDuration) {
+      this.type = type;
+      this.from = from;
+      this.to = to;
+      this.duration = duration;
+      this.steps = steps;
+      this.period = period;
+      this.spikeDuration = spikeDuration;
+    }
+
+    @JsonCreator
+    public static Segment fromJson(@JsonProperty("type") Type type,
+                                   @JsonProperty("duration") String duration,
+                                   @JsonProperty("from") double from,
+                                   @JsonProperty("to") Double to,
+                                   @JsonProperty("steps") Integer steps,
+                                   @JsonProperty("period") String period,
+                                   @JsonProperty("spikeDuration") String spikeDuration) {
+      if (type == null || duration == null) {
+        throw new IllegalArgumentException("Rate profile segment must have type and duration!");
+      }
+      final Segment segment = new Segment(type, from, to == null ? from : to,
+          toSeconds(duration), steps == null ? 1 : steps, toSeconds(period),
+          toSeconds(spikeDuration));
+      segment.validate();
+      return segment;
+    }
+
+    private static double toSeconds(@Nullable String duration) {
+      return duration == null ? 0 :
+          new DurationStringConverter().convert(duration).toMillis() / 1000.0;
+    }
+
+    private void validate() {
+      if (duration <= 0 || from < 0 || to < 0) {
+        throw new IllegalArgumentException("Rate profile segment must have positive duration " +
+            "and non-negative rates!");
+      }
+      if (type == Type.STEP && steps <= 0) {
+        throw new IllegalArgumentException("Step segment must have positive steps!");
+      }
+      if ((type == Type.SINE || type == Type.SPIKE) && period <= 0) {
+        throw new IllegalArgumentException(type + " segment must have positive period!");
+      }
+      if (type == Type.SPIKE && (spikeDuration <= 0 || spikeDuration > period)) {
+        throw new IllegalArgumentException("Spike segment must have spikeDuration within the " +
+            "period!");
+      }
+    }
+
+    /**
+     * @param t Time since the segment start (seconds).
+     * @return Rate at the given moment.
+     */
+    double rateAt(double t) {
+      switch (type) {
+        case RAMP:
+          return from + (to - from) * t / duration;
+        case STEP:
+          return stepRate(Math.min((int) (t * steps / duration), steps - 1));
+        case SINE:
+          return (from + to) / 2 - (to - from) / 2 * Math.cos(2 * Math.PI * t / period);
+        case SPIKE:
+          return t % period < spikeDuration ? to : from;
+        default:
+          return from;
+      }
+    }
+
+    /**
+     * @param t Time since the segment start (seconds).
+     * @return Number of spans from the segment start till the given moment (integral of the
+     * rate).
+     */
+    double spansUntil(double t) {
+      if (t <= 0) {
+        return 0;
+      }
+      switch (type) {
+        case RAMP:
+          return from * t + (to - from) * t * t / (2 * duration);
+        case STEP:
+          final double stepDuration = duration / steps;
+          final int fullSteps = Math.min((int) (t / stepDuration), steps - 1);
+          // Sum of rates of the full steps is an arithmetic progression.
+          final double fullStepsRates = fullSteps * from +
+              (steps > 1 ? (to - from) / (steps - 1) * fullSteps * (fullSteps - 1) / 2 : 0);
+          return fullStepsRates * stepDuration +
+              stepRate(fullSteps) * (t - fullSteps * stepDuration);
+        case SINE:
+          return (from + to) / 2 * t -
+              (to - from) / 2 * period / (2 * Math.PI) * Math.sin(2 * Math.PI * t / period);
+        case SPIKE:
+          final double periods = Math.floor(t / period);
+          final double rest = t - periods * period;
+          return periods * (to * spikeDuration + from * (period - spikeDuration)) +
+              to * Math.min(rest, spikeDuration) + from * Math.max(rest - spikeDuration, 0);
+        default:
+          return from * t;
+      }
+    }
+
+    private double stepRate(int step) {
+      return steps > 1 ? from + (to - from) * step / (steps - 1) : from;
+    }
+  }
+}
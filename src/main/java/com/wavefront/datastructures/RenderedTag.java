@@ -0,0 +1,32 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.sdk.common.Pair;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Span tag with its part of the span line rendered once by the span line renderer of the sinks,
+ * which copies it instead of rendering the tag for every span. Tags shared by many spans, like the
+ * tag values of services and patterns, should be created as rendered tags. Otherwise it's the
+ * same pair.
+ */
+@Immutable
+public final class RenderedTag extends Pair<String, String> {
+  private final byte[] line;
+
+  /**
+   * RenderedTag constructor.
+   *
+   * @param key   Tag key.
+   * @param value Tag value.
+   * @param line  The tag rendered as a part of the span line, starting with the space.
+   */
+  public RenderedTag(String key, String value, byte[] line) {
+    super(key, value);
+    this.line = line;
+  }
+
+  public byte[] getLine() {
+    return line;
+  }
+}
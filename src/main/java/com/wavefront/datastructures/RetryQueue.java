@@ -0,0 +1,93 @@
+package com.wavefront.datastructures;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Bounded queue of spans whose sending failed. Every span keeps the number of failed attempts
+ * and the moment it's due for the next attempt, so spans are retried in order of their backoff.
+ */
+@NotThreadSafe
+public class RetryQueue {
+  private final PriorityQueue<Retry> retries =
+      new PriorityQueue<>(Comparator.comparingLong(Retry::getDueNanos));
+  private final int capacity;
+
+  public RetryQueue(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Adds a span for retrying if the queue isn't full.
+   *
+   * @param span     Span whose sending failed.
+   * @param attempts Number of failed attempts of the span.
+   * @param dueNanos Moment ({@link System#nanoTime()} based) of the next attempt.
+   * @return False if the queue is full.
+   */
+  public boolean offer(@Nonnull Span span, int attempts, long dueNanos) {
+    if (retries.size() >= capacity) {
+      return false;
+    }
+    return retries.add(new Retry(span, attempts, dueNanos));
+  }
+
+  /**
+   * Retrieves and removes the earliest retry if it's due.
+   *
+   * @param nowNanos Current time ({@link System#nanoTime()} based).
+   * @return Due retry or null.
+   */
+  @Nullable
+  public Retry pollDue(long nowNanos) {
+    final Retry retry = retries.peek();
+    return retry != null && retry.dueNanos - nowNanos <= 0 ? retries.poll() : null;
+  }
+
+  /**
+   * @return Moment of the earliest retry or Long.MAX_VALUE if the queue is empty.
+   */
+  public long getNextDueNanos() {
+    final Retry retry = retries.peek();
+    return retry == null ? Long.MAX_VALUE : retry.dueNanos;
+  }
+
+  public int size() {
+    return retries.size();
+  }
+
+  public boolean isEmpty() {
+    return retries.isEmpty();
+  }
+
+  /**
+   * Span waiting for the next attempt.
+   */
+  public static class Retry {
+    private final Span span;
+    private final int attempts;
+    private final long dueNanos;
+
+    private Retry(Span span, int attempts, long dueNanos) {
+      this.span = span;
+      this.attempts = attempts;
+      this.dueNanos = dueNanos;
+    }
+
+    public Span getSpan() {
+      return span;
+    }
+
+    public int getAttempts() {
+      return attempts;
+    }
+
+    public long getDueNanos() {
+      return dueNanos;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.wavefront.datastructures;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Bounded lock-free multi-producer/multi-consumer queue based on a ring of sequenced slots (the
+ * D. Vyukov bounded MPMC algorithm). Every slot carries a sequence number which tells producers
+ * and consumers whether the slot is free for writing or ready for reading, so neither side
+ * takes a lock and no per-element node is allocated.
+ *
+ * @param <T> Type of elements.
+ */
+@ThreadSafe
+public class RingBuffer<T> {
+  private static final long MAX_PARK_NANOS = 1_000_000;
+
+  /**
+   * Strategy applied by {@link #put(Object)} when the buffer is full.
+   */
+  public enum WaitStrategy {
+    /**
+     * Park the producer thread with a growing back-off until space is available.
+     */
+    BLOCKING,
+    /**
+     * Busy-spin the producer thread until space is available. Lowest latency, burns a core.
+     */
+    SPINNING
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+  private final AtomicReferenceArray<T> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong(0);
+  private final AtomicLong tail = new AtomicLong(0);
+
+  /**
+   * RingBuffer constructor.
+   *
+   * @param capacity     Requested capacity, rounded up to the next power of two.
+   * @param waitStrategy Strategy for waiting when the buffer is full.
+   */
+  public RingBuffer(int capacity, @Nonnull WaitStrategy waitStrategy) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("RingBuffer capacity must be in range [1..2^30]!");
+    }
+    this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = this.capacity - 1;
+    this.waitStrategy = waitStrategy;
+    this.slots = new AtomicReferenceArray<>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int n = 0; n < this.capacity; n++) {
+      sequences.set(n, n);
+    }
+  }
+
+  /**
+   * Adds an element if there is free space.
+   *
+   * @param element Element to be added.
+   * @return False if the buffer is full.
+   */
+  public boolean offer(@Nonnull T element) {
+    long position = tail.get();
+    while (true) {
+      final int index = (int) (position & mask);
+      final long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.lazySet(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Adds an element, waiting according to the {@link WaitStrategy} while the buffer is full.
+   *
+   * @param element Element to be added.
+   * @throws InterruptedException If the waiting thread was interrupted.
+   */
+  public void put(@Nonnull T element) throws InterruptedException {
+    long parkNanos = 1_000;
+    while (!offer(element)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (waitStrategy == WaitStrategy.SPINNING) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(parkNanos);
+        parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+      }
+    }
+  }
+
+  /**
+   * Retrieves and removes the oldest element.
+   *
+   * @return The oldest element or null if the buffer is empty.
+   */
+  @Nullable
+  public T poll() {
+    long position = head.get();
+    while (true) {
+      final int index = (int) (position & mask);
+      final long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          final T element = slots.get(index);
+          slots.lazySet(index, null);
+          sequences.set(index, position + capacity);
+          return element;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Moves up to {@code max} of the oldest elements to the given collection.
+   *
+   * @param buffer Destination collection.
+   * @param max    Maximal number of elements to be moved.
+   * @return Number of moved elements.
+   */
+  public int drainTo(@Nonnull Collection<? super T> buffer, int max) {
+    int drained = 0;
+    T element;
+    while (drained < max && (element = poll()) != null) {
+      buffer.add(element);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * @return Approximate number of elements, exact only when producers and consumers are idle.
+   */
+  public int size() {
+    while (true) {
+      final long currentHead = head.get();
+      final long currentTail = tail.get();
+      if (currentHead == head.get()) {
+        return (int) Math.max(0, Math.min(currentTail - currentHead, capacity));
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+}
@@ -1,5 +1,6 @@
 package com.wavefront.datastructures;
 
+import com.wavefront.ids.RandomIdGenerator;
 import com.wavefront.sdk.common.Pair;
 import com.wavefront.sdk.common.Utils;
 import com.wavefront.sdk.entities.tracing.SpanLog;
@@ -32,10 +33,23 @@ public class Span {
   @Nullable
   private List<SpanLog> spanLogs;
   private final SpanKind kind;
-
+  /**
+   * Moment ({@link System#nanoTime()} based) the span should be sent at according to the rate
+   * profile, or 0 if it's unknown.
+   */
+  private long intendedNanos = 0;
+  /**
+   * Moment ({@link System#nanoTime()} based) the span was added to the data queue.
+   */
+  private long queuedNanos = 0;
+  /**
+   * Beginning of the span line rendered beforehand, or null if the line is rendered as a whole.
+   */
+  @Nullable
+  private SpanLineTemplate lineTemplate = null;
 
   public Span() {
-    spanUUID = UUID.randomUUID();
+    spanUUID = RandomIdGenerator.current().nextId();
     kind = SpanKind.REGULAR;
   }
 
@@ -111,6 +125,31 @@ public class Span {
 
   public SpanKind getKind() { return kind; }
 
+  public long getIntendedNanos() {
+    return intendedNanos;
+  }
+
+  public void setIntendedNanos(long intendedNanos) {
+    this.intendedNanos = intendedNanos;
+  }
+
+  public long getQueuedNanos() {
+    return queuedNanos;
+  }
+
+  public void setQueuedNanos(long queuedNanos) {
+    this.queuedNanos = queuedNanos;
+  }
+
+  @Nullable
+  public SpanLineTemplate getLineTemplate() {
+    return lineTemplate;
+  }
+
+  public void setLineTemplate(@Nullable SpanLineTemplate lineTemplate) {
+    this.lineTemplate = lineTemplate;
+  }
+
   /**
    * Add parent span to the current span.
    *
@@ -0,0 +1,249 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compact binary form of spans. Counts and lengths are variable length integers. With a
+ * {@link SpanDictionary} names, sources and tag keys, rendered tags and line templates are
+ * written as dictionary ids, so decoded spans share them and keep rendering from the pre-rendered
+ * bytes. Without it everything is written inline and line templates are dropped.
+ */
+final class SpanCodec {
+  /**
+   * Reference to a value written inline, dictionary ids are written shifted above it.
+   */
+  private static final int INLINE = 1;
+
+  private SpanCodec() {
+  }
+
+  /**
+   * Writes the span.
+   *
+   * @throws java.nio.BufferOverflowException if the span doesn't fit into the buffer.
+   */
+  static void encode(Span span, ByteBuffer buffer, @Nullable SpanDictionary dictionary) {
+    buffer.put((byte) span.getKind().ordinal());
+    putName(buffer, span.getName(), dictionary);
+    buffer.putLong(span.getStartMillis());
+    buffer.putLong(span.getDuration());
+    putName(buffer, span.getSource(), dictionary);
+    putUUID(buffer, span.getTraceUUID());
+    putUUID(buffer, span.getSpanUUID());
+    putUUIDs(buffer, span.getParents());
+    putUUIDs(buffer, span.getFollowsFrom());
+    final List<Pair<String, String>> tags = span.getTags();
+    putCount(buffer, tags == null ? null : tags.size());
+    if (tags != null) {
+      for (Pair<String, String> tag : tags) {
+        // 0 stands for the tag written inline, others for the dictionary tags.
+        final int id = dictionary == null ? SpanDictionary.NO_ID : dictionary.getTagId(tag);
+        putVarInt(buffer, id + 1);
+        if (id == SpanDictionary.NO_ID) {
+          putName(buffer, tag._1, dictionary);
+          putString(buffer, tag._2);
+        }
+      }
+    }
+    final List<SpanLog> spanLogs = span.getSpanLogs();
+    putCount(buffer, spanLogs == null ? null : spanLogs.size());
+    if (spanLogs != null) {
+      for (SpanLog spanLog : spanLogs) {
+        buffer.putLong(spanLog.getTimestamp());
+        putCount(buffer, spanLog.getFields() == null ? null : spanLog.getFields().size());
+        if (spanLog.getFields() != null) {
+          for (Map.Entry<String, String> field : spanLog.getFields().entrySet()) {
+            putString(buffer, field.getKey());
+            putString(buffer, field.getValue());
+          }
+        }
+      }
+    }
+    buffer.putLong(span.getIntendedNanos());
+    buffer.putLong(span.getQueuedNanos());
+    final SpanLineTemplate template = span.getLineTemplate();
+    putVarInt(buffer, dictionary == null || template == null ? 0 :
+        dictionary.getTemplateId(template) + 1);
+  }
+
+  /**
+   * Reads the span written with the same dictionary.
+   */
+  static Span decode(ByteBuffer buffer, @Nullable SpanDictionary dictionary) {
+    final SpanKind kind = SpanKind.values()[buffer.get()];
+    final String name = getName(buffer, dictionary);
+    final long startMillis = buffer.getLong();
+    final long duration = buffer.getLong();
+    final String source = getName(buffer, dictionary);
+    final UUID traceUUID = getUUID(buffer);
+    final UUID spanUUID = getUUID(buffer);
+    final List<UUID> parents = getUUIDs(buffer);
+    final List<UUID> followsFrom = getUUIDs(buffer);
+    final int tagsCount = getCount(buffer);
+    List<Pair<String, String>> tags = null;
+    if (tagsCount >= 0) {
+      tags = new ArrayList<>(tagsCount);
+      for (int n = 0; n < tagsCount; n++) {
+        final int id = getVarInt(buffer) - 1;
+        tags.add(id == SpanDictionary.NO_ID ?
+            new Pair<>(getName(buffer, dictionary), getString(buffer)) : dictionary.getTag(id));
+      }
+    }
+    final int spanLogsCount = getCount(buffer);
+    List<SpanLog> spanLogs = null;
+    if (spanLogsCount >= 0) {
+      spanLogs = new ArrayList<>(spanLogsCount);
+      for (int n = 0; n < spanLogsCount; n++) {
+        final long timestamp = buffer.getLong();
+        final int fieldsCount = getCount(buffer);
+        Map<String, String> fields = null;
+        if (fieldsCount >= 0) {
+          fields = new HashMap<>();
+          for (int field = 0; field < fieldsCount; field++) {
+            fields.put(getString(buffer), getString(buffer));
+          }
+        }
+        spanLogs.add(new SpanLog(timestamp, fields));
+      }
+    }
+    final Span span = kind == SpanKind.STATISTICS ?
+        new StatSpan(name, startMillis, duration, source, traceUUID, spanUUID, parents,
+            followsFrom, tags, spanLogs) :
+        new Span(name, startMillis, duration, source, traceUUID, spanUUID, parents, followsFrom,
+            tags, spanLogs, kind);
+    span.setIntendedNanos(buffer.getLong());
+    span.setQueuedNanos(buffer.getLong());
+    final int templateId = getVarInt(buffer) - 1;
+    if (templateId >= 0) {
+      span.setLineTemplate(dictionary.getTemplate(templateId));
+    }
+    return span;
+  }
+
+  private static void putVarInt(ByteBuffer buffer, int value) {
+    while ((value & ~0x7f) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int getVarInt(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Counts and lengths are shifted by one, so 0 stands for null.
+   */
+  private static void putCount(ByteBuffer buffer, @Nullable Integer count) {
+    putVarInt(buffer, count == null ? 0 : count + 1);
+  }
+
+  private static int getCount(ByteBuffer buffer) {
+    return getVarInt(buffer) - 1;
+  }
+
+  /**
+   * Names are taken from the dictionary if possible: 0 stands for null, 1 for the name written
+   * inline, others for the dictionary strings.
+   */
+  private static void putName(ByteBuffer buffer, @Nullable String s,
+                              @Nullable SpanDictionary dictionary) {
+    if (s == null) {
+      putVarInt(buffer, 0);
+      return;
+    }
+    final int id = dictionary == null ? SpanDictionary.NO_ID : dictionary.getStringId(s);
+    if (id == SpanDictionary.NO_ID) {
+      putVarInt(buffer, INLINE);
+      putString(buffer, s);
+    } else {
+      putVarInt(buffer, id + INLINE + 1);
+    }
+  }
+
+  @Nullable
+  private static String getName(ByteBuffer buffer, @Nullable SpanDictionary dictionary) {
+    final int reference = getVarInt(buffer);
+    if (reference == 0) {
+      return null;
+    }
+    return reference == INLINE ? getString(buffer) :
+        dictionary.getString(reference - INLINE - 1);
+  }
+
+  private static void putString(ByteBuffer buffer, @Nullable String s) {
+    if (s == null) {
+      putCount(buffer, null);
+      return;
+    }
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    putCount(buffer, bytes.length);
+    buffer.put(bytes);
+  }
+
+  @Nullable
+  private static String getString(ByteBuffer buffer) {
+    final int length = getCount(buffer);
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void putUUID(ByteBuffer buffer, @Nullable UUID uuid) {
+    buffer.put((byte) (uuid == null ? 0 : 1));
+    if (uuid != null) {
+      buffer.putLong(uuid.getMostSignificantBits());
+      buffer.putLong(uuid.getLeastSignificantBits());
+    }
+  }
+
+  @Nullable
+  private static UUID getUUID(ByteBuffer buffer) {
+    return buffer.get() == 0 ? null : new UUID(buffer.getLong(), buffer.getLong());
+  }
+
+  private static void putUUIDs(ByteBuffer buffer, @Nullable List<UUID> uuids) {
+    putCount(buffer, uuids == null ? null : uuids.size());
+    if (uuids != null) {
+      for (UUID uuid : uuids) {
+        putUUID(buffer, uuid);
+      }
+    }
+  }
+
+  @Nullable
+  private static List<UUID> getUUIDs(ByteBuffer buffer) {
+    final int count = getCount(buffer);
+    if (count < 0) {
+      return null;
+    }
+    final List<UUID> uuids = new ArrayList<>(count);
+    for (int n = 0; n < count; n++) {
+      uuids.add(getUUID(buffer));
+    }
+    return uuids;
+  }
+}
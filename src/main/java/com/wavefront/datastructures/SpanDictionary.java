@@ -0,0 +1,135 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.sdk.common.Pair;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Dictionary of the values repeated across encoded spans: span names, sources and tag keys,
+ * rendered tags and span line templates. Encoded spans refer to them by ids, and decoded spans
+ * get the same instances back, so rendered tags and line templates are still rendered from their
+ * bytes. Every kind of values is limited in number, values beyond the limit are encoded inline.
+ */
+@ThreadSafe
+public final class SpanDictionary {
+  /**
+   * Id returned when the value isn't in the dictionary and can't be added to it.
+   */
+  static final int NO_ID = -1;
+  private final Entries<String> strings;
+  private final Entries<Pair<String, String>> tags;
+  private final Entries<SpanLineTemplate> templates;
+
+  /**
+   * @param maxEntries Maximal number of values of every kind.
+   */
+  public SpanDictionary(int maxEntries) {
+    this.strings = new Entries<>(maxEntries);
+    this.tags = new Entries<>(maxEntries);
+    this.templates = new Entries<>(maxEntries);
+  }
+
+  /**
+   * @return Id of the string, added if it's new, or {@link #NO_ID}.
+   */
+  int getStringId(@Nonnull String s) {
+    return strings.getId(s, true);
+  }
+
+  String getString(int id) {
+    return strings.get(id);
+  }
+
+  /**
+   * Only rendered tags are added, other tags get the id of the equal rendered tag if there is
+   * one.
+   *
+   * @return Id of the tag or {@link #NO_ID}.
+   */
+  int getTagId(@Nonnull Pair<String, String> tag) {
+    if (tag._1 == null || tag._2 == null) {
+      return NO_ID;
+    }
+    return tags.getId(tag, tag instanceof RenderedTag);
+  }
+
+  Pair<String, String> getTag(int id) {
+    return tags.get(id);
+  }
+
+  /**
+   * @return Id of the template, added if it's new, or {@link #NO_ID}. Templates are told apart by
+   * identity.
+   */
+  int getTemplateId(@Nonnull SpanLineTemplate template) {
+    return templates.getId(template, true);
+  }
+
+  SpanLineTemplate getTemplate(int id) {
+    return templates.get(id);
+  }
+
+  /**
+   * @return Number of strings, tags and templates in the dictionary.
+   */
+  public int size() {
+    return strings.size() + tags.size() + templates.size();
+  }
+
+  /**
+   * Values of one kind. Ids are looked up without locking, values are added under the lock.
+   */
+  private static final class Entries<T> {
+    private final int maxEntries;
+    private final ConcurrentHashMap<T, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * Values by ids. Replaced by a larger copy when full, so a reader which got an id from an
+     * encoded span always finds the value.
+     */
+    private volatile Object[] values = new Object[16];
+    private int count = 0;
+
+    Entries(int maxEntries) {
+      this.maxEntries = maxEntries;
+    }
+
+    int getId(T value, boolean adding) {
+      final Integer id = ids.get(value);
+      if (id != null) {
+        return id;
+      }
+      return adding ? add(value) : NO_ID;
+    }
+
+    private synchronized int add(T value) {
+      final Integer id = ids.get(value);
+      if (id != null) {
+        return id;
+      }
+      if (count >= maxEntries) {
+        return NO_ID;
+      }
+      if (count == values.length) {
+        values = Arrays.copyOf(values, count << 1);
+      }
+      values[count] = value;
+      ids.put(value, count);
+      return count++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    T get(int id) {
+      return (T) values[id];
+    }
+
+    synchronized int size() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.wavefront.datastructures;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Beginning of the span line, up to the tags, rendered once for all spans with the same name,
+ * source and number of parents, e.g. the spans generated from a trace template. The template is
+ * rendered by the span line renderer of the sinks. The IDs are at fixed positions of the line, so
+ * the renderer copies the line and writes the IDs of the span over them, instead of rendering the
+ * name and the source again.
+ */
+@Immutable
+public final class SpanLineTemplate {
+  private final String name;
+  @Nullable
+  private final String source;
+  private final int parents;
+  private final int followsFrom;
+  private final byte[] line;
+  /**
+   * Positions of the trace ID, the span ID, the parents and the follows from spans in the line.
+   */
+  private final int[] slots;
+
+  /**
+   * SpanLineTemplate constructor.
+   *
+   * @param name        Name of the spans.
+   * @param source      Source of the spans.
+   * @param parents     Number of parents of the spans.
+   * @param followsFrom Number of follows from spans of the spans.
+   * @param line        Rendered beginning of the line.
+   * @param slots       Positions of the IDs in the line.
+   */
+  public SpanLineTemplate(String name, @Nullable String source, int parents, int followsFrom,
+                          byte[] line, int[] slots) {
+    this.name = name;
+    this.source = source;
+    this.parents = parents;
+    this.followsFrom = followsFrom;
+    this.line = line;
+    this.slots = slots;
+  }
+
+  public byte[] getLine() {
+    return line;
+  }
+
+  public int[] getSlots() {
+    return slots;
+  }
+
+  /**
+   * @param span Span to be rendered.
+   * @return True if the template renders the beginning of the line of the span.
+   */
+  public boolean isTemplateOf(Span span) {
+    return name.equals(span.getName()) && Objects.equals(source, span.getSource()) &&
+        parents == size(span.getParents()) && followsFrom == size(span.getFollowsFrom());
+  }
+
+  private static int size(@Nullable List<UUID> uuids) {
+    return uuids == null ? 0 : uuids.size();
+  }
+}
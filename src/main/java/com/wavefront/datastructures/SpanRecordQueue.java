@@ -0,0 +1,218 @@
+package com.wavefront.datastructures;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Queue of spans kept as length-prefixed binary records instead of objects. Records are appended
+ * to segments, byte buffers of a fixed size, and read back in the order they were written.
+ * Consumed segments are recycled for writing, so a long run keeps reusing a few buffers. Spans
+ * are encoded by {@link SpanCodec}, with the optional {@link SpanDictionary} for the repeated
+ * values.
+ */
+@ThreadSafe
+public class SpanRecordQueue {
+  private static final int INITIAL_SCRATCH_SIZE = 4096;
+  private final SegmentAllocator allocator;
+  private final int segmentSize;
+  private final int maxFreeSegments;
+  @Nullable
+  private final SpanDictionary dictionary;
+  /**
+   * Segments being read from the first one and written to the last one.
+   */
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+  private ByteBuffer scratch = ByteBuffer.allocate(INITIAL_SCRATCH_SIZE);
+  private volatile int size = 0;
+  private volatile long bytes = 0;
+  private int createdSegments = 0;
+
+  /**
+   * Allocates the buffers of the segments.
+   */
+  @FunctionalInterface
+  public interface SegmentAllocator {
+    /**
+     * @param size Size of the segment in bytes.
+     * @return Buffer of the given capacity.
+     * @throws IOException if the buffer can't be allocated.
+     */
+    ByteBuffer allocate(int size) throws IOException;
+  }
+
+  /**
+   * SpanRecordQueue constructor.
+   *
+   * @param allocator       Allocator of the segments.
+   * @param segmentSize     Size of a segment in bytes. A span larger than that gets a segment of
+   *                        its own.
+   * @param maxFreeSegments Maximal number of consumed segments kept for reuse.
+   * @param dictionary      Dictionary of the repeated values, if null spans are written as a
+   *                        whole.
+   */
+  public SpanRecordQueue(@Nonnull SegmentAllocator allocator, int segmentSize,
+                         int maxFreeSegments, @Nullable SpanDictionary dictionary) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be positive!");
+    }
+    this.allocator = allocator;
+    this.segmentSize = segmentSize;
+    this.maxFreeSegments = maxFreeSegments;
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * Creates the queue of direct buffers, off the heap.
+   *
+   * @param segmentSize Size of a segment in bytes.
+   * @param dictionary  Dictionary of the repeated values, can be shared by several queues.
+   * @return The queue.
+   */
+  public static SpanRecordQueue offHeap(int segmentSize, @Nullable SpanDictionary dictionary) {
+    return new SpanRecordQueue(ByteBuffer::allocateDirect, segmentSize, 2, dictionary);
+  }
+
+  /**
+   * Appends the span.
+   *
+   * @param span Span to be added.
+   * @throws IOException if a new segment can't be allocated.
+   */
+  public synchronized void add(@Nonnull Span span) throws IOException {
+    while (true) {
+      scratch.clear();
+      try {
+        SpanCodec.encode(span, scratch, dictionary);
+        break;
+      } catch (BufferOverflowException e) {
+        scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+      }
+    }
+    final int length = scratch.position();
+    Segment segment = segments.peekLast();
+    if (segment == null || segment.writer.remaining() < Integer.BYTES + length) {
+      segment = takeSegment(Integer.BYTES + length);
+      segments.addLast(segment);
+    }
+    segment.writer.putInt(length);
+    segment.writer.put(scratch.array(), 0, length);
+    bytes += Integer.BYTES + length;
+    size++;
+  }
+
+  /**
+   * Retrieves and removes the oldest span.
+   *
+   * @return The oldest span or null if the queue is empty.
+   */
+  @Nullable
+  public synchronized Span poll() {
+    final Segment segment = segments.peekFirst();
+    if (segment == null || segment.reader.position() == segment.writer.position()) {
+      return null;
+    }
+    final ByteBuffer reader = segment.reader;
+    final int length = reader.getInt();
+    final int end = reader.position() + length;
+    reader.limit(end);
+    final Span span = SpanCodec.decode(reader, dictionary);
+    reader.limit(reader.capacity());
+    reader.position(end);
+    bytes -= Integer.BYTES + length;
+    size--;
+    if (reader.position() == segment.writer.position()) {
+      if (segments.size() > 1) {
+        segments.pollFirst();
+        recycle(segment);
+      } else {
+        // The only segment is read up, so it's written from the beginning again.
+        segment.reset();
+      }
+    }
+    return span;
+  }
+
+  /**
+   * Moves up to {@code max} of the oldest spans to the given collection.
+   *
+   * @param buffer Destination collection.
+   * @param max    Maximal number of spans to be moved.
+   * @return Number of moved spans.
+   */
+  public synchronized int drainTo(@Nonnull Collection<? super Span> buffer, int max) {
+    int drained = 0;
+    Span span;
+    while (drained < max && (span = poll()) != null) {
+      buffer.add(span);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * @return Number of spans in the queue, can be read without locking.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return Bytes taken by the records in the queue, including the lengths.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return Number of segments created so far.
+   */
+  synchronized int getCreatedSegments() {
+    return createdSegments;
+  }
+
+  private Segment takeSegment(int minSize) throws IOException {
+    if (minSize <= segmentSize && !freeSegments.isEmpty()) {
+      return freeSegments.pollFirst();
+    }
+    createdSegments++;
+    return new Segment(allocator.allocate(Math.max(segmentSize, minSize)));
+  }
+
+  private void recycle(Segment segment) {
+    // Oversized segments and segments over the limit are freed by the garbage collector.
+    if (segment.writer.capacity() == segmentSize && freeSegments.size() < maxFreeSegments) {
+      segment.reset();
+      freeSegments.addLast(segment);
+    }
+  }
+
+  /**
+   * Segment buffer with separate positions for writing and reading.
+   */
+  private static final class Segment {
+    private final ByteBuffer writer;
+    private final ByteBuffer reader;
+
+    Segment(ByteBuffer buffer) {
+      this.writer = buffer;
+      this.reader = buffer.duplicate();
+    }
+
+    void reset() {
+      writer.clear();
+      reader.clear();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.wavefront.datastructures;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Holds spans whose start time is in the future and releases them when they become due. Spans
+ * are kept in a priority queue keyed by the start time, so only due spans are touched and the
+ * cost of scheduling is logarithmic regardless of how many spans are waiting.
+ */
+@NotThreadSafe
+public class SpanSchedule {
+  private final PriorityQueue<Span> spans =
+      new PriorityQueue<>(Comparator.comparingLong(Span::getStartMillis));
+
+  /**
+   * Adds a span for releasing at its start time.
+   *
+   * @param span Span to be scheduled.
+   */
+  public void schedule(@Nonnull Span span) {
+    spans.add(span);
+  }
+
+  /**
+   * Moves all spans started before the given moment to the given collection, the earliest first.
+   *
+   * @param nowMillis Current time (millis).
+   * @param ready     Destination collection.
+   * @return Number of released spans.
+   */
+  public int releaseDue(long nowMillis, @Nonnull Collection<? super Span> ready) {
+    int released = 0;
+    Span span;
+    while ((span = spans.peek()) != null && span.getStartMillis() < nowMillis) {
+      ready.add(spans.poll());
+      released++;
+    }
+    return released;
+  }
+
+  /**
+   * @return Start time of the earliest span or Long.MAX_VALUE if the schedule is empty.
+   */
+  public long getNextDueMillis() {
+    final Span span = spans.peek();
+    return span == null ? Long.MAX_VALUE : span.getStartMillis();
+  }
+
+  public int size() {
+    return spans.size();
+  }
+
+  public boolean isEmpty() {
+    return spans.isEmpty();
+  }
+}
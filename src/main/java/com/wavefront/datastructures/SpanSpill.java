@@ -0,0 +1,47 @@
+package com.wavefront.datastructures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Overflow of a span queue on disk. Spans are written in a compact binary form to append-only
+ * segment files mapped to memory, and read back in the order they were written. Consumed segments
+ * are recycled for writing, so a long run keeps reusing a few files. Files are deleted as soon as
+ * they are mapped, so nothing is left behind when the spill is dropped.
+ * <p>
+ * Everything needed for sending is kept, but not the line templates and rendered tags, so spilled
+ * spans are rendered as a whole.
+ */
+@ThreadSafe
+public class SpanSpill extends SpanRecordQueue {
+  private static final int MAX_FREE_SEGMENTS = 2;
+
+  /**
+   * SpanSpill constructor.
+   *
+   * @param directory   Directory of the segment files.
+   * @param segmentSize Size of a segment file in bytes. A span larger than that gets a segment
+   *                    of its own.
+   */
+  public SpanSpill(@Nonnull File directory, int segmentSize) {
+    super(size -> map(directory, size), segmentSize, MAX_FREE_SEGMENTS, null);
+  }
+
+  private static ByteBuffer map(File directory, int size) throws IOException {
+    final File file = File.createTempFile("spans", ".spill", directory);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      // The mapping stays valid after the file is closed and deleted.
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } finally {
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.wavefront.datastructures;
 import com.wavefront.helpers.WftlUtils;
 
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -50,7 +51,7 @@ public class TagVariation {
     this.tagValues = new HashSet<>(source.tagValues);
   }
 
-  public String getRandomValue() {
-    return WftlUtils.getRandomFromSet(tagValues);
+  public String getRandomValue(@Nonnull Random random) {
+    return WftlUtils.getRandomFromSet(tagValues, random);
   }
 }
@@ -2,9 +2,7 @@ package com.wavefront.datastructures;
 
 import com.google.common.collect.Lists;
 
-import com.wavefront.sdk.common.Pair;
-
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -13,16 +11,16 @@ import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
-import static com.wavefront.helpers.Defaults.DEBUG;
+import static com.wavefront.helpers.Defaults.DEBUG_TAG;
+import static com.wavefront.helpers.Defaults.ERROR_TAG;
 
 /**
- * Data structure representing a trace as a collection of spans.
+ * Data structure representing a trace as a collection of spans. A trace is the
+ * {@link TraceRecipe} of itself.
  *
  * @author Davit Baghdasaryan (dbagdasarya@vmware.com)
  */
-public class Trace {
-  private static final Random RANDOM = new Random(System.currentTimeMillis());
-
+public class Trace implements TraceRecipe {
   private final List<List<Span>> spans;
   private final int levels;
   private int spansCount = 0;
@@ -37,8 +35,9 @@ public class Trace {
     this.levels = levels;
     this.traceUUID = traceUUID;
     spans = Lists.newArrayListWithExpectedSize(levels);
+    // Levels are indexed for picking random parents.
     for (int n = 0; n < levels; n++) {
-      spans.add(new LinkedList<>());
+      spans.add(new ArrayList<>());
     }
   }
 
@@ -57,10 +56,10 @@ public class Trace {
     setEndMs(span.getDuration() + span.getStartMillis());
     spansCount++;
     if (span.getTags() != null) {
-      if (!error && span.getTags().contains(new Pair<>("error", "true"))) {
+      if (!error && span.getTags().contains(ERROR_TAG)) {
         error = true;
       }
-      if (span.getTags().contains(new Pair<>(DEBUG, "true"))) {
+      if (span.getTags().contains(DEBUG_TAG)) {
         debugSpansCount++;
       }
     }
@@ -68,13 +67,15 @@ public class Trace {
 
   /**
    * Randomly creates parent-children connections between levels.
+   *
+   * @param random Random of the calling generator.
    */
-  public void createRandomConnections() {
+  public void createRandomConnections(@Nonnull Random random) {
     int upperLevelSize;
     for (int n = levels - 1; n > 0; n--) {
       upperLevelSize = spans.get(n - 1).size();
       for (Span childSpan : spans.get(n)) {
-        childSpan.addParent(spans.get(n - 1).get(RANDOM.nextInt(upperLevelSize)));
+        childSpan.addParent(spans.get(n - 1).get(random.nextInt(upperLevelSize)));
       }
     }
   }
@@ -83,6 +84,7 @@ public class Trace {
     return levels;
   }
 
+  @Override
   public int getSpansCount() {
     return spansCount;
   }
@@ -99,8 +101,14 @@ public class Trace {
     return spans;
   }
 
+  @Override
   public UUID getTraceUUID() { return traceUUID; }
 
+  @Override
+  public Trace materialize() {
+    return this;
+  }
+
   public String getRoot() {
     if (root == null && spans.size() > 0 && spans.get(0).size() > 0) {
       root.set(spans.get(0).get(0).getName());
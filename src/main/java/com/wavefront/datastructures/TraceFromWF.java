@@ -5,14 +5,16 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wavefront.ids.IdGenerator;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.Nonnull;
+
 import static com.wavefront.helpers.Defaults.FOLLOWS_FROM;
 import static com.wavefront.helpers.Defaults.PARENT;
 
@@ -122,16 +124,18 @@ public class TraceFromWF {
   /**
    * For the re-ingestion of traces, the UUIDs should be changed for don't mix them with already
    * ingested traces.
+   *
+   * @param idGenerator Generator of the new IDs.
    */
-  public String updateUUIDs() {
+  public String updateUUIDs(@Nonnull IdGenerator idGenerator) {
     if (spans == null || spans.isEmpty()) {
       return null;
     }
     final Map<String, String> uuids = new HashMap<>();
     AtomicReference<String> root = new AtomicReference<>(null);
     spans.forEach(span -> {
-      span.setSpanId(uuids.computeIfAbsent(span.getSpanId(), k -> UUID.randomUUID().toString()));
-      span.setTraceId(uuids.computeIfAbsent(span.getTraceId(), k -> UUID.randomUUID().toString()));
+      span.setSpanId(uuids.computeIfAbsent(span.getSpanId(), k -> idGenerator.nextId().toString()));
+      span.setTraceId(uuids.computeIfAbsent(span.getTraceId(), k -> idGenerator.nextId().toString()));
       AtomicBoolean isRoot = new AtomicBoolean(true);
       span.getAnnotations().forEach(a ->
       {
@@ -142,7 +146,7 @@ public class TraceFromWF {
               || key.equals("spanId")
               || key.equals("traceId")) {
             entry.setValue(uuids.computeIfAbsent(entry.getValue(),
-                k -> UUID.randomUUID().toString()));
+                k -> idGenerator.nextId().toString()));
             if (isRoot.get() && key.equals(PARENT)) {
               isRoot.set(false);
             }
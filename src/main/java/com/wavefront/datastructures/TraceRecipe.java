@@ -0,0 +1,28 @@
+package com.wavefront.datastructures;
+
+import java.util.UUID;
+
+/**
+ * Everything needed for materializing a trace later, in another thread, instead of the trace
+ * itself, so a queued trace takes about the same memory regardless of the number of its spans.
+ * A ready {@link Trace} is the recipe of itself.
+ */
+public interface TraceRecipe {
+  /**
+   * @return Trace UUID, known before the trace is materialized.
+   */
+  UUID getTraceUUID();
+
+  /**
+   * @return Number of spans of the materialized trace.
+   */
+  int getSpansCount();
+
+  /**
+   * Materializes the trace. Called by the consumer of the queue, so it should depend on nothing
+   * the generator changes afterwards.
+   *
+   * @return The trace.
+   */
+  Trace materialize();
+}
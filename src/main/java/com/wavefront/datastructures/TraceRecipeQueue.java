@@ -0,0 +1,126 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.datastructures.RingBuffer.WaitStrategy;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Queue of spans kept as {@link TraceRecipe}s. Spans of a recipe are materialized when the first
+ * of them is taken, by the thread taking it, and are handed out before the next recipe is
+ * materialized. So only the spans of the trace being taken exist at a time.
+ */
+@ThreadSafe
+public class TraceRecipeQueue {
+  @Nullable
+  private final RingBuffer<TraceRecipe> recipeRing;
+  @Nullable
+  private final Queue<TraceRecipe> unboundedRecipeQueue;
+  /**
+   * Materialized spans not taken yet, guarded by the queue.
+   */
+  private final ArrayDeque<Span> spans = new ArrayDeque<>();
+  private final AtomicInteger size = new AtomicInteger(0);
+
+  /**
+   * TraceRecipeQueue constructor.
+   *
+   * @param capacity     Maximal number of recipes in the queue. If it is not positive the queue
+   *                     is unbounded.
+   * @param waitStrategy Strategy of waiting when the queue is full.
+   */
+  public TraceRecipeQueue(int capacity, @Nonnull WaitStrategy waitStrategy) {
+    if (capacity > 0) {
+      this.recipeRing = new RingBuffer<>(capacity, waitStrategy);
+      this.unboundedRecipeQueue = null;
+    } else {
+      this.recipeRing = null;
+      this.unboundedRecipeQueue = new ConcurrentLinkedQueue<>();
+    }
+  }
+
+  /**
+   * Adds the recipe, waiting while the queue is full.
+   *
+   * @param recipe Recipe to be added.
+   * @throws InterruptedException If the waiting thread was interrupted.
+   */
+  public void put(@Nonnull TraceRecipe recipe) throws InterruptedException {
+    // Counted first, so the size doesn't go below zero while the spans are taken.
+    size.addAndGet(recipe.getSpansCount());
+    if (recipeRing != null) {
+      recipeRing.put(recipe);
+    } else {
+      unboundedRecipeQueue.add(recipe);
+    }
+  }
+
+  /**
+   * Retrieves and removes the oldest span, materializing the next recipe if needed.
+   *
+   * @return The oldest span or null if the queue is empty.
+   */
+  @Nullable
+  public synchronized Span poll() {
+    if (spans.isEmpty() && !materializeNext()) {
+      return null;
+    }
+    size.decrementAndGet();
+    return spans.pollFirst();
+  }
+
+  /**
+   * Moves up to {@code max} of the oldest spans to the given collection, materializing recipes
+   * as needed.
+   *
+   * @param buffer Destination collection.
+   * @param max    Maximal number of spans to be moved.
+   * @return Number of moved spans.
+   */
+  public synchronized int drainTo(@Nonnull Collection<? super Span> buffer, int max) {
+    int drained = 0;
+    while (drained < max && (!spans.isEmpty() || materializeNext())) {
+      buffer.add(spans.pollFirst());
+      drained++;
+    }
+    size.addAndGet(-drained);
+    return drained;
+  }
+
+  /**
+   * @return Number of spans in the queue, including the spans of the recipes.
+   */
+  public int size() {
+    return size.get();
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  private boolean materializeNext() {
+    while (true) {
+      final TraceRecipe recipe = recipeRing != null ? recipeRing.poll() :
+          unboundedRecipeQueue.poll();
+      if (recipe == null) {
+        return false;
+      }
+      final Trace trace = recipe.materialize();
+      for (List<Span> level : trace.getSpans()) {
+        spans.addAll(level);
+      }
+      // Recipes without spans are skipped.
+      if (!spans.isEmpty()) {
+        return true;
+      }
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.wavefront.datastructures;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * A full-signature traceType definition.
@@ -37,20 +38,61 @@ public class TraceType {
    */
   public List<ErrorCondition> errorConditions;
 
+  public TraceType() {
+  }
+
+  /**
+   * Copy constructor. Distributions are copied, since iterators change them, the rest is shared.
+   */
+  public TraceType(TraceType source) {
+    this.tracePercentage = source.tracePercentage;
+    this.spansCount = source.spansCount;
+    this.errorRate = source.errorRate;
+    this.debugRate = source.debugRate;
+    this.traceDurations = TraceTypePattern.copyDistributions(source.traceDurations);
+    this.errorConditions = source.errorConditions;
+  }
+
   /**
    * Initialize distribution iterator(random or exact mode).
+   *
+   * @param traceCount Total number of traces of the type, 0 for the random mode.
+   * @param random     Random of the generator.
+   */
+  public void init(int traceCount, Random random) {
+    init(traceCount, 0, traceCount, random, random);
+  }
+
+  /**
+   * Initialize distribution iterator for generating a part of traces of the type.
+   *
+   * @param traceCount    Total number of traces of the type, 0 for the random mode.
+   * @param from          Start of the part (inclusive).
+   * @param to            End of the part (exclusive).
+   * @param shuffleRandom Random for shuffling distributions, should be equally seeded for all
+   *                      parts.
+   * @param random        Random of the generator.
    */
-  public void init(int traceCount) {
+  public void init(int traceCount, int from, int to, Random shuffleRandom, Random random) {
     // If the total number of traces is specified, then this is the exact mode,
     // otherwise it is the random mode.
     if (traceCount > 0) {
-      this.traceDurationsIterator = new ExactDistributionIterator<>(this.traceDurations, traceCount);
+      this.traceDurationsIterator = new ExactDistributionIterator<>(this.traceDurations,
+          traceCount, from, to, shuffleRandom, random);
     } else {
-      this.traceDurationsIterator = new RandomDistributionIterator<>(this.traceDurations);
+      this.traceDurationsIterator = new RandomDistributionIterator<>(this.traceDurations, random);
     }
   }
 
   public ValueDistribution getNextTraceDuration() {
     return traceDurationsIterator.getNextDistribution();
   }
+
+  /**
+   * @param index Index of the trace among the traces of the type.
+   * @return Duration distribution of the trace, see {@link DistributionIterator#getDistribution}.
+   */
+  public ValueDistribution getTraceDuration(int index) {
+    return traceDurationsIterator.getDistribution(index);
+  }
 }
\ No newline at end of file
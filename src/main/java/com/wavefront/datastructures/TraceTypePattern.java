@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -35,7 +36,7 @@ public class TraceTypePattern {
   public List<ValueDistribution> spansDurations;
   private DistributionIterator<ValueDistribution> traceDurationsIterator;
   private DistributionIterator<ValueDistribution> spansDistributionsIterator;
-  private DistributionIterator<ValueDistribution> spansDurationsIterator;
+  private RandomDistributionIterator<ValueDistribution> spansDurationsIterator;
   public List<TagVariation> mandatoryTags;
   public List<TagVariation> optionalTags;
   public double optionalTagsPercentage = 100;
@@ -66,28 +67,81 @@ public class TraceTypePattern {
   public TraceTypePattern() {
   }
 
+  /**
+   * Copy constructor. Distributions are copied, since iterators change them, the rest is shared.
+   */
+  public TraceTypePattern(TraceTypePattern source) {
+    this.serviceMap.putAll(source.serviceMap);
+    this.traceTypeName = source.traceTypeName;
+    this.spanNameSuffixes = source.spanNameSuffixes;
+    this.nestingLevel = source.nestingLevel;
+    this.tracePercentage = source.tracePercentage;
+    this.errorRate = source.errorRate;
+    this.debugRate = source.debugRate;
+    this.traceDurations = copyDistributions(source.traceDurations);
+    this.spansDistributions = copyDistributions(source.spansDistributions);
+    this.spansDurations = copyDistributions(source.spansDurations);
+    this.mandatoryTags = source.mandatoryTags;
+    this.optionalTags = source.optionalTags;
+    this.optionalTagsPercentage = source.optionalTagsPercentage;
+    this.errorConditions = source.errorConditions;
+    this.rootLevelServices = source.rootLevelServices;
+  }
+
+  static List<ValueDistribution> copyDistributions(List<ValueDistribution> distributions) {
+    if (distributions == null) {
+      return null;
+    }
+    final List<ValueDistribution> copy = new ArrayList<>(distributions.size());
+    distributions.forEach(distribution -> copy.add(new ValueDistribution(distribution)));
+    return copy;
+  }
+
   /**
    * Initialize distributions iterators(random or exact mode).
+   *
+   * @param traceCount Total number of traces of the type, 0 for the random mode.
+   * @param random     Random of the generator.
+   */
+  public void init(int traceCount, Random random) {
+    init(traceCount, 0, traceCount, random, random);
+  }
+
+  /**
+   * Initialize distributions iterators for generating a part of traces of the type.
+   *
+   * @param traceCount    Total number of traces of the type, 0 for the random mode.
+   * @param from          Start of the part (inclusive).
+   * @param to            End of the part (exclusive).
+   * @param shuffleRandom Random for shuffling distributions, should be equally seeded for all
+   *                      parts.
+   * @param random        Random of the generator.
    */
-  public void init(int traceCount) {
+  public void init(int traceCount, int from, int to, Random shuffleRandom, Random random) {
     // Iterator for span durations should always be in random mode.
-    this.spansDurationsIterator = new RandomDistributionIterator<>(this.spansDurations);
+    this.spansDurationsIterator = new RandomDistributionIterator<>(this.spansDurations, random);
 
     // If the total number of traces is specified, then this is the exact mode,
     // otherwise it is the random mode.
     if (traceCount > 0) {
+      final long seed = shuffleRandom.nextLong();
       this.spansDistributionsIterator = new ExactDistributionIterator<>(this.spansDistributions,
-          traceCount);
+          traceCount, from, to, new Random(seed), random);
       this.traceDurationsIterator = new ExactDistributionIterator<>(this.traceDurations,
-          traceCount);
+          traceCount, from, to, new Random(seed + 1), random);
     } else {
-      this.spansDistributionsIterator = new RandomDistributionIterator<>(this.spansDistributions);
-      this.traceDurationsIterator = new RandomDistributionIterator<>(this.traceDurations);
+      this.spansDistributionsIterator = new RandomDistributionIterator<>(this.spansDistributions,
+          random);
+      this.traceDurationsIterator = new RandomDistributionIterator<>(this.traceDurations, random);
     }
   }
 
-  public ValueDistribution getNextSpanDuration() {
-    return spansDurationsIterator.getNextDistribution();
+  /**
+   * @param random Random of the trace the span belongs to.
+   * @return Duration distribution of the span, drawn by the given random.
+   */
+  public ValueDistribution getNextSpanDuration(Random random) {
+    return spansDurationsIterator.getNextDistribution(random);
   }
 
   public ValueDistribution getNextSpanDistribution() {
@@ -97,4 +151,20 @@ public class TraceTypePattern {
   public ValueDistribution getNextTraceDuration() {
     return traceDurationsIterator.getNextDistribution();
   }
+
+  /**
+   * @param index Index of the trace among the traces of the type.
+   * @return Spans distribution of the trace, see {@link DistributionIterator#getDistribution}.
+   */
+  public ValueDistribution getSpanDistribution(int index) {
+    return spansDistributionsIterator.getDistribution(index);
+  }
+
+  /**
+   * @param index Index of the trace among the traces of the type.
+   * @return Duration distribution of the trace, see {@link DistributionIterator#getDistribution}.
+   */
+  public ValueDistribution getTraceDuration(int index) {
+    return traceDurationsIterator.getDistribution(index);
+  }
 }
\ No newline at end of file
@@ -9,7 +9,6 @@ import java.util.Random;
  */
 @SuppressWarnings("unused")
 public class ValueDistribution extends Distribution {
-  private static final Random RANDOM = new Random(System.currentTimeMillis());
   /**
    * Start value of the bin values.
    */
@@ -28,6 +27,10 @@ public class ValueDistribution extends Distribution {
     this.percentage = percentage;
   }
 
+  public ValueDistribution(ValueDistribution source) {
+    this(source.startValue, source.endValue, source.percentage);
+  }
+
   @Override
   public String toString() {
     return "Distribution {" +
@@ -39,8 +42,10 @@ public class ValueDistribution extends Distribution {
 
   /**
    * Get random number from the distribution range [startValue, endValue].
+   *
+   * @param random Random of the calling generator.
    */
-  public int getValue() {
-    return startValue + RANDOM.nextInt(endValue - startValue + 1);
+  public int getValue(Random random) {
+    return startValue + random.nextInt(endValue - startValue + 1);
   }
 }
@@ -0,0 +1,165 @@
+package com.wavefront.distributed;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Coordinator of several worker loader processes, each of them generating and sending its share
+ * of the traces (see --workerIndex and --workers). Workers connect to the coordinator when they
+ * are set up, the coordinator starts all of them at the same wall-clock moment and collects their
+ * statistics when they complete. Workers connect again for every cycle of the loader, while the
+ * coordinator keeps listening.
+ */
+public class Coordinator implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(Coordinator.class.getCanonicalName());
+  private final ServerSocket serverSocket;
+  private final int workers;
+  private final MessageChannel[] channels;
+  private final List<Process> processes = new ArrayList<>();
+
+  /**
+   * Coordinator constructor.
+   *
+   * @param port    Port the workers connect to, 0 for any free port.
+   * @param workers Number of workers.
+   * @throws IOException If the port can't be listened on.
+   */
+  public Coordinator(int port, int workers) throws IOException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("At least one worker is required!");
+    }
+    this.serverSocket = new ServerSocket(port);
+    this.workers = workers;
+    this.channels = new MessageChannel[workers];
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Launches the workers as processes of this host, running the loader with the same arguments
+   * and the same Java, each of them with its own worker index.
+   *
+   * @param args Arguments of the loader.
+   * @param seed Seed of the generation, shared by all workers.
+   * @throws IOException If a process can't be started.
+   */
+  public void launchWorkers(String[] args, long seed) throws IOException {
+    final String java = System.getProperty("java.home") + File.separator + "bin" +
+        File.separator + "java";
+    for (int n = 0; n < workers; n++) {
+      final List<String> command = new ArrayList<>(List.of(java, "-cp",
+          System.getProperty("java.class.path"), "com.wavefront.WavefrontTraceLoader"));
+      command.addAll(Arrays.asList(args));
+      // Overwrite the arguments of the coordinator, the later ones take precedence.
+      command.addAll(List.of("--coordinator", "localhost:" + getPort(),
+          "--workerIndex", String.valueOf(n), "--workers", String.valueOf(workers),
+          "--seed", String.valueOf(seed)));
+      processes.add(new ProcessBuilder(command).inheritIO().start());
+    }
+    LOGGER.info("Launched " + workers + " workers with seed " + seed);
+  }
+
+  /**
+   * Waits for all workers to connect and report they are ready. Workers must have different
+   * indexes and the same number of workers and seed, otherwise their traces would overlap. Several
+   * workers must have the seed set, since without it every one of them would split the traces
+   * by its own random seed.
+   *
+   * @param timeoutMillis How long to wait for every worker.
+   * @throws IOException If a worker doesn't connect in time or doesn't match the others.
+   */
+  public void awaitWorkers(int timeoutMillis) throws IOException {
+    closeChannels();
+    Long seed = null;
+    serverSocket.setSoTimeout(timeoutMillis);
+    for (int connected = 0; connected < workers; connected++) {
+      final Socket socket = serverSocket.accept();
+      socket.setSoTimeout(timeoutMillis);
+      final MessageChannel channel = new MessageChannel(socket);
+      final CoordinatorMessage ready = channel.receive(CoordinatorMessage.Type.READY);
+      socket.setSoTimeout(0);
+      final int index = ready.getWorkerIndex();
+      if (ready.getWorkers() != workers || index < 0 || index >= workers) {
+        channel.close();
+        throw new IOException("Worker " + index + " of " + ready.getWorkers() +
+            " doesn't match " + workers + " workers.");
+      }
+      if (channels[index] != null) {
+        channel.close();
+        throw new IOException("Worker " + index + " is already connected.");
+      }
+      if (workers > 1 && ready.getSeed() == null) {
+        channel.close();
+        throw new IOException("Worker " + index + " has no seed, while " + workers +
+            " workers must share one (see --seed).");
+      }
+      if (connected > 0 && !Objects.equals(seed, ready.getSeed())) {
+        channel.close();
+        throw new IOException("Worker " + index + " has seed " + ready.getSeed() +
+            ", while other workers have seed " + seed);
+      }
+      seed = ready.getSeed();
+      channels[index] = channel;
+      LOGGER.info("Worker " + index + " is ready (" + (connected + 1) + " of " + workers + ")");
+    }
+  }
+
+  /**
+   * Makes all workers start at the same moment.
+   *
+   * @param delayMillis Delay before the start, so every worker gets the message before it.
+   * @return Wall-clock moment of the start.
+   * @throws IOException If a worker can't be reached.
+   */
+  public long startWorkers(long delayMillis) throws IOException {
+    final long startMillis = System.currentTimeMillis() + delayMillis;
+    for (MessageChannel channel : channels) {
+      channel.send(CoordinatorMessage.start(startMillis));
+    }
+    return startMillis;
+  }
+
+  /**
+   * Waits for all workers to complete.
+   *
+   * @return Reports of the workers, in the order of their indexes.
+   * @throws IOException If a worker fails before it reports.
+   */
+  public List<CoordinatorMessage> collectReports() throws IOException {
+    final List<CoordinatorMessage> reports = new ArrayList<>();
+    for (MessageChannel channel : channels) {
+      reports.add(channel.receive(CoordinatorMessage.Type.REPORT));
+    }
+    return reports;
+  }
+
+  /**
+   * Stops listening, launched workers are stopped too, since they can't continue without the
+   * coordinator.
+   */
+  @Override
+  public void close() throws IOException {
+    closeChannels();
+    serverSocket.close();
+    processes.forEach(Process::destroy);
+  }
+
+  private void closeChannels() throws IOException {
+    for (int n = 0; n < workers; n++) {
+      if (channels[n] != null) {
+        channels[n].close();
+        channels[n] = null;
+      }
+    }
+  }
+}
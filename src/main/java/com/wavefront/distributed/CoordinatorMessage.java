@@ -0,0 +1,98 @@
+package com.wavefront.distributed;
+
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.helpers.Statistics;
+
+/**
+ * Message of the protocol between the coordinator and the workers. A worker sends READY when it
+ * is set up, the coordinator answers with START when all workers are ready, and the worker sends
+ * REPORT with its statistics when it completes.
+ */
+public class CoordinatorMessage {
+  public enum Type {
+    READY,
+    START,
+    REPORT
+  }
+
+  private Type type;
+  private int workerIndex;
+  private int workers;
+  private Long seed;
+  private long startMillis;
+  private Statistics statistics;
+  private SenderStatistics senderStatistics;
+
+  private CoordinatorMessage() {
+  }
+
+  /**
+   * @param workerIndex Index of the worker.
+   * @param workers     Number of workers the worker splits the generation with.
+   * @param seed        Seed of the generation, should be the same for all workers.
+   * @return Message of the worker which is ready to start.
+   */
+  public static CoordinatorMessage ready(int workerIndex, int workers, Long seed) {
+    final CoordinatorMessage message = new CoordinatorMessage();
+    message.type = Type.READY;
+    message.workerIndex = workerIndex;
+    message.workers = workers;
+    message.seed = seed;
+    return message;
+  }
+
+  /**
+   * @param startMillis Wall-clock moment all workers start at.
+   * @return Message of the coordinator starting the workers.
+   */
+  public static CoordinatorMessage start(long startMillis) {
+    final CoordinatorMessage message = new CoordinatorMessage();
+    message.type = Type.START;
+    message.startMillis = startMillis;
+    return message;
+  }
+
+  /**
+   * @param workerIndex      Index of the worker.
+   * @param statistics       Statistics of the generated traces.
+   * @param senderStatistics Statistics of the sent spans, or null if spans were saved to file.
+   * @return Message of the worker which completed.
+   */
+  public static CoordinatorMessage report(int workerIndex, Statistics statistics,
+                                          SenderStatistics senderStatistics) {
+    final CoordinatorMessage message = new CoordinatorMessage();
+    message.type = Type.REPORT;
+    message.workerIndex = workerIndex;
+    message.statistics = statistics;
+    message.senderStatistics = senderStatistics;
+    return message;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getWorkerIndex() {
+    return workerIndex;
+  }
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public Long getSeed() {
+    return seed;
+  }
+
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  public SenderStatistics getSenderStatistics() {
+    return senderStatistics;
+  }
+}
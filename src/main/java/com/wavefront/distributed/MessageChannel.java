@@ -0,0 +1,67 @@
+package com.wavefront.distributed;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Connection between the coordinator and a worker, every message is a line of JSON. Messages are
+ * mapped by fields, so statistics are passed as they are and merged on the other side.
+ */
+class MessageChannel implements Closeable {
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+      .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+      .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+      .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+  private final Socket socket;
+  private final BufferedReader reader;
+  private final Writer writer;
+
+  MessageChannel(@Nonnull Socket socket) throws IOException {
+    this.socket = socket;
+    this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+        StandardCharsets.UTF_8));
+    this.writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+  }
+
+  void send(CoordinatorMessage message) throws IOException {
+    writer.write(MAPPER.writeValueAsString(message));
+    writer.write('\n');
+    writer.flush();
+  }
+
+  /**
+   * @param expected Expected type of the message.
+   * @return Next message.
+   * @throws IOException If the connection is closed or the message isn't of the expected type.
+   */
+  CoordinatorMessage receive(CoordinatorMessage.Type expected) throws IOException {
+    final String line = reader.readLine();
+    if (line == null) {
+      throw new EOFException("Connection to " + socket.getRemoteSocketAddress() + " is closed.");
+    }
+    final CoordinatorMessage message = MAPPER.readValue(line, CoordinatorMessage.class);
+    if (message.getType() != expected) {
+      throw new IOException("Expected " + expected + " message, but got " + message.getType());
+    }
+    return message;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,92 @@
+package com.wavefront.distributed;
+
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.helpers.Statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Worker side of the connection to the {@link Coordinator}.
+ */
+public class WorkerClient implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(WorkerClient.class.getCanonicalName());
+  private static final long CONNECT_RETRY_MILLIS = 500;
+  private final MessageChannel channel;
+  private final int workerIndex;
+
+  /**
+   * Connects to the coordinator, retrying while it isn't listening yet.
+   *
+   * @param coordinator   Host and port of the coordinator, like "localhost:5000".
+   * @param workerIndex   Index of this worker.
+   * @param timeoutMillis How long to retry connecting.
+   * @throws IOException If the coordinator isn't reachable in time.
+   * @throws InterruptedException If interrupted while waiting for the coordinator.
+   */
+  public WorkerClient(@Nonnull String coordinator, int workerIndex, long timeoutMillis)
+      throws IOException, InterruptedException {
+    final int colon = coordinator.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Coordinator should be set as host:port, but it is " +
+          coordinator);
+    }
+    final String host = coordinator.substring(0, colon);
+    final int port = Integer.parseInt(coordinator.substring(colon + 1));
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    Socket socket = null;
+    while (socket == null) {
+      try {
+        socket = new Socket(host, port);
+      } catch (IOException e) {
+        if (System.currentTimeMillis() >= deadline) {
+          throw e;
+        }
+        Thread.sleep(CONNECT_RETRY_MILLIS);
+      }
+    }
+    this.channel = new MessageChannel(socket);
+    this.workerIndex = workerIndex;
+  }
+
+  /**
+   * Reports the worker is ready and waits for the coordinator to start it. All workers start at
+   * the same wall-clock moment.
+   *
+   * @param workers Number of workers this one splits the generation with.
+   * @param seed    Seed of the generation.
+   * @throws IOException If the coordinator fails.
+   * @throws InterruptedException If interrupted while waiting for the start.
+   */
+  public void awaitStart(int workers, Long seed) throws IOException, InterruptedException {
+    channel.send(CoordinatorMessage.ready(workerIndex, workers, seed));
+    final long startMillis = channel.receive(CoordinatorMessage.Type.START).getStartMillis();
+    final long delay = startMillis - System.currentTimeMillis();
+    if (delay > 0) {
+      Thread.sleep(delay);
+    } else {
+      LOGGER.warning("Worker " + workerIndex + " started " + -delay + " ms late.");
+    }
+  }
+
+  /**
+   * Sends the statistics of the worker to the coordinator.
+   *
+   * @param statistics       Statistics of the generated traces.
+   * @param senderStatistics Statistics of the sent spans, or null if spans were saved to file.
+   * @throws IOException If the coordinator fails.
+   */
+  public void report(Statistics statistics, SenderStatistics senderStatistics)
+      throws IOException {
+    channel.send(CoordinatorMessage.report(workerIndex, statistics, senderStatistics));
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
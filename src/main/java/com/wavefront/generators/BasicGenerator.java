@@ -1,14 +1,25 @@
 package com.wavefront.generators;
 
 import com.wavefront.DataQueue;
+import com.wavefront.SpanSender;
 import com.wavefront.helpers.Statistics;
+import com.wavefront.helpers.XoshiroRandom;
+import com.wavefront.ids.IdGenerator;
+import com.wavefront.ids.RandomIdGenerator;
 
+import java.util.List;
 import java.util.Random;
 
 import javax.annotation.Nonnull;
 
 public abstract class BasicGenerator implements Runnable {
-  protected static final Random RANDOM = new Random(System.currentTimeMillis());
+  /**
+   * Every generator has its own random, which is passed to everything generating random values
+   * for it, so parallel generators don't contend for a shared random.
+   */
+  protected final XoshiroRandom random = new XoshiroRandom();
+  @Nonnull
+  protected IdGenerator idGenerator = new RandomIdGenerator(random, false);
   protected static final int SLEEP_DELAY_MILLISECONDS = 5;
   protected static final int GENERATION_DELAY_MILLIS = 5000;
   public final Statistics statistics = new Statistics();
@@ -19,6 +30,32 @@ public abstract class BasicGenerator implements Runnable {
     this.dataQueue = dataQueue;
   }
 
+  /**
+   * @return Random of the generator, to be used only by the generator thread.
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * @param idGenerator Generator of trace and span IDs, used by this generator only.
+   */
+  public void setIdGenerator(@Nonnull IdGenerator idGenerator) {
+    this.idGenerator = idGenerator;
+  }
+
+  /**
+   * Makes the generator threads send the traces they generate themselves instead of adding them
+   * to the data queue, see {@link SpanSender#sendTrace}.
+   *
+   * @param senders Senders of the generator threads, one per thread.
+   * @throws UnsupportedOperationException If the generator can't send traces itself.
+   */
+  public void setSenders(@Nonnull List<SpanSender> senders) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() +
+        " doesn't send traces itself!");
+  }
+
   /**
    * Generates traces for saving to file (without ingestion specific time delays).
    */
@@ -12,22 +12,18 @@ import com.wavefront.datastructures.Trace;
 import com.wavefront.datastructures.TraceTypePattern;
 import com.wavefront.datastructures.ValueDistribution;
 import com.wavefront.helpers.Statistics;
-import com.wavefront.sdk.common.Pair;
+import com.wavefront.ids.IdGenerator;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
-import static com.wavefront.datastructures.ErrorCondition.getErrorRate;
-import static com.wavefront.helpers.Defaults.DEBUG_TAG;
-import static com.wavefront.helpers.Defaults.ERROR_TAG;
-import static com.wavefront.helpers.Defaults.HUNDRED_PERCENT;
 import static com.wavefront.helpers.Defaults.PATTERN;
-import static com.wavefront.helpers.WftlUtils.isEffectivePercentage;
 
 /**
  * Class generates traces based on {@link GeneratorConfig} parameters.
@@ -36,7 +32,7 @@ import static com.wavefront.helpers.WftlUtils.isEffectivePercentage;
  */
 public class FromPatternGenerator extends TraceGenerator {
   private static final Logger LOGGER = Logger.getLogger(SpanSender.class.getCanonicalName());
-  protected DistributionIterator<ReferenceDistribution<TraceTypePattern>> traceTypePatternIterator;
+  protected DistributionIterator<ReferenceDistribution<PatternPlan>> patternPlanIterator;
 
   public FromPatternGenerator(@Nonnull GeneratorConfig config, @Nonnull DataQueue dataQueue) {
     super(dataQueue);
@@ -55,19 +51,29 @@ public class FromPatternGenerator extends TraceGenerator {
 
   @Override
   protected void initGeneration() {
-    List<ReferenceDistribution<TraceTypePattern>> referenceDistributions = generatorConfig.
+    // Patterns are copied, since every generator changes their distributions while iterating,
+    // and compiled once for generating all traces of the type.
+    List<ReferenceDistribution<PatternPlan>> referenceDistributions = generatorConfig.
         getTraceTypePatterns().stream().map(traceTypePattern -> new ReferenceDistribution<>(
-        traceTypePattern, traceTypePattern.tracePercentage)).collect(Collectors.toList());
-    if (generatorConfig.getTotalTraceCount() > 0) {
-      traceTypePatternIterator = new ExactDistributionIterator<>(referenceDistributions,
-          generatorConfig.getTotalTraceCount());
-      referenceDistributions.forEach(traceTypePattern -> {
-        traceTypePattern.reference.init((int) Math.round(traceTypePattern.portion));
+        new PatternPlan(new TraceTypePattern(traceTypePattern)),
+        traceTypePattern.tracePercentage)).collect(Collectors.toList());
+    final int totalTraceCount = generatorConfig.getTotalTraceCount();
+    if (totalTraceCount > 0) {
+      final Random shuffleRandom = new Random(partitionSeed);
+      final ExactDistributionIterator<ReferenceDistribution<PatternPlan>> iterator =
+          new ExactDistributionIterator<>(referenceDistributions, totalTraceCount,
+              partitionStart(totalTraceCount), partitionEnd(totalTraceCount), shuffleRandom,
+              random);
+      patternPlanIterator = iterator;
+      referenceDistributions.forEach(patternPlan -> {
+        final ExactDistributionIterator.Range range = iterator.getRange(patternPlan);
+        patternPlan.reference.pattern.init(range.total, range.from, range.to, shuffleRandom,
+            random);
       });
     } else {
-      traceTypePatternIterator = new RandomDistributionIterator<>(referenceDistributions);
-      referenceDistributions.forEach(traceTypePattern -> {
-        traceTypePattern.reference.init(0);
+      patternPlanIterator = new RandomDistributionIterator<>(referenceDistributions, random);
+      referenceDistributions.forEach(patternPlan -> {
+        patternPlan.reference.pattern.init(0, random);
       });
     }
   }
@@ -78,136 +84,148 @@ public class FromPatternGenerator extends TraceGenerator {
   }
 
   @Override
-  protected Trace generateTrace(long startMillis) {
-    // get next trace type to be generated
-    ReferenceDistribution<TraceTypePattern> traceTypePatternDistribution =
-        traceTypePatternIterator.getNextDistribution();
-    if (traceTypePatternDistribution == null) {
+  protected TracePlan planTrace(long startMillis) {
+    // get next trace type to be generated, or the trace type of the trace index if seeded
+    final boolean seekable = seed != null;
+    ReferenceDistribution<PatternPlan> patternPlanDistribution = seekable ?
+        patternPlanIterator.getDistribution(traceIndex) :
+        patternPlanIterator.getNextDistribution();
+    if (patternPlanDistribution == null) {
       return null;
     }
-    final TraceTypePattern traceTypePattern = traceTypePatternDistribution.reference;
-    final int levels = traceTypePattern.nestingLevel;
-    ValueDistribution spanDistribution = traceTypePattern.getNextSpanDistribution();
+    final PatternPlan plan = patternPlanDistribution.reference;
+    final TraceTypePattern traceTypePattern = plan.pattern;
+    final int indexInType = patternPlanIterator.getIndexInDistribution(traceIndex);
+    ValueDistribution spanDistribution = seekable ?
+        traceTypePattern.getSpanDistribution(indexInType) :
+        traceTypePattern.getNextSpanDistribution();
     if (spanDistribution == null) {
       return null;
     }
-    int spanNumbers = spanDistribution.getValue() - 1;
-    int spanDuration;
+    int spanNumbers = spanDistribution.getValue(random) - 1;
+    int spanDuration = 0;
     int lastSpanDuration = 0;
-    boolean useSpansDistribution = false;
     int traceDuration = 0;
 
     // traceDurations has priority,so if it is set spansDurations is skipped
-    if (!traceTypePattern.traceDurations.isEmpty()) {
-      ValueDistribution traceDurationDistribution = traceTypePattern.getNextTraceDuration();
+    final boolean drawingSpanDurations = traceTypePattern.traceDurations.isEmpty();
+    if (!drawingSpanDurations) {
+      ValueDistribution traceDurationDistribution = seekable ?
+          traceTypePattern.getTraceDuration(indexInType) :
+          traceTypePattern.getNextTraceDuration();
       if (traceDurationDistribution == null) {
         return null;
       }
-      traceDuration = traceDurationDistribution.getValue();
+      traceDuration = traceDurationDistribution.getValue(random);
       // currently all spans have the same duration, expect last one to ensure expected duration
       spanDuration = spanNumbers == 0 ? traceDuration : traceDuration / spanNumbers;
       lastSpanDuration = spanNumbers == 0 ? 0 : traceDuration % spanNumbers;
-    } else {
-      ValueDistribution spanDurationDistribution = traceTypePattern.getNextSpanDuration();
-      if (spanDurationDistribution == null) {
-        return null;
-      }
-      useSpansDistribution = true;
-      spanDuration = spanDurationDistribution.getValue();
-      traceDuration += spanDuration;
-    }
-
-    String suffixes = traceTypePattern.spanNameSuffixes;
-    int sufLen = suffixes.length();
-
-    final UUID traceUUID = UUID.randomUUID();
-    final Trace trace = new Trace(levels, traceUUID);
-
-    // Root span
-    trace.add(0, new Span(
-        traceTypePattern.traceTypeName,
-        startMillis,
-        spanDuration,
-        "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
-        traceUUID,
-        UUID.randomUUID(),
-        null,
-        null,
-        getTags(traceTypePattern, traceTypePattern.traceTypeName, traceTypePattern.errorRate),
-        null));
-    trace.setRoot(traceTypePattern.traceTypeName);
-
-    while (spanNumbers > 0) {
-      for (int n = 1; n < levels && spanNumbers > 0; n++) {
-        for (int m = n; m < levels && spanNumbers > 0; m++) {
-          startMillis += spanDuration;
-
-          if (useSpansDistribution) {
-            ValueDistribution spanDurationDistribution = traceTypePattern.getNextSpanDuration();
-            if (spanDurationDistribution == null) {
-              return null;
-            }
-            spanDuration = spanDurationDistribution.getValue();
-            traceDuration += spanDuration;
-          } else if (spanNumbers == 1) {
-            // in case of traceDuration is usedthe remaining part of duration will be added to the
-            // last span
-            spanDuration = lastSpanDuration;
-          }
-          String spanName = "name_" + suffixes.charAt(RANDOM.nextInt(sufLen));
-          trace.add(m, new Span(
-              spanName,
-              startMillis,
-              spanDuration,
-              "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
-              traceUUID,
-              UUID.randomUUID(),
-              null,
-              null,
-              // Not root spans will have error tag if ErrorConditions defined
-              getTags(traceTypePattern, spanName, 0),
-              null));
-          spanNumbers--;
-        }
-      }
+    } else if (traceTypePattern.spansDurations.isEmpty()) {
+      return null;
     }
 
-    trace.createRandomConnections();
-    statistics.offer(traceTypePattern.traceTypeName, trace, traceDuration);
-    return trace;
+    return new PatternTracePlan(idGenerator.nextId(), plan, startMillis, spanNumbers,
+        spanDuration, lastSpanDuration, traceDuration, drawingSpanDurations);
   }
 
-  private List<Pair<String, String>> getTags(@Nonnull TraceTypePattern pattern,
-                                             @Nonnull String spanName, double errorRate) {
-    final List<Pair<String, String>> tags = new LinkedList<>();
-
-    // add all mandatory tags
-    pattern.mandatoryTags.forEach(tag -> tags.add(new Pair<>(tag.tagName, tag.getRandomValue())));
-
-    // add some of optional tags if exist
-    if (pattern.optionalTagsPercentage > 0 && pattern.optionalTags != null) {
-      pattern.optionalTags.forEach(tag -> {
-        if (RANDOM.nextDouble() <= (pattern.optionalTagsPercentage / HUNDRED_PERCENT)) {
-          tags.add(new Pair<>(tag.tagName, tag.getRandomValue()));
-        }
-      });
+  /**
+   * Trace of the pattern with the durations decided, unless the pattern has no trace durations.
+   * Then the span durations are drawn by the random of the trace when the spans are generated,
+   * so the plan doesn't grow with the number of spans.
+   */
+  private static final class PatternTracePlan extends TracePlan {
+    private final PatternPlan plan;
+    private final long startMillis;
+    private final int spanNumbers;
+    private final int spanDuration;
+    private final int lastSpanDuration;
+    private final int traceDuration;
+    private final boolean drawingSpanDurations;
+
+    PatternTracePlan(UUID traceUUID, PatternPlan plan, long startMillis, int spanNumbers,
+                     int spanDuration, int lastSpanDuration, int traceDuration,
+                     boolean drawingSpanDurations) {
+      super(traceUUID);
+      this.plan = plan;
+      this.startMillis = startMillis;
+      this.spanNumbers = spanNumbers;
+      this.spanDuration = spanDuration;
+      this.lastSpanDuration = lastSpanDuration;
+      this.traceDuration = traceDuration;
+      this.drawingSpanDurations = drawingSpanDurations;
     }
 
-    if (isEffectivePercentage(pattern.debugRate)) {
-      tags.add(DEBUG_TAG);
+    @Override
+    int getSpansCount() {
+      return (plan.hasChildLevels() ? Math.max(0, spanNumbers) : 0) + 1;
     }
 
-    // Check error conditions.
-    // If user sets errorConditions for the trace type it will override
-    // the common errorRate. Otherwise the common errorRate will be applied to the first span.
-    if (pattern.errorConditions != null) {
-      errorRate = getErrorRate(spanName, tags, pattern.errorConditions);
-    }
+    @Override
+    Trace materialize(@Nonnull Random random, @Nonnull IdGenerator idGenerator,
+                      @Nullable Statistics statistics) {
+      final TraceTypePattern traceTypePattern = plan.pattern;
+      final Trace trace = new Trace(plan.levels, traceUUID);
+      final String rootName = plan.getSpanName(PatternPlan.ROOT);
+      long startMillis = this.startMillis;
+      int spanDuration = this.spanDuration;
+      int traceDuration = this.traceDuration;
+      if (drawingSpanDurations) {
+        spanDuration = traceTypePattern.getNextSpanDuration(random).getValue(random);
+        traceDuration = spanDuration;
+      }
 
-    if (isEffectivePercentage(errorRate)) {
-      tags.add(ERROR_TAG);
-    }
+      // Root span
+      final Span root = new Span(
+          rootName,
+          startMillis,
+          spanDuration,
+          PatternPlan.SOURCE,
+          traceUUID,
+          idGenerator.nextId(),
+          null,
+          null,
+          plan.createTags(PatternPlan.ROOT, traceTypePattern.errorRate, random),
+          null);
+      root.setLineTemplate(plan.getLineTemplate(PatternPlan.ROOT));
+      trace.add(0, root);
+      trace.setRoot(rootName);
+
+      // Spans are added level by level from the top, the pattern without levels below the root
+      // gets the root span only.
+      final int spansCount = plan.hasChildLevels() ? spanNumbers : 0;
+      for (int n = 0; n < spansCount; n++) {
+        startMillis += spanDuration;
+
+        if (drawingSpanDurations) {
+          spanDuration = traceTypePattern.getNextSpanDuration(random).getValue(random);
+          traceDuration += spanDuration;
+        } else if (n == spansCount - 1) {
+          // in case of traceDuration is used the remaining part of duration will be added to the
+          // last span
+          spanDuration = lastSpanDuration;
+        }
+        final int spanName = 1 + random.nextInt(plan.getSpanNamesCount());
+        final Span span = new Span(
+            plan.getSpanName(spanName),
+            startMillis,
+            spanDuration,
+            PatternPlan.SOURCE,
+            traceUUID,
+            idGenerator.nextId(),
+            null,
+            null,
+            // Not root spans will have error tag if ErrorConditions defined
+            plan.createTags(spanName, 0, random),
+            null);
+        span.setLineTemplate(plan.getLineTemplate(spanName));
+        trace.add(plan.getLevel(n), span);
+      }
 
-    return tags;
+      trace.createRandomConnections(random);
+      if (statistics != null) {
+        statistics.offer(traceTypePattern.traceTypeName, trace, traceDuration);
+      }
+      return trace;
+    }
   }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package com.wavefront.generators;
 
-import com.google.common.base.Strings;
-
 import com.wavefront.DataQueue;
 import com.wavefront.config.GeneratorConfig;
 import com.wavefront.datastructures.DistributionIterator;
@@ -13,28 +11,27 @@ import com.wavefront.datastructures.Trace;
 import com.wavefront.datastructures.TraceType;
 import com.wavefront.datastructures.ValueDistribution;
 import com.wavefront.helpers.Statistics;
+import com.wavefront.ids.IdGenerator;
 import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
+import com.wavefront.topology.CompiledTopology;
 import com.wavefront.topology.TraceTopology;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.wavefront.datastructures.ErrorCondition.getErrorRate;
-import static com.wavefront.helpers.Defaults.DEBUG_TAG;
 import static com.wavefront.helpers.Defaults.ERROR;
-import static com.wavefront.helpers.Defaults.ERROR_TAG;
 import static com.wavefront.helpers.Defaults.SERVICE;
 import static com.wavefront.helpers.Defaults.TOPOLOGY;
-import static com.wavefront.helpers.WftlUtils.getRandomFromSet;
 import static com.wavefront.helpers.WftlUtils.isEffectivePercentage;
 
 /**
@@ -45,9 +42,11 @@ import static com.wavefront.helpers.WftlUtils.isEffectivePercentage;
 public class FromTopologyGenerator extends TraceGenerator {
   private static final Logger LOGGER =
       Logger.getLogger(FromTopologyGenerator.class.getCanonicalName());
+  private static final int NO_SLOT = -1;
 
   private TraceTopology traceTopology;
-  private Map<TraceType, Trace> traceTemplates;
+  private List<TraceType> traceTypes;
+  private TemplatePool templatePool;
   protected DistributionIterator<ReferenceDistribution<TraceType>> traceTypeIterator;
 
   public FromTopologyGenerator(@Nonnull GeneratorConfig config, @Nonnull DataQueue dataQueue) {
@@ -57,148 +56,156 @@ public class FromTopologyGenerator extends TraceGenerator {
 
   @Override
   public void generateForFile() {
-    startGeneration(false, generatorConfig, LOGGER, TOPOLOGY);
+    try {
+      startGeneration(false, generatorConfig, LOGGER, TOPOLOGY);
+    } finally {
+      stopRefreshingTemplates();
+    }
   }
 
   @Override
   public void run() {
-    startGeneration(true, generatorConfig, LOGGER, TOPOLOGY);
+    try {
+      startGeneration(true, generatorConfig, LOGGER, TOPOLOGY);
+    } finally {
+      stopRefreshingTemplates();
+    }
   }
 
-  private void generateTraceTemplates() {
-    traceTemplates = new HashMap<>();
-    for (TraceType tt : traceTopology.traceTypes) {
-      // Calculate nesting levels number. Spans distributed across levels in geometrical sequence.
-      int temp = tt.spansCount;
-      int levels = 0;
-      while (temp > 0) {
-        levels++;
-        temp = temp >> 1;
-      }
-      final UUID traceUUID = UUID.randomUUID();
-      final Trace trace = new Trace(levels, traceUUID);
-      int alreadyGenerated = 1; // root span.
-
-      // Root span.
-      final String root = traceTopology.getRandomRootService();
-      Set<String> nextLevelServices = Set.of(root);
-      trace.add(0, new Span(
-          traceTopology.getSpanName(root),
-          0,
-          0,
-          "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
-          traceUUID,
-          UUID.randomUUID(),
-          null,
-          null,
-          List.of(new Pair<>(SERVICE, root)),
-          null));
-      trace.setRoot(root);
-
-      for (int n = 1; n < levels && alreadyGenerated < tt.spansCount; n++) {
-        final int max = Math.min(1 << n, tt.spansCount - alreadyGenerated);
-        alreadyGenerated += max;
-
-        final Set<String> previousLevelServices = nextLevelServices;
-        nextLevelServices = new HashSet<>();
-
-        for (int m = 0; m < max; m++) {
-          final String nextService = traceTopology.getNextLevelService(previousLevelServices);
-          nextLevelServices.add(nextService);
-          if (Strings.isNullOrEmpty(nextService)) {
-            alreadyGenerated = tt.spansCount;
-            break;
-          }
+  private void stopRefreshingTemplates() {
+    if (templatePool != null) {
+      templatePool.stopRefreshing();
+    }
+  }
 
-          final UUID parentUUID = getRandomParentUUID(trace, n - 1, nextService);
-          if (parentUUID == null) {
-            LOGGER.severe("Exceptional issue in trace generation!");
-            break;
-          }
+  /**
+   * Builds a template of the trace type, see {@link TemplatePool.Builder}.
+   */
+  private TraceTemplate buildTraceTemplate(@Nonnull TraceType tt, @Nonnull Random random,
+                                           @Nonnull IdGenerator idGenerator) {
+    final CompiledTopology topology = traceTopology.getCompiledTopology();
+    final int[] slots = new int[topology.getServicesCount()];
+    Arrays.fill(slots, NO_SLOT);
+    // Calculate nesting levels number. Spans distributed across levels in geometrical sequence.
+    int temp = tt.spansCount;
+    int levels = 0;
+    while (temp > 0) {
+      levels++;
+      temp = temp >> 1;
+    }
+    final UUID traceUUID = idGenerator.nextId();
+    final Trace trace = new Trace(levels, traceUUID);
+    final int[][] parents = new int[levels][];
+    final int[][] services = new int[levels][];
+    parents[0] = new int[]{TraceTemplate.NO_PARENT};
+    int alreadyGenerated = 1; // root span.
+
+    // Root span.
+    final int root = topology.getRandomRootService(random);
+    services[0] = new int[]{root};
+    LevelServices previousLevelServices = new LevelServices(services[0], 1, slots);
+    final Span rootSpan = new Span(
+        topology.getSpanName(root, random),
+        0,
+        0,
+        "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
+        traceUUID,
+        idGenerator.nextId(),
+        null,
+        null,
+        List.of(new Pair<>(SERVICE, topology.getServiceName(root))),
+        null);
+    // Lines of the generated spans start the same way as of the template spans.
+    rootSpan.setLineTemplate(SpanLineRenderer.templateOf(rootSpan));
+    trace.add(0, rootSpan);
+    trace.setRoot(topology.getServiceName(root));
+
+    for (int n = 1; n < levels && alreadyGenerated < tt.spansCount; n++) {
+      final int max = Math.min(1 << n, tt.spansCount - alreadyGenerated);
+      alreadyGenerated += max;
+
+      final List<Span> previousLevel = trace.getSpans().get(n - 1);
+      final int[] levelParents = new int[max];
+      final int[] levelServices = new int[max];
+      int size = 0;
+
+      for (int m = 0; m < max; m++) {
+        final int nextService = topology.getNextLevelService(previousLevelServices.distinct,
+            previousLevelServices.count, random);
+        if (nextService == CompiledTopology.NO_SERVICE) {
+          alreadyGenerated = tt.spansCount;
+          break;
+        }
 
-          trace.add(n, new Span(
-              traceTopology.getSpanName(nextService),
-              0,
-              0,
-              "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
-              traceUUID,
-              UUID.randomUUID(),
-              List.of(parentUUID),
-              null,
-              // Not root spans will have error tag if ErrorConditions defined
-              List.of(new Pair<>(SERVICE, nextService)),
-              null));
+        final int parent = previousLevelServices.getRandomParent(topology, nextService, random);
+        if (parent == TraceTemplate.NO_PARENT) {
+          LOGGER.severe("Exceptional issue in trace generation!");
+          break;
         }
-      }
 
-      traceTemplates.put(tt, trace);
+        levelParents[size] = parent;
+        levelServices[size] = nextService;
+        size++;
+        final Span span = new Span(
+            topology.getSpanName(nextService, random),
+            0,
+            0,
+            "localhost", // + suffixes.charAt(rand.nextInt(sufLen)),
+            traceUUID,
+            idGenerator.nextId(),
+            List.of(previousLevel.get(parent).getSpanUUID()),
+            null,
+            // Not root spans will have error tag if ErrorConditions defined
+            List.of(new Pair<>(SERVICE, topology.getServiceName(nextService))),
+            null);
+        span.setLineTemplate(SpanLineRenderer.templateOf(span));
+        trace.add(n, span);
+      }
+      parents[n] = Arrays.copyOf(levelParents, size);
+      services[n] = Arrays.copyOf(levelServices, size);
+      previousLevelServices = new LevelServices(services[n], size, slots);
     }
+
+    return new TraceTemplate(trace, parents, services);
   }
 
-  private List<Pair<String, String>> getTags(@Nonnull Trace trace, @Nonnull TraceType traceType,
-                                             int level, String service, String spanName,
-                                             UUID parentUUID) {
-    final List<Pair<String, String>> tags = traceTopology.getServiceTags(service);
-    assert tags != null;
+  private List<Pair<String, String>> getTags(@Nonnull Trace trace,
+                                             @Nonnull TraceTemplate traceTemplate,
+                                             @Nonnull TraceType traceType, int level, int index,
+                                             String spanName, @Nonnull Random random) {
+    final List<Pair<String, String>> tags = traceTopology.getCompiledTopology().
+        getServiceTags(traceTemplate.getService(level, index), random);
 
-    if (isEffectivePercentage(traceType.debugRate)) {
+    if (isEffectivePercentage(traceType.debugRate, random)) {
       tags.add(DEBUG_TAG);
     }
 
     if (traceType.errorConditions == null || traceType.errorConditions.isEmpty()) {
       // In case errorConditions don't set, only the root span will be marked as error.
-      if (level == 0 && isEffectivePercentage(traceType.errorRate)) {
+      if (level == 0 && isEffectivePercentage(traceType.errorRate, random)) {
         tags.add(ERROR_TAG);
       }
-    } else if (isEffectivePercentage(getErrorRate(spanName, tags, traceType.errorConditions))) {
+    } else if (isEffectivePercentage(getErrorRate(spanName, tags, traceType.errorConditions),
+        random)) {
       tags.add(ERROR_TAG);
 
-      // Escalate error to the parent spans.
-      AtomicReference<UUID> atomicParent = new AtomicReference<>(parentUUID);
-      for (int n = level - 1; n >= 0 && atomicParent.get() != null; n--) {
-        final Span parentSpan = trace.getSpans().get(n).stream().
-            filter(span -> span.getSpanUUID().equals(atomicParent.get())).
-            findAny().orElse(null);
-
-        if (parentSpan != null) {
-          assert parentSpan.getTags() != null;
-          // Interrupt error escalation if the parent span already erroneous.
-          if (parentSpan.getTags().stream().anyMatch(p -> p._1.equals(ERROR))) {
-            break;
-          }
-          parentSpan.getTags().add(ERROR_TAG);
-          if (parentSpan.getParents() != null && !parentSpan.getParents().isEmpty()) {
-            atomicParent.set(parentSpan.getParents().get(0));
-          } else {
-            atomicParent.set(null);
-          }
+      // Escalate error to the parent spans, which are at the same places as in the template.
+      int parent = traceTemplate.getParent(level, index);
+      for (int n = level - 1; n >= 0 && parent != TraceTemplate.NO_PARENT; n--) {
+        final Span parentSpan = trace.getSpans().get(n).get(parent);
+        assert parentSpan.getTags() != null;
+        // Interrupt error escalation if the parent span already erroneous.
+        if (parentSpan.getTags().stream().anyMatch(p -> p._1.equals(ERROR))) {
+          break;
         }
+        parentSpan.getTags().add(ERROR_TAG);
+        parent = traceTemplate.getParent(n, parent);
       }
     }
 
     return tags;
   }
 
-  private UUID getRandomParentUUID(@Nonnull Trace trace, int level, String service) {
-    if (level >= trace.getSpans().size()) {
-      return null;
-    }
-
-    final Set<UUID> parents = new HashSet<>();
-    trace.getSpans().get(level).forEach(span -> {
-      if (span.getTags() != null && !span.getTags().isEmpty() &&
-          traceTopology.isParent(service, span.getTags().get(0)._2)) {
-        parents.add(span.getSpanUUID());
-      }
-    });
-
-    if (parents.isEmpty()) {
-      return null;
-    } else {
-      return getRandomFromSet(parents);
-    }
-  }
-
   @Override
   public Statistics getStatistics() {
     return statistics;
@@ -207,106 +214,233 @@ public class FromTopologyGenerator extends TraceGenerator {
   @Override
   protected void initGeneration() {
     traceTopology = generatorConfig.getTraceTopology();
-    generateTraceTemplates();
-    List<ReferenceDistribution<TraceType>> referenceDistributions = traceTopology.traceTypes.
+    // Trace types are copied, since every generator changes their distributions while iterating.
+    traceTypes = traceTopology.traceTypes.stream().map(TraceType::new).
+        collect(Collectors.toList());
+    if (seed != null) {
+      // All generators of the seed should have the same templates.
+      random.setSeed(seed);
+    }
+    templatePool = new TemplatePool(traceTypes, generatorConfig.getTemplatePoolSize(),
+        this::buildTraceTemplate, random, idGenerator);
+    final Duration refreshInterval = generatorConfig.getTemplateRefreshInterval();
+    if (!refreshInterval.isZero()) {
+      if (seed == null) {
+        templatePool.startRefreshing(refreshInterval, "template-refresher-" + partition);
+      } else {
+        LOGGER.info("Trace templates aren't refreshed, since the generation is seeded.");
+      }
+    }
+    List<ReferenceDistribution<TraceType>> referenceDistributions = traceTypes.
         stream().map(traceType -> new ReferenceDistribution<>(traceType,
         traceType.tracePercentage)).collect(Collectors.toList());
 
-    if (generatorConfig.getTotalTraceCount() > 0) {
-      traceTypeIterator = new ExactDistributionIterator<>(referenceDistributions,
-          generatorConfig.getTotalTraceCount());
+    final int totalTraceCount = generatorConfig.getTotalTraceCount();
+    if (totalTraceCount > 0) {
+      final Random shuffleRandom = new Random(partitionSeed);
+      final ExactDistributionIterator<ReferenceDistribution<TraceType>> iterator =
+          new ExactDistributionIterator<>(referenceDistributions, totalTraceCount,
+              partitionStart(totalTraceCount), partitionEnd(totalTraceCount), shuffleRandom,
+              random);
+      traceTypeIterator = iterator;
       for (ReferenceDistribution<TraceType> traceType : referenceDistributions) {
-        traceType.reference.init((int) Math.round(traceType.portion));
+        final ExactDistributionIterator.Range range = iterator.getRange(traceType);
+        traceType.reference.init(range.total, range.from, range.to, shuffleRandom,
+            random);
       }
     } else {
-      traceTypeIterator = new RandomDistributionIterator<>(referenceDistributions);
-      traceTopology.traceTypes.forEach(traceType -> {
-        traceType.init(generatorConfig.getTotalTraceCount());
+      traceTypeIterator = new RandomDistributionIterator<>(referenceDistributions, random);
+      traceTypes.forEach(traceType -> {
+        traceType.init(totalTraceCount, random);
       });
     }
   }
 
   @Override
-  protected Trace generateTrace(long startMillis) {
-    ReferenceDistribution<TraceType> traceTypeDistribution =
-        traceTypeIterator.getNextDistribution();
+  protected TracePlan planTrace(long startMillis) {
+    final boolean seekable = seed != null;
+    ReferenceDistribution<TraceType> traceTypeDistribution = seekable ?
+        traceTypeIterator.getDistribution(traceIndex) : traceTypeIterator.getNextDistribution();
     if (traceTypeDistribution == null) {
       return null;
     }
     final TraceType traceType = traceTypeDistribution.reference;
-    final ValueDistribution traceDurationDistribution = traceType.getNextTraceDuration();
+    final ValueDistribution traceDurationDistribution = seekable ?
+        traceType.getTraceDuration(traceTypeIterator.getIndexInDistribution(traceIndex)) :
+        traceType.getNextTraceDuration();
     if (traceDurationDistribution == null) {
       return null;
     }
     final long traceDuration = traceDurationDistribution.startValue +
-        RANDOM.nextInt(traceDurationDistribution.endValue - traceDurationDistribution.startValue);
+        random.nextInt(traceDurationDistribution.endValue - traceDurationDistribution.startValue);
 
-    final Trace traceTemplate = traceTemplates.get(traceType);
+    final TraceTemplate traceTemplate = templatePool.get(traceType, random);
     if (traceTemplate == null) {
       return null;
     }
+    return new TopologyPlan(idGenerator.nextId(), traceType, traceTemplate, startMillis,
+        traceDuration);
+  }
 
-    final Map<UUID, UUID> uuids = new HashMap<>();
-
-    final UUID traceUUID = UUID.randomUUID();
-    final Trace trace = new Trace(traceTemplate.getLevels(), traceUUID);
-    final Span root = traceTemplate.getSpans().get(0).get(0);
-    assert root.getTags() != null;
-    trace.add(0, new Span(
-        root.getName(),
-        startMillis,
-        traceDuration,
-        "localhost",
-        traceUUID,
-        uuids.computeIfAbsent(root.getSpanUUID(), k -> UUID.randomUUID()),
-        null,
-        null,
-        getTags(trace, traceType, 0, root.getTags().get(0)._2, root.getName(), null),
-        null));
-    trace.setRoot(root.getName());
-
-    for (int n = 1; n < traceTemplate.getSpans().size(); n++) {
-      for (int m = 0; m < traceTemplate.getSpans().get(n).size(); m++) {
-        final Span span = traceTemplate.getSpans().get(n).get(m);
-        assert span.getParents() != null;
-        final Span templateParentSpan = traceTemplate.getSpans().get(n - 1).stream().
-            filter(s -> s.getSpanUUID().equals(span.getParents().get(0))).findAny().
-            orElse(null);
-        if (templateParentSpan == null) {
-          return null;
-        }
+  /**
+   * Trace of the trace type generated from the template, which is kept by the plan even if the
+   * template pool is refreshed.
+   */
+  private final class TopologyPlan extends TracePlan {
+    private final TraceType traceType;
+    private final TraceTemplate traceTemplate;
+    private final long startMillis;
+    private final long traceDuration;
+
+    TopologyPlan(UUID traceUUID, TraceType traceType, TraceTemplate traceTemplate,
+                 long startMillis, long traceDuration) {
+      super(traceUUID);
+      this.traceType = traceType;
+      this.traceTemplate = traceTemplate;
+      this.startMillis = startMillis;
+      this.traceDuration = traceDuration;
+    }
+
+    @Override
+    int getSpansCount() {
+      return traceTemplate.trace.getSpansCount();
+    }
 
-        final UUID parentUUID = uuids.computeIfAbsent(templateParentSpan.getSpanUUID(),
-            k -> UUID.randomUUID());
-        final Span parentSpan = trace.getSpans().get(n - 1).stream().
-            filter(s -> s.getSpanUUID().equals(parentUUID)).findAny().orElse(null);
-        if (parentSpan == null) {
-          return null;
+    @Override
+    Trace materialize(@Nonnull Random random, @Nonnull IdGenerator idGenerator,
+                      @Nullable Statistics statistics) {
+      final List<List<Span>> templateSpans = traceTemplate.trace.getSpans();
+      final Trace trace = new Trace(traceTemplate.trace.getLevels(), traceUUID);
+      final Span root = templateSpans.get(0).get(0);
+      final Span rootSpan = new Span(
+          root.getName(),
+          startMillis,
+          traceDuration,
+          "localhost",
+          traceUUID,
+          idGenerator.nextId(),
+          null,
+          null,
+          getTags(trace, traceTemplate, traceType, 0, 0, root.getName(), random),
+          null);
+      rootSpan.setLineTemplate(root.getLineTemplate());
+      trace.add(0, rootSpan);
+      trace.setRoot(root.getName());
+
+      // Spans are generated in the template order, so every span gets the place of its template
+      // span and the parent is found by the template parent index.
+      for (int n = 1; n < templateSpans.size(); n++) {
+        for (int m = 0; m < templateSpans.get(n).size(); m++) {
+          final Span span = templateSpans.get(n).get(m);
+          final Span parentSpan =
+              trace.getSpans().get(n - 1).get(traceTemplate.getParent(n, m));
+          final UUID parentUUID = parentSpan.getSpanUUID();
+
+          // Spans of a parent too short to be split get the least duration instead of failing
+          // the trace, since with the seed the failed trace would be generated again the same
+          // way.
+          final long halfDuration = Math.max(1, parentSpan.getDuration() / 2);
+          final long duration = halfDuration + (long) (random.nextDouble() * halfDuration);
+          final long spanStartMillis = parentSpan.getStartMillis() +
+              (long) (random.nextDouble() * (parentSpan.getDuration() - duration));
+          final Span generatedSpan = new Span(
+              span.getName(),
+              spanStartMillis,
+              duration,
+              "localhost",
+              traceUUID,
+              idGenerator.nextId(),
+              List.of(parentUUID),
+              null,
+              getTags(trace, traceTemplate, traceType, n, m, span.getName(), random),
+              null);
+          generatedSpan.setLineTemplate(span.getLineTemplate());
+          trace.add(n, generatedSpan);
         }
+      }
 
-        final long halfDuration = parentSpan.getDuration() / 2;
-        if (halfDuration == 0) {
-          return null;
+      if (statistics != null) {
+        statistics.offer(root.getName(), trace, traceDuration);
+      }
+      return trace;
+    }
+  }
+
+  /**
+   * Distinct services of a template level and the spans of every service, so next level services
+   * and their parents are selected without scanning the spans of the level.
+   */
+  private static final class LevelServices {
+    /**
+     * Services in the order of their first spans.
+     */
+    final int[] distinct;
+    final int count;
+    /**
+     * Spans of service distinct[k] are spans[offsets[k]..offsets[k + 1]).
+     */
+    private final int[] offsets;
+    private final int[] spans;
+
+    /**
+     * @param levelServices Services of the spans of the level.
+     * @param size          Number of the spans.
+     * @param slots         Slots of all services, all are {@link #NO_SLOT} before and after.
+     */
+    LevelServices(int[] levelServices, int size, int[] slots) {
+      this.distinct = new int[size];
+      int distinctCount = 0;
+      for (int n = 0; n < size; n++) {
+        if (slots[levelServices[n]] == NO_SLOT) {
+          slots[levelServices[n]] = distinctCount;
+          distinct[distinctCount++] = levelServices[n];
         }
-        final long duration = halfDuration + (long) (RANDOM.nextDouble() * halfDuration);
-        final long spanStartMillis = parentSpan.getStartMillis() +
-            (long) (RANDOM.nextDouble() * (parentSpan.getDuration() - duration));
-        assert span.getTags() != null;
-        trace.add(n, new Span(
-            span.getName(),
-            spanStartMillis,
-            duration,
-            "localhost",
-            traceUUID,
-            uuids.computeIfAbsent(span.getSpanUUID(), k -> UUID.randomUUID()),
-            List.of(parentUUID),
-            null,
-            getTags(trace, traceType, n, span.getTags().get(0)._2, span.getName(), parentUUID),
-            null));
+      }
+      this.count = distinctCount;
+
+      this.offsets = new int[count + 1];
+      for (int n = 0; n < size; n++) {
+        offsets[slots[levelServices[n]] + 1]++;
+      }
+      for (int k = 0; k < count; k++) {
+        offsets[k + 1] += offsets[k];
+      }
+      this.spans = new int[size];
+      final int[] next = Arrays.copyOf(offsets, count);
+      for (int n = 0; n < size; n++) {
+        spans[next[slots[levelServices[n]]]++] = n;
+      }
+
+      for (int k = 0; k < count; k++) {
+        slots[distinct[k]] = NO_SLOT;
       }
     }
 
-    statistics.offer(root.getName(), trace, traceDuration);
-    return trace;
+    /**
+     * Randomly selects a span of the level, which service can be a parent of the given service.
+     *
+     * @return Index of the span or {@link TraceTemplate#NO_PARENT} if there is no such span.
+     */
+    int getRandomParent(CompiledTopology topology, int service, Random random) {
+      int eligible = 0;
+      for (int k = 0; k < count; k++) {
+        if (topology.isParent(service, distinct[k])) {
+          eligible += offsets[k + 1] - offsets[k];
+        }
+      }
+      if (eligible == 0) {
+        return TraceTemplate.NO_PARENT;
+      }
+
+      int span = random.nextInt(eligible);
+      for (int k = 0; ; k++) {
+        if (topology.isParent(service, distinct[k])) {
+          if (span < offsets[k + 1] - offsets[k]) {
+            return spans[offsets[k] + span];
+          }
+          span -= offsets[k + 1] - offsets[k];
+        }
+      }
+    }
   }
-}
\ No newline at end of file
+}
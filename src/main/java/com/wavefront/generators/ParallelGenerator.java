@@ -0,0 +1,86 @@
+package com.wavefront.generators;
+
+import com.wavefront.DataQueue;
+import com.wavefront.SpanSender;
+import com.wavefront.helpers.Statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Generator running several trace generators in parallel threads. Every generator generates its
+ * own part of the traces with its own random and statistics, the statistics are merged when all
+ * of them finish.
+ */
+public class ParallelGenerator extends BasicGenerator {
+  private static final Logger LOGGER =
+      Logger.getLogger(ParallelGenerator.class.getCanonicalName());
+  private final List<TraceGenerator> generators;
+
+  /**
+   * ParallelGenerator constructor.
+   *
+   * @param dataQueue  Data queue the generators add traces to.
+   * @param generators Generators, every one should be set to its own part of the traces.
+   */
+  public ParallelGenerator(@Nonnull DataQueue dataQueue,
+                           @Nonnull List<TraceGenerator> generators) {
+    super(dataQueue);
+    if (generators.isEmpty()) {
+      throw new IllegalArgumentException("At least one generator is required!");
+    }
+    this.generators = List.copyOf(generators);
+    this.generators.forEach(generator -> generator.setSendingStatistics(false));
+  }
+
+  @Override
+  public void setSenders(@Nonnull List<SpanSender> senders) {
+    if (senders.size() != generators.size()) {
+      throw new IllegalArgumentException("Every generator thread needs its own sender!");
+    }
+    for (int n = 0; n < generators.size(); n++) {
+      generators.get(n).setSenders(List.of(senders.get(n)));
+    }
+  }
+
+  @Override
+  public void generateForFile() {
+    generate(TraceGenerator::generateForFile);
+  }
+
+  @Override
+  public void run() {
+    generate(TraceGenerator::run);
+  }
+
+  @Override
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  private void generate(Consumer<TraceGenerator> generation) {
+    final List<Thread> threads = new ArrayList<>();
+    for (int n = 0; n < generators.size(); n++) {
+      final TraceGenerator generator = generators.get(n);
+      final Thread thread = new Thread(() -> generation.accept(generator), "generator-" + n);
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        LOGGER.log(Level.WARNING, "Interrupted while waiting for generators", e);
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    generators.forEach(generator -> statistics.merge(generator.getStatistics()));
+    generators.get(0).sendStat(statistics);
+  }
+}
@@ -0,0 +1,252 @@
+package com.wavefront.generators;
+
+import com.wavefront.datastructures.ErrorCondition;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.SpanLineTemplate;
+import com.wavefront.datastructures.TagVariation;
+import com.wavefront.datastructures.TraceTypePattern;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+import static com.wavefront.generators.TraceGenerator.DEBUG_TAG;
+import static com.wavefront.generators.TraceGenerator.ERROR_TAG;
+import static com.wavefront.helpers.Defaults.HUNDRED_PERCENT;
+
+/**
+ * Trace type pattern compiled for generation. Span names, tag values and error conditions are
+ * resolved into arrays once, so generating a span is indexing them with random draws instead of
+ * building strings, walking tag sets and matching conditions by names. The draws are the same as
+ * of interpreting the pattern, so seeded runs generate the same traces.
+ */
+final class PatternPlan {
+  /**
+   * Span name index of the root span, span names of the other spans follow it.
+   */
+  static final int ROOT = 0;
+  /**
+   * Source of the generated spans.
+   */
+  static final String SOURCE = "localhost";
+  final TraceTypePattern pattern;
+  final int levels;
+  private final String[] spanNames;
+  /**
+   * Span line templates of the span names, the root span has no parents, other spans have one.
+   */
+  private final SpanLineTemplate[] lineTemplates;
+  /**
+   * Levels of the non-root spans in the order they are added, repeated while there are spans.
+   */
+  private final int[] levelOrder;
+  private final List<TagPlan> mandatoryTags = new ArrayList<>();
+  private final List<TagPlan> optionalTags = new ArrayList<>();
+  private final double optionalTagsProbability;
+  private final double debugProbability;
+  /**
+   * Error conditions applicable to every span name, or null if the common error rate is used.
+   */
+  private final ConditionPlan[][] conditions;
+  private final int maxTags;
+
+  PatternPlan(@Nonnull TraceTypePattern pattern) {
+    this.pattern = pattern;
+    this.levels = pattern.nestingLevel;
+    final String suffixes = pattern.spanNameSuffixes;
+    this.spanNames = new String[suffixes.length() + 1];
+    spanNames[ROOT] = pattern.traceTypeName;
+    for (int n = 0; n < suffixes.length(); n++) {
+      spanNames[n + 1] = "name_" + suffixes.charAt(n);
+    }
+    this.lineTemplates = new SpanLineTemplate[spanNames.length];
+    final UUID id = new UUID(0, 0);
+    for (int n = 0; n < spanNames.length; n++) {
+      lineTemplates[n] = SpanLineRenderer.templateOf(new Span(spanNames[n], 0, 0, SOURCE, id, id,
+          n == ROOT ? null : List.of(id), null, null, null));
+    }
+    this.levelOrder = new int[levels * (levels - 1) / 2];
+    int index = 0;
+    for (int n = 1; n < levels; n++) {
+      for (int m = n; m < levels; m++) {
+        levelOrder[index++] = m;
+      }
+    }
+
+    if (pattern.mandatoryTags != null) {
+      pattern.mandatoryTags.forEach(tag -> mandatoryTags.add(new TagPlan(tag)));
+    }
+    if (pattern.optionalTagsPercentage > 0 && pattern.optionalTags != null) {
+      pattern.optionalTags.forEach(tag -> optionalTags.add(new TagPlan(tag)));
+    }
+    this.optionalTagsProbability = pattern.optionalTagsPercentage / HUNDRED_PERCENT;
+    this.debugProbability = pattern.debugRate / HUNDRED_PERCENT;
+    this.maxTags = mandatoryTags.size() + optionalTags.size() + 2;
+
+    if (pattern.errorConditions == null) {
+      this.conditions = null;
+    } else {
+      this.conditions = new ConditionPlan[spanNames.length][];
+      for (int name = 0; name < spanNames.length; name++) {
+        final List<ConditionPlan> applicable = new ArrayList<>();
+        for (ErrorCondition condition : pattern.errorConditions) {
+          if (condition.spanNames == null || condition.spanNames.contains(spanNames[name])) {
+            applicable.add(new ConditionPlan(condition));
+          }
+        }
+        conditions[name] = applicable.toArray(new ConditionPlan[0]);
+      }
+    }
+  }
+
+  /**
+   * @return Number of span names of the non-root spans.
+   */
+  int getSpanNamesCount() {
+    return spanNames.length - 1;
+  }
+
+  /**
+   * @param name Index of the span name, {@link #ROOT} or 1 + index of the span name suffix.
+   * @return Span name.
+   */
+  String getSpanName(int name) {
+    return spanNames[name];
+  }
+
+  /**
+   * @param name Index of the span name.
+   * @return Span line template of the spans with the name.
+   */
+  SpanLineTemplate getLineTemplate(int name) {
+    return lineTemplates[name];
+  }
+
+  /**
+   * @return False if the pattern has the root level only, so there is nowhere to add the other
+   * spans.
+   */
+  boolean hasChildLevels() {
+    return levelOrder.length > 0;
+  }
+
+  /**
+   * @param span Index of the non-root span in the trace.
+   * @return Level of the span.
+   */
+  int getLevel(int span) {
+    return levelOrder[span % levelOrder.length];
+  }
+
+  /**
+   * Creates tags of a span: the mandatory tags, some of the optional ones, the debug tag and the
+   * error tag according to the error conditions or the given error rate.
+   *
+   * @param name      Index of the span name.
+   * @param errorRate Error rate used when the pattern has no error conditions.
+   * @param random    Random of the generator.
+   * @return Tags of the span.
+   */
+  List<Pair<String, String>> createTags(int name, double errorRate, @Nonnull Random random) {
+    final List<Pair<String, String>> tags = new ArrayList<>(maxTags);
+    for (TagPlan tag : mandatoryTags) {
+      tags.add(tag.pick(random));
+    }
+    for (TagPlan tag : optionalTags) {
+      if (random.nextDouble() <= optionalTagsProbability) {
+        tags.add(tag.pick(random));
+      }
+    }
+    if (debugProbability > 0 && random.nextDouble() <= debugProbability) {
+      tags.add(DEBUG_TAG);
+    }
+    // Error conditions override the common error rate.
+    if (conditions != null) {
+      errorRate = getErrorRate(conditions[name], tags);
+    }
+    if (errorRate > 0 && random.nextDouble() <= errorRate / HUNDRED_PERCENT) {
+      tags.add(ERROR_TAG);
+    }
+    return tags;
+  }
+
+  /**
+   * Same as {@link ErrorCondition#getErrorRate}, but tags are matched by the compiled values.
+   */
+  private static double getErrorRate(ConditionPlan[] conditions,
+                                     List<Pair<String, String>> tags) {
+    double errorRate = 0;
+    for (ConditionPlan condition : conditions) {
+      if (condition.matches(tags)) {
+        errorRate += condition.errorRate - errorRate * condition.errorRate / HUNDRED_PERCENT;
+        if (errorRate > HUNDRED_PERCENT) {
+          errorRate = HUNDRED_PERCENT;
+          break;
+        }
+      }
+    }
+    return errorRate;
+  }
+
+  /**
+   * Values of a tag, every value is a ready tag rendered for the span lines, in the iteration order
+   * of the values set.
+   */
+  private static final class TagPlan {
+    private final List<Pair<String, String>> values = new ArrayList<>();
+    private final Pair<String, String> noValue;
+
+    TagPlan(TagVariation tag) {
+      tag.tagValues.forEach(value -> values.add(SpanLineRenderer.tagOf(tag.tagName, value)));
+      this.noValue = new Pair<>(tag.tagName, null);
+    }
+
+    Pair<String, String> pick(Random random) {
+      return values.isEmpty() ? noValue : values.get(random.nextInt(values.size()));
+    }
+  }
+
+  /**
+   * Error condition resolved to the tags it matches, which are compared by identity.
+   */
+  private final class ConditionPlan {
+    private final List<Pair<String, String>> matchingTags = new ArrayList<>();
+    private final double errorRate;
+
+    ConditionPlan(ErrorCondition condition) {
+      this.errorRate = condition.errorRate;
+      final List<TagPlan> tags = new ArrayList<>(mandatoryTags);
+      tags.addAll(optionalTags);
+      for (TagPlan tag : tags) {
+        for (Pair<String, String> value : tag.values) {
+          if (isMatching(value, condition)) {
+            matchingTags.add(value);
+          }
+        }
+      }
+      if (isMatching(DEBUG_TAG, condition)) {
+        matchingTags.add(DEBUG_TAG);
+      }
+    }
+
+    boolean matches(List<Pair<String, String>> tags) {
+      for (Pair<String, String> tag : tags) {
+        for (Pair<String, String> matchingTag : matchingTags) {
+          if (tag == matchingTag) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private boolean isMatching(Pair<String, String> tag, ErrorCondition condition) {
+      return tag._1.equals(condition.tagName) && tag._2.equals(condition.tagValue);
+    }
+  }
+}
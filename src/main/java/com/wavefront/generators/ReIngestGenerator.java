@@ -102,7 +102,7 @@ public class ReIngestGenerator extends BasicGenerator {
             // Add conditional errors
             if (tagAndValue != null && percentage > 0) {
               traceFromWF.getSpans().forEach(span -> span.getAnnotations().forEach(map -> {
-                if ((RANDOM.nextDouble() <= percentage / HUNDRED_PERCENT) &&
+                if ((random.nextDouble() <= percentage / HUNDRED_PERCENT) &&
                     map.entrySet().stream().
                         anyMatch(entry -> entry.getKey().equals(tagAndValue._1) &&
                             entry.getValue().equals(tagAndValue._2))) {
@@ -120,7 +120,7 @@ public class ReIngestGenerator extends BasicGenerator {
                 latencies.forEach(l -> {
                   if (span.getName().equals(l.spanName)) {
                     int index = span.getAnnotations().indexOf(Map.of(l.tagName, l.tagValue));
-                    if (index > -1 && RANDOM.nextDouble() < l.probability) {
+                    if (index > -1 && random.nextDouble() < l.probability) {
                       span.multiplyDurationMs(l.delta);
                       fixTraceDuration(traceFromWF, span, l.delta);
                     }
@@ -135,11 +135,13 @@ public class ReIngestGenerator extends BasicGenerator {
             traceFromWF.shiftTrace(delta);
 
             final Trace trace = new Trace(1, null);
-            trace.setRoot(traceFromWF.updateUUIDs());
+            trace.setRoot(traceFromWF.updateUUIDs(idGenerator));
             // Convert WFtrace to trace convenient for DataQueue
             traceFromWF.getSpans().forEach(wfspan -> {
               trace.add(0, wfspan.toSpan());
             });
+            // Re-ingested spans have no intended moments, only spans in flight are limited.
+            dataQueue.awaitSenders(0);
             dataQueue.addTrace(trace);
             statistics.offer(trace.getSpans().get(0).get(0).getName(),
                 trace, traceFromWF.getTotalDurationMs());
@@ -0,0 +1,129 @@
+package com.wavefront.generators;
+
+import com.wavefront.datastructures.TraceType;
+import com.wavefront.helpers.XoshiroRandom;
+import com.wavefront.ids.IdGenerator;
+import com.wavefront.ids.RandomIdGenerator;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Templates of the trace types of a topology generator. Every trace type has a pool of a fixed
+ * number of templates and every trace takes a random one, so traces of a type have different
+ * shapes, while generating a trace is still replaying a template. A background thread of the
+ * lowest priority may rebuild the templates one after another, so the shapes keep changing over
+ * the run within the same memory.
+ */
+final class TemplatePool {
+  /**
+   * Builds a template of the trace type. Called by the generator thread and by the refreshing
+   * thread, so it must use only the given random and ID generator.
+   */
+  interface Builder {
+    TraceTemplate build(@Nonnull TraceType traceType, @Nonnull Random random,
+                        @Nonnull IdGenerator idGenerator);
+  }
+
+  private final List<TraceType> traceTypes;
+  private final int size;
+  private final Builder builder;
+  private final Map<TraceType, AtomicReferenceArray<TraceTemplate>> templates = new HashMap<>();
+  private Thread refresher;
+
+  /**
+   * Builds all templates of the pool.
+   *
+   * @param traceTypes  Trace types.
+   * @param size        Number of templates of every trace type.
+   * @param builder     Builder of the templates.
+   * @param random      Random of the generator.
+   * @param idGenerator ID generator of the generator.
+   */
+  TemplatePool(@Nonnull List<TraceType> traceTypes, int size, @Nonnull Builder builder,
+               @Nonnull Random random, @Nonnull IdGenerator idGenerator) {
+    this.traceTypes = traceTypes;
+    this.size = Math.max(1, size);
+    this.builder = builder;
+    for (TraceType traceType : traceTypes) {
+      final AtomicReferenceArray<TraceTemplate> pool = new AtomicReferenceArray<>(this.size);
+      for (int n = 0; n < this.size; n++) {
+        pool.set(n, builder.build(traceType, random, idGenerator));
+      }
+      templates.put(traceType, pool);
+    }
+  }
+
+  /**
+   * Randomly takes a template of the trace type. With a single template nothing is drawn from the
+   * random.
+   *
+   * @param traceType Trace type.
+   * @param random    Random of the generator.
+   * @return Template or null if the trace type isn't of the pool.
+   */
+  @Nullable
+  TraceTemplate get(@Nonnull TraceType traceType, @Nonnull Random random) {
+    final AtomicReferenceArray<TraceTemplate> pool = templates.get(traceType);
+    if (pool == null) {
+      return null;
+    }
+    return pool.get(size == 1 ? 0 : random.nextInt(size));
+  }
+
+  /**
+   * Starts rebuilding the templates in the background, one by one, with the given interval
+   * between them.
+   *
+   * @param interval Interval between rebuilding two templates.
+   * @param name     Name of the refreshing thread.
+   */
+  void startRefreshing(@Nonnull Duration interval, @Nonnull String name) {
+    final long intervalMillis = interval.toMillis();
+    refresher = new Thread(() -> refresh(intervalMillis), name);
+    refresher.setDaemon(true);
+    refresher.setPriority(Thread.MIN_PRIORITY);
+    refresher.start();
+  }
+
+  /**
+   * Stops rebuilding the templates, if started, and waits for the template being rebuilt.
+   */
+  void stopRefreshing() {
+    if (refresher != null) {
+      refresher.interrupt();
+      try {
+        refresher.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      refresher = null;
+    }
+  }
+
+  private void refresh(long intervalMillis) {
+    final Random random = new XoshiroRandom();
+    final IdGenerator idGenerator = new RandomIdGenerator(random, false);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        // Templates are rebuilt in turn, so all of them live for about the same time.
+        for (TraceType traceType : traceTypes) {
+          final AtomicReferenceArray<TraceTemplate> pool = templates.get(traceType);
+          for (int n = 0; n < size; n++) {
+            Thread.sleep(intervalMillis);
+            pool.set(n, builder.build(traceType, random, idGenerator));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // Generation is complete.
+    }
+  }
+}
@@ -1,10 +1,18 @@
 package com.wavefront.generators;
 
 import com.wavefront.DataQueue;
+import com.wavefront.SpanSender;
 import com.wavefront.config.GeneratorConfig;
+import com.wavefront.datastructures.RateProfile;
+import com.wavefront.datastructures.Span;
 import com.wavefront.datastructures.StatSpan;
 import com.wavefront.datastructures.Trace;
+import com.wavefront.datastructures.TraceRecipe;
+import com.wavefront.helpers.Statistics;
+import com.wavefront.helpers.XoshiroRandom;
+import com.wavefront.ids.IdGenerator;
 import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
 
 import org.apache.commons.lang3.NotImplementedException;
 
@@ -12,22 +20,37 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.wavefront.helpers.Defaults.ANSI_RESET;
 import static com.wavefront.helpers.Defaults.ANSI_YELLOW;
+import static com.wavefront.helpers.Defaults.DEBUG;
+import static com.wavefront.helpers.Defaults.ERROR;
 import static com.wavefront.helpers.Defaults.GIGA;
 
 /**
- * Common interface for various trace generators.
+ * Common interface for various trace generators. A trace is generated in two steps: the generator
+ * plans it, making every decision depending on its state, and the plan is materialized into spans
+ * by a random split from the generator random for the trace. If the data queue has lazy traces,
+ * the queue gets the plan with the random of the trace instead of the spans, so the spans are
+ * materialized when they are sent.
  *
  * @author Davit Baghdasaryan (dbagdasarya@vmware.com)
  */
 public abstract class TraceGenerator extends BasicGenerator {
+  /**
+   * Error and debug tags of the generated spans, rendered once. They are equal to the tags of
+   * {@link com.wavefront.helpers.Defaults}.
+   */
+  static final Pair<String, String> ERROR_TAG = SpanLineRenderer.tagOf(ERROR, "true");
+  static final Pair<String, String> DEBUG_TAG = SpanLineRenderer.tagOf(DEBUG, "true");
   protected GeneratorConfig generatorConfig;
   private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
   private double usedHeapMemoryGB = 0;
@@ -37,11 +60,109 @@ public abstract class TraceGenerator extends BasicGenerator {
   private boolean isSleep;
   private final double MAX_ALLOWED_HEAP_MEMORY = (maxHeapMemoryGB * 90) / 100;
   private final int QUEUE_LOW_LIMIT = 20;
+  /**
+   * Part of the traces generated by this generator, when generation is split between several
+   * generators, see {@link #setPartition(int, int, long)}.
+   */
+  protected int partition = 0;
+  protected int partitions = 1;
+  protected long partitionSeed = random.nextLong();
+  /**
+   * Seed of the generation, if set, every trace is generated by the random seeded by the seed and
+   * the trace index, see {@link #setSeed(long)}.
+   */
+  protected Long seed = null;
+  /**
+   * Index of the trace being generated over all parts.
+   */
+  protected int traceIndex = 0;
+  /**
+   * Random of the trace materialized by the generator itself, seeded for every trace.
+   */
+  private final XoshiroRandom traceRandom = new XoshiroRandom();
+  /**
+   * Lazy traces queued, but not materialized by the senders yet.
+   */
+  private final AtomicInteger lazyTraces = new AtomicInteger(0);
+  private int generatedTraces = 0;
+  private long generatedSpans = 0;
+  private String statName;
+  private boolean sendingStatistics = true;
+  /**
+   * Sender of the generated traces if the generator sends them itself, see
+   * {@link #setSenders(List)}.
+   */
+  @Nullable
+  private SpanSender sender = null;
 
   protected TraceGenerator(@Nonnull DataQueue dataQueue) {
     super(dataQueue);
   }
 
+  /**
+   * Makes the generator generate only a part of the traces, so several generators can run in
+   * parallel. Every part gets an equal share of the traces, spans and rate, while in the exact
+   * mode all parts together keep the exact counts of the trace types.
+   *
+   * @param partition  Index of the part.
+   * @param partitions Number of parts.
+   * @param seed       Seed shared by all parts for splitting the distributions identically.
+   */
+  public void setPartition(int partition, int partitions, long seed) {
+    if (partition < 0 || partition >= partitions) {
+      throw new IllegalArgumentException("Partition must be in [0, " + partitions + ")!");
+    }
+    this.partition = partition;
+    this.partitions = partitions;
+    this.partitionSeed = seed;
+  }
+
+  /**
+   * Makes the generation deterministic: the trace with index k is generated by the random seeded
+   * by (seed, k), and in the exact mode its trace type and distributions are picked by the index
+   * too. So the traces don't depend on the traces generated before them, and generators splitting
+   * the traces by {@link #setPartition(int, int, long)}, in one or several processes, together
+   * generate the same traces as a single generator. The partition seed should be set to the same
+   * seed.
+   *
+   * @param seed Seed of the generation.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @param sendingStatistics If false, statistics of the generated traces aren't sent, since the
+   *                          generator is a part of another one.
+   */
+  void setSendingStatistics(boolean sendingStatistics) {
+    this.sendingStatistics = sendingStatistics;
+  }
+
+  @Override
+  public void setSenders(@Nonnull List<SpanSender> senders) {
+    if (senders.size() != 1) {
+      throw new IllegalArgumentException("Generator runs in a single thread!");
+    }
+    this.sender = senders.get(0);
+  }
+
+  /**
+   * @param total Total count for all parts.
+   * @return Start (inclusive) of this part of the total count.
+   */
+  protected int partitionStart(long total) {
+    return (int) (total * partition / partitions);
+  }
+
+  /**
+   * @param total Total count for all parts.
+   * @return End (exclusive) of this part of the total count.
+   */
+  protected int partitionEnd(long total) {
+    return (int) (total * (partition + 1) / partitions);
+  }
+
   /**
    * Initialize the generation process.
    */
@@ -53,15 +174,16 @@ public abstract class TraceGenerator extends BasicGenerator {
   protected Function<DataQueue, Boolean> getWhileCheck(@Nonnull GeneratorConfig generatorConfig,
                                                        @Nonnull Logger logger) {
     Function<DataQueue, Boolean> whileCheck;
-    final int traceCount = generatorConfig.getTotalTraceCount();
-    if (traceCount > 0) {
+    final int totalTraceCount = generatorConfig.getTotalTraceCount();
+    if (totalTraceCount > 0) {
+      final int traceCount = partitionEnd(totalTraceCount) - partitionStart(totalTraceCount);
       logger.info("Should be generated " + traceCount + " traces.");
-      whileCheck = queue -> queue.getEnteredTraceCount() < traceCount;
+      whileCheck = queue -> generatedTraces < traceCount;
     } else {
-      final long spansCount = generatorConfig.getSpansRate() *
-          generatorConfig.getDuration().toSeconds();
+      final long totalSpans = (long) generatorConfig.getRateProfile().getTotalSpans();
+      final long spansCount = partitionEnd(totalSpans) - partitionStart(totalSpans);
       logger.info("Should be generated " + spansCount + " spans.");
-      whileCheck = queue -> queue.getEnteredSpanCount() < spansCount;
+      whileCheck = queue -> generatedSpans < spansCount;
     }
 
     return whileCheck;
@@ -71,14 +193,17 @@ public abstract class TraceGenerator extends BasicGenerator {
                                  @Nonnull Logger logger, String str) {
     logger.info("Generating traces ...");
 
+    statName = str;
     initGeneration();
 
     final Function<DataQueue, Boolean> whileCheck = getWhileCheck(generatorConfig, logger);
     final long start = System.currentTimeMillis();
     long current = start;
-    long mustBeGeneratedSpans;
-    long generatedSpans = 0;
-    long rate = generatorConfig.getSpansRate();
+    // Spans are accumulated step by step according to the rate profile.
+    final RateProfile.Cursor rateCursor = generatorConfig.getRateProfile().cursor();
+    final long startNanos = System.nanoTime();
+    double mustBeGeneratedSpans = 0;
+    double elapsedSeconds = 0;
     while (whileCheck.apply(dataQueue)) {
       if (isRealTime) {
         current = System.currentTimeMillis();
@@ -87,22 +212,101 @@ public abstract class TraceGenerator extends BasicGenerator {
         // Simulate the delay.
         current += GENERATION_DELAY_MILLIS;
       }
-      mustBeGeneratedSpans = (rate * (current - start) / 1000);
+      final double previousSeconds = elapsedSeconds;
+      final double previousSpans = mustBeGeneratedSpans;
+      elapsedSeconds = (current - start) / 1000.0;
+      mustBeGeneratedSpans += rateCursor.advance(elapsedSeconds) / partitions;
+      final long stepStartSpans = generatedSpans;
 
       while (generatedSpans < mustBeGeneratedSpans) {
-        final Trace trace = generateTrace(current - RANDOM.nextInt(sleeping(isRealTime)));
-        if (trace != null) {
-          dataQueue.addTrace(trace);
-          generatedSpans += trace.getSpansCount();
+        final IntendedTimes intendedTimes = isRealTime ? new IntendedTimes(generatedSpans,
+            startNanos, previousSeconds, previousSpans, elapsedSeconds, mustBeGeneratedSpans) :
+            null;
+        if (intendedTimes != null) {
+          // Spans generated far ahead of the senders would only wait in memory.
+          dataQueue.awaitSenders(intendedTimes.getIntendedNanos(generatedSpans));
+        }
+        final long startMillis = current - random.nextInt(sleeping(isRealTime));
+        // In the exact mode parts have consecutive ranges of traces, otherwise they take turns,
+        // since the number of traces isn't known beforehand.
+        traceIndex = generatorConfig.getTotalTraceCount() > 0 ?
+            partitionStart(generatorConfig.getTotalTraceCount()) + generatedTraces :
+            partition + generatedTraces * partitions;
+        if (seed != null) {
+          random.setSeed(XoshiroRandom.streamSeed(seed, traceIndex));
+        }
+        final TraceRecipe recipe;
+        // Statistics of lazy traces are offered by the senders, so traces are lazy only if the
+        // senders run along with the generator.
+        if (isRealTime && dataQueue.hasLazyTraces()) {
+          recipe = generateLazyTrace(startMillis, intendedTimes);
+        } else {
+          final Trace trace = generateTrace(startMillis);
+          if (trace != null && intendedTimes != null) {
+            intendedTimes.apply(trace);
+          }
+          recipe = trace;
+        }
+        if (recipe != null) {
+          if (sender != null) {
+            sender.sendTrace(recipe.materialize());
+          } else {
+            dataQueue.addRecipe(recipe);
+          }
+          generatedTraces++;
+          generatedSpans += recipe.getSpansCount();
         } else {
           break;
         }
-        updateHeapMemory();
+        if (dataQueue.isHeapThrottling()) {
+          updateHeapMemory();
+        }
+      }
+      if (sender != null && generatedSpans == stepStartSpans) {
+        // Nothing is due yet, so the spans buffered by the sink are sent meanwhile.
+        sender.onIdle();
       }
     }
+    if (!dataQueue.isHeapThrottling()) {
+      sampleHeapMemory();
+    }
     logger.info("Generation complete!\n" + ANSI_YELLOW + String.format(generatorConfig.getGeneratorConfigFile() +
         " Memory " + "usage- %.2fGB / %.2fGB", usedHeapMemoryGB, maxHeapMemoryGB) + ANSI_RESET);
-    sendStat(str);
+    awaitLazyTraces();
+    // Statistics of the parts are sent together, when all of them are generated.
+    if (sendingStatistics) {
+      sendStat(statistics);
+    }
+  }
+
+  /**
+   * Plans the trace and keeps the plan with the random of the trace and the ID generator forked
+   * for it, so the spans are materialized later exactly as {@link #generateTrace(long)} generates
+   * them. The sender materializing the trace offers it to the statistics.
+   */
+  private LazyTrace generateLazyTrace(long startMillis, @Nullable IntendedTimes intendedTimes) {
+    final TracePlan plan = planTrace(startMillis);
+    if (plan == null) {
+      return null;
+    }
+    final XoshiroRandom traceRandom = random.split();
+    lazyTraces.incrementAndGet();
+    return new LazyTrace(plan, traceRandom, idGenerator.fork(random, traceRandom),
+        intendedTimes);
+  }
+
+  /**
+   * Waits while the senders materialize the lazy traces, so the statistics are complete.
+   */
+  private void awaitLazyTraces() {
+    while (lazyTraces.get() > 0) {
+      try {
+        Thread.sleep(SLEEP_DELAY_MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
   }
 
   private int sleeping(boolean isRealTime) {
@@ -125,30 +329,58 @@ public abstract class TraceGenerator extends BasicGenerator {
     }
   }
 
+  /**
+   * Heap usage is polled only if it's requested as a safety net, generation is kept within the
+   * horizon of the senders otherwise, see {@link DataQueue#awaitSenders(long)}.
+   */
   private void updateHeapMemory() {
-    double currentUsed = (double) memoryMXBean.getHeapMemoryUsage().getUsed() / GIGA;
-    if (usedHeapMemoryGB < currentUsed) {
-      usedHeapMemoryGB = currentUsed;
-    }
-    if (currentUsed >= MAX_ALLOWED_HEAP_MEMORY) {
+    if (sampleHeapMemory() >= MAX_ALLOWED_HEAP_MEMORY) {
       maxDataQueueSize = dataQueue.size();
       isSleep = true;
     }
   }
 
+  private double sampleHeapMemory() {
+    final double currentUsed = (double) memoryMXBean.getHeapMemoryUsage().getUsed() / GIGA;
+    if (usedHeapMemoryGB < currentUsed) {
+      usedHeapMemoryGB = currentUsed;
+    }
+    return currentUsed;
+  }
+
   /**
    * Generate trace for a given trace type.
    *
    * @param startMillis Start time of the trace (millis).
-   * @return Generated trace.
+   * @return Generated trace or null if the generation is over.
    */
   protected Trace generateTrace(long startMillis) {
+    final TracePlan plan = planTrace(startMillis);
+    if (plan == null) {
+      return null;
+    }
+    traceRandom.setSeed(random.nextLong());
+    return plan.materialize(traceRandom, idGenerator.fork(random, traceRandom), statistics);
+  }
+
+  /**
+   * Plans the trace of a given trace type, see {@link TracePlan}.
+   *
+   * @param startMillis Start time of the trace (millis).
+   * @return Plan of the trace or null if the generation is over.
+   */
+  protected TracePlan planTrace(long startMillis) {
     throw new NotImplementedException("Subclass must implement this " +
         "functionality");
   }
 
-  private void sendStat(String str) {
-    Trace statTrace = new Trace(2, UUID.randomUUID());
+  /**
+   * Sends the statistics as a trace.
+   *
+   * @param statistics Statistics of the generated traces.
+   */
+  void sendStat(@Nonnull Statistics statistics) {
+    Trace statTrace = new Trace(2, idGenerator.nextId());
 
     List<Pair<String, String>> rootTags = new LinkedList<>();
     rootTags.add(new Pair<>("application", "Statistics"));
@@ -159,14 +391,14 @@ public abstract class TraceGenerator extends BasicGenerator {
     rootTags.add(new Pair<>("Total errors percentage", Long.toString(Math.round((double) statistics.getErrorsSum() / statistics.getTracesSum() * 100))));
     rootTags.add(new Pair<>("Total debug spans", Integer.toString(statistics.getDebugSpansSum())));
 
-    String rootName = str + "_STAT";
+    String rootName = statName + "_STAT";
 
     StatSpan stat = new StatSpan(rootName,
         System.currentTimeMillis(),
         1,
         "traceLoaderHost",
         statTrace.getTraceUUID(),
-        UUID.randomUUID(),
+        idGenerator.nextId(),
         null,
         null, rootTags,
         null);
@@ -181,7 +413,7 @@ public abstract class TraceGenerator extends BasicGenerator {
       traceTypeTags.add(new Pair<>("application", "Statistics"));
       traceTypeTags.add(new Pair<>("service", "TraceType"));
       traceTypeTags.add(new Pair<>("Count", Integer.toString(v.getCount())));
-      traceTypeTags.add(new Pair<>("Percentage", Double.toString(100.0 * v.getCount() / getStatistics().getTracesSum())));
+      traceTypeTags.add(new Pair<>("Percentage", Double.toString(100.0 * v.getCount() / statistics.getTracesSum())));
       traceTypeTags.add(new Pair<>("Spans mean", Long.toString(Math.round((double) v.getSpansSum() / v.getCount()))));
       traceTypeTags.add(new Pair<>("Spans min", Integer.toString(v.getSpansMin())));
       traceTypeTags.add(new Pair<>("Spans max", Integer.toString(v.getSpansMax())));
@@ -189,7 +421,7 @@ public abstract class TraceGenerator extends BasicGenerator {
       traceTypeTags.add(new Pair<>("Trace duration min", Long.toString(v.getTraceDurationMin())));
       traceTypeTags.add(new Pair<>("Trace duration max", Long.toString(v.getTraceDurationMax())));
       traceTypeTags.add(new Pair<>("Errors count", Integer.toString(v.getErrorCount())));
-      traceTypeTags.add(new Pair<>("Errors percentage", Long.toString(Math.round((double) v.getErrorCount() / getStatistics().getErrorsSum() * 100))));
+      traceTypeTags.add(new Pair<>("Errors percentage", Long.toString(Math.round((double) v.getErrorCount() / statistics.getErrorsSum() * 100))));
       traceTypeTags.add(new Pair<>("Debug spans count", Integer.toString(v.getDebugSpansCount())));
 
       StatSpan typeStat = new StatSpan(k,
@@ -197,7 +429,7 @@ public abstract class TraceGenerator extends BasicGenerator {
           1,
           "localhost",
           statTrace.getTraceUUID(),
-          UUID.randomUUID(),
+          idGenerator.nextId(),
           parents_list,
           null, traceTypeTags,
           null);
@@ -206,4 +438,118 @@ public abstract class TraceGenerator extends BasicGenerator {
       dataQueue.addTrace(statTrace);
     });
   }
-}
\ No newline at end of file
+
+  /**
+   * Trace decided by the generator: everything depending on the state of the generator, like the
+   * trace type, the distributions and the template. The rest is drawn from the random and the ID
+   * generator given for materializing, so the plan can be materialized in another thread.
+   */
+  protected abstract static class TracePlan {
+    final UUID traceUUID;
+
+    protected TracePlan(@Nonnull UUID traceUUID) {
+      this.traceUUID = traceUUID;
+    }
+
+    /**
+     * @return Number of spans of the trace.
+     */
+    abstract int getSpansCount();
+
+    /**
+     * Generates the spans of the trace. Only the given random and ID generator are changed.
+     *
+     * @param random      Random of the spans.
+     * @param idGenerator Generator of the span IDs.
+     * @param statistics  Statistics to offer the trace to, or null.
+     * @return Generated trace.
+     */
+    abstract Trace materialize(@Nonnull Random random, @Nonnull IdGenerator idGenerator,
+                               @Nullable Statistics statistics);
+  }
+
+  /**
+   * Moments spans should be sent at according to the rate profile. Spans are spread evenly over
+   * the last step of the profile, so the intended time of a span doesn't depend on when the
+   * generator got to it, and stalls of the generator or the senders aren't hidden.
+   */
+  private static final class IntendedTimes {
+    private final long firstIndex;
+    private final long startNanos;
+    private final double fromSeconds;
+    private final double fromSpans;
+    private final double secondsPerSpan;
+
+    /**
+     * @param firstIndex Index of the first span of the trace.
+     */
+    IntendedTimes(long firstIndex, long startNanos, double fromSeconds, double fromSpans,
+                  double toSeconds, double toSpans) {
+      this.firstIndex = firstIndex;
+      this.startNanos = startNanos;
+      this.fromSeconds = fromSeconds;
+      this.fromSpans = fromSpans;
+      this.secondsPerSpan =
+          toSpans > fromSpans ? (toSeconds - fromSeconds) / (toSpans - fromSpans) : 0;
+    }
+
+    /**
+     * @return The moment the span with the given index should be sent at.
+     */
+    long getIntendedNanos(long index) {
+      final double seconds = fromSeconds + Math.max(0, index - fromSpans) * secondsPerSpan;
+      return startNanos + (long) (seconds * 1e9);
+    }
+
+    void apply(Trace trace) {
+      long index = firstIndex;
+      for (List<Span> spans : trace.getSpans()) {
+        for (Span span : spans) {
+          span.setIntendedNanos(getIntendedNanos(index));
+          index++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Recipe of a trace: the plan with the random of the trace and the ID generator forked for it.
+   */
+  private final class LazyTrace implements TraceRecipe {
+    private final TracePlan plan;
+    private final Random random;
+    private final IdGenerator idGenerator;
+    @Nullable
+    private final IntendedTimes intendedTimes;
+    private final long queuedNanos = System.nanoTime();
+
+    LazyTrace(TracePlan plan, Random random, IdGenerator idGenerator,
+              @Nullable IntendedTimes intendedTimes) {
+      this.plan = plan;
+      this.random = random;
+      this.idGenerator = idGenerator;
+      this.intendedTimes = intendedTimes;
+    }
+
+    @Override
+    public UUID getTraceUUID() {
+      return plan.traceUUID;
+    }
+
+    @Override
+    public int getSpansCount() {
+      return plan.getSpansCount();
+    }
+
+    @Override
+    public Trace materialize() {
+      final Trace trace = plan.materialize(random, idGenerator, statistics);
+      lazyTraces.decrementAndGet();
+      trace.getSpans().forEach(spans -> spans.forEach(span -> span.setQueuedNanos(queuedNanos)));
+      if (intendedTimes != null) {
+        intendedTimes.apply(trace);
+      }
+      return trace;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.wavefront.generators;
+
+import com.wavefront.datastructures.Trace;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Shape of the traces of a trace type: the template trace and, for every span, the index of its
+ * parent in the previous level and the id of its service in the compiled topology. Generated
+ * traces have the spans in the same places as the template, so parents of their spans are found
+ * by the indexes as well.
+ */
+final class TraceTemplate {
+  /**
+   * Parent index of the root span.
+   */
+  static final int NO_PARENT = -1;
+  final Trace trace;
+  private final int[][] parents;
+  private final int[][] services;
+
+  /**
+   * TraceTemplate constructor.
+   *
+   * @param trace    Template trace.
+   * @param parents  Parent indexes of the spans by levels, the root level included.
+   * @param services Service ids of the spans by levels.
+   */
+  TraceTemplate(@Nonnull Trace trace, @Nonnull int[][] parents, @Nonnull int[][] services) {
+    this.trace = trace;
+    this.parents = parents;
+    this.services = services;
+  }
+
+  /**
+   * @param level Level of the span.
+   * @param index Index of the span in the level.
+   * @return Index of the parent of the span in the previous level, or {@link #NO_PARENT} for the
+   * root span.
+   */
+  int getParent(int level, int index) {
+    return level == 0 ? NO_PARENT : parents[level][index];
+  }
+
+  /**
+   * @param level Level of the span.
+   * @param index Index of the span in the level.
+   * @return Service id of the span.
+   */
+  int getService(int level, int index) {
+    return services[level][index];
+  }
+}
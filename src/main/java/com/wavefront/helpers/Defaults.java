@@ -7,6 +7,7 @@ import com.wavefront.sdk.common.Pair;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Default values for some input parameters.
@@ -14,7 +15,6 @@ import java.util.Set;
  * @author Sirak Ghazaryan (sghazaryan@vmware.com)
  */
 public class Defaults {
-  private static final Random RANDOM = new Random(System.currentTimeMillis());
   public static final String SERVICE = "service";
   public static final String ERROR = "error";
   public static final String DEBUG = "debug";
@@ -27,7 +27,7 @@ public class Defaults {
   public static final String DEFAULT_SPAN_NAME_SUFFIX = "abcdefghijklmnopqrstuvxyz";
   public static final String PATTERN = "PATTERN";
   public static final String TOPOLOGY = "TOPOLOGY";
-  public static final int DEFAULT_NESTING_LEVEL = RANDOM.nextInt(6) + 4;
+  public static final int DEFAULT_NESTING_LEVEL = getNestingLevel(ThreadLocalRandom.current());
   public static final Pair<String, String> ERROR_TAG = new Pair<>(ERROR, "true");
   public static final Pair<String, String> DEBUG_TAG = new Pair<>(DEBUG, "true");
   public static final double HUNDRED_PERCENT = 100;
@@ -41,10 +41,25 @@ public class Defaults {
       new TagVariation(SHARD, Set.of("primary")),
       new TagVariation(SERVICE, Set.of("Service_1", "Service_2")));
 
-  public static final List<ValueDistribution> DEFAULT_TRACE_DURATIONS = List.of(
-      new ValueDistribution(200, RANDOM.nextInt(500) + 200, 100));
+  public static final List<ValueDistribution> DEFAULT_TRACE_DURATIONS =
+      getTraceDurations(ThreadLocalRandom.current());
 
-  public static final List<ValueDistribution> DEFAULT_SPANS_DISTRIBUTIONS = List.of(
-      new ValueDistribution(3, RANDOM.nextInt(10) + 5, 100));
+  public static final List<ValueDistribution> DEFAULT_SPANS_DISTRIBUTIONS =
+      getSpansDistributions(ThreadLocalRandom.current());
+
+  /**
+   * Picks the default nesting level by the given random, so seeded runs get the same value.
+   */
+  public static int getNestingLevel(Random random) {
+    return random.nextInt(6) + 4;
+  }
+
+  public static List<ValueDistribution> getTraceDurations(Random random) {
+    return List.of(new ValueDistribution(200, random.nextInt(500) + 200, 100));
+  }
+
+  public static List<ValueDistribution> getSpansDistributions(Random random) {
+    return List.of(new ValueDistribution(3, random.nextInt(10) + 5, 100));
+  }
 
 }
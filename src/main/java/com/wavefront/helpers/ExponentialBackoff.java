@@ -0,0 +1,34 @@
+package com.wavefront.helpers;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter. The delay doubles with every failed attempt up to the
+ * maximum, and a random half of it is dropped, so senders failing at the same moment don't retry
+ * in lockstep.
+ */
+public class ExponentialBackoff {
+  private final long initialNanos;
+  private final long maxNanos;
+
+  /**
+   * ExponentialBackoff constructor.
+   *
+   * @param initialNanos Delay after the first failure.
+   * @param maxNanos     Maximal delay.
+   */
+  public ExponentialBackoff(long initialNanos, long maxNanos) {
+    this.initialNanos = initialNanos;
+    this.maxNanos = maxNanos;
+  }
+
+  /**
+   * @param attempts Number of failed attempts, starting from 1.
+   * @return Delay before the next attempt, in nanoseconds.
+   */
+  public long getDelayNanos(int attempts) {
+    final int shift = Math.min(Math.max(attempts - 1, 0), 62);
+    final long delay = initialNanos > maxNanos >> shift ? maxNanos : initialNanos << shift;
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+}
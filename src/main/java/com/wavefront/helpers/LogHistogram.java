@@ -0,0 +1,103 @@
+package com.wavefront.helpers;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Histogram of non-negative values with log-linear buckets: every power of two is split into 64
+ * equal buckets, so the relative error of reported values is below 1.6% for values from
+ * nanoseconds to centuries, while the histogram takes a fixed 30 KB. Recording is a few
+ * arithmetic operations, histograms of different threads are merged by adding their buckets.
+ */
+@NotThreadSafe
+public class LogHistogram {
+  /**
+   * Values below this are counted exactly, every bucket above covers 1/64 of its power of two.
+   */
+  private static final int LINEAR_LIMIT = 128;
+  private static final int SUB_BUCKETS = 64;
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private final long[] counts = new long[BUCKETS];
+  private long count = 0;
+  private long max = 0;
+
+  /**
+   * Records the value, negative values are recorded as zero.
+   *
+   * @param value Value to be recorded.
+   */
+  public void record(long value) {
+    final long v = Math.max(0, value);
+    counts[bucketOf(v)]++;
+    count++;
+    max = Math.max(max, v);
+  }
+
+  /**
+   * Adds values of another histogram to this one.
+   *
+   * @param other Another histogram.
+   */
+  public void merge(LogHistogram other) {
+    for (int n = 0; n < BUCKETS; n++) {
+      counts[n] += other.counts[n];
+    }
+    count += other.count;
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * @param percentile Percentile from 0 to 100.
+   * @return Highest value of the bucket containing the percentile, or 0 if the histogram is
+   * empty.
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int n = 0; n < BUCKETS; n++) {
+      seen += counts[n];
+      if (seen >= rank) {
+        return Math.min(max, highestValueOf(n));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * @return Percentiles of nanosecond values in milliseconds.
+   */
+  public String toMillisString() {
+    return String.format("p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+        getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+        getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6, max / 1e6);
+  }
+
+  static int bucketOf(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    // The highest bit is kept with the next 6 bits, the rest is dropped.
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  static long highestValueOf(int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    final int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    final long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
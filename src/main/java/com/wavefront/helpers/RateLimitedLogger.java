@@ -0,0 +1,54 @@
+package com.wavefront.helpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Logger wrapper writing at most one message per interval. Messages in between are only
+ * counted, and their number is reported with the next written message.
+ */
+@ThreadSafe
+public class RateLimitedLogger {
+  private final Logger logger;
+  private final long intervalNanos;
+  private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+  private final AtomicLong suppressed = new AtomicLong();
+
+  /**
+   * RateLimitedLogger constructor.
+   *
+   * @param logger         Underlying logger.
+   * @param intervalMillis Minimal interval between messages.
+   */
+  public RateLimitedLogger(Logger logger, long intervalMillis) {
+    this.logger = logger;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+  }
+
+  public void severe(String message) {
+    log(Level.SEVERE, message);
+  }
+
+  public void warning(String message) {
+    log(Level.WARNING, message);
+  }
+
+  public void log(Level level, String message) {
+    if (!logger.isLoggable(level)) {
+      return;
+    }
+    final long now = System.nanoTime();
+    final long next = nextLogNanos.get();
+    if (now - next < 0 || !nextLogNanos.compareAndSet(next, now + intervalNanos)) {
+      suppressed.incrementAndGet();
+      return;
+    }
+    final long skipped = suppressed.getAndSet(0);
+    logger.log(level, skipped == 0 ? message :
+        message + " (" + skipped + " similar messages suppressed)");
+  }
+}
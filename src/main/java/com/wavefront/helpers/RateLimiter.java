@@ -0,0 +1,130 @@
+package com.wavefront.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Rate limiter based on the Generic Cell Rate Algorithm (a token bucket expressed through the
+ * theoretical arrival time of the next permit). All computations are made with nanosecond
+ * resolution, so the limiter paces accurately from one permit per second up to millions of
+ * permits per second. Waiting threads are parked with {@link LockSupport#parkNanos(long)} and
+ * only the last few microseconds are spun to compensate the parking granularity.
+ */
+@ThreadSafe
+public class RateLimiter {
+  private static final long NANOS_IN_SECOND = 1_000_000_000L;
+  /**
+   * Waits shorter than this are spun instead of parking the thread.
+   */
+  private static final long SPIN_THRESHOLD_NANOS = 50_000;
+  private final long origin = System.nanoTime();
+  /**
+   * Theoretical arrival time of the next permit (nanoseconds since origin, stored as double bits
+   * to keep fractional emission intervals from drifting).
+   */
+  private final AtomicLong theoreticalArrival = new AtomicLong(Double.doubleToRawLongBits(0));
+  private volatile double intervalNanos;
+  private volatile double toleranceNanos;
+  private final int burstSize;
+
+  /**
+   * RateLimiter constructor.
+   *
+   * @param permitsPerSecond Rate of permits, must be positive.
+   * @param burstSize        Number of permits which can be acquired at once after idle period.
+   *                         If it is not positive, permits of 100 milliseconds are allowed.
+   */
+  public RateLimiter(double permitsPerSecond, int burstSize) {
+    this.burstSize = burstSize;
+    setRate(permitsPerSecond);
+  }
+
+  /**
+   * Changes the rate. Permits already reserved are not affected.
+   *
+   * @param permitsPerSecond New rate of permits, must be positive.
+   */
+  public void setRate(double permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("Rate must be positive!");
+    }
+    final int burst = burstSize > 0 ? burstSize : (int) Math.max(1, permitsPerSecond / 10);
+    intervalNanos = NANOS_IN_SECOND / permitsPerSecond;
+    toleranceNanos = intervalNanos * (burst - 1);
+  }
+
+  public double getRate() {
+    return NANOS_IN_SECOND / intervalNanos;
+  }
+
+  /**
+   * Acquires a single permit, waiting if necessary.
+   *
+   * @return The intended time ({@link System#nanoTime()} based) of the permit according to the
+   * pacing model. It is earlier than the actual time if the caller is late.
+   */
+  public long acquire() {
+    return acquire(1);
+  }
+
+  /**
+   * Acquires the given number of permits, waiting if necessary.
+   *
+   * @param permits Number of permits.
+   * @return The intended time ({@link System#nanoTime()} based) of the first permit according to
+   * the pacing model.
+   */
+  public long acquire(int permits) {
+    final double scheduled = reserve(permits);
+    final long intended = origin + (long) scheduled;
+    waitUntil(intended);
+    return intended;
+  }
+
+  /**
+   * Acquires the given number of permits only if it can be done without waiting.
+   *
+   * @param permits Number of permits.
+   * @return True if permits were acquired.
+   */
+  public boolean tryAcquire(int permits) {
+    while (true) {
+      final long current = theoreticalArrival.get();
+      final double now = System.nanoTime() - origin;
+      final double start = Math.max(Double.longBitsToDouble(current), now - toleranceNanos);
+      if (start > now) {
+        return false;
+      }
+      final double next = start + permits * intervalNanos;
+      if (theoreticalArrival.compareAndSet(current, Double.doubleToRawLongBits(next))) {
+        return true;
+      }
+    }
+  }
+
+  private double reserve(int permits) {
+    while (true) {
+      final long current = theoreticalArrival.get();
+      final double now = System.nanoTime() - origin;
+      // Unused permits can't be accumulated more than the burst size.
+      final double start = Math.max(Double.longBitsToDouble(current), now - toleranceNanos);
+      final double next = start + permits * intervalNanos;
+      if (theoreticalArrival.compareAndSet(current, Double.doubleToRawLongBits(next))) {
+        return start;
+      }
+    }
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      if (remaining > SPIN_THRESHOLD_NANOS) {
+        LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.wavefront.helpers;
+
+import java.util.List;
+
+/**
+ * Class collects statistics about sent spans per sender worker. Every instance is updated by a
+ * single sender thread and read after the thread completes.
+ */
+public class SenderStatistics {
+  private final String workerName;
+  private long sentSpans = 0;
+  private long retriedSpans = 0;
+  private long failedSpans = 0;
+  private long droppedSpans = 0;
+  private long startMillis = 0;
+  private long endMillis = 0;
+  /**
+   * How late spans were sent comparing with the moments they should be sent at according to the
+   * rate profile (nanos).
+   */
+  private final LogHistogram scheduleDelay = new LogHistogram();
+  /**
+   * How long spans waited in the data queue (nanos).
+   */
+  private final LogHistogram queueTime = new LogHistogram();
+  /**
+   * How long sending of a span to the sink took (nanos).
+   */
+  private final LogHistogram sendLatency = new LogHistogram();
+
+  public SenderStatistics(String workerName) {
+    this.workerName = workerName;
+  }
+
+  /**
+   * Constructor for statistics received from another process, the fields are set on reading.
+   */
+  private SenderStatistics() {
+    this("");
+  }
+
+  public void start() {
+    startMillis = System.currentTimeMillis();
+  }
+
+  public void stop() {
+    endMillis = System.currentTimeMillis();
+  }
+
+  public void onSent() {
+    sentSpans++;
+  }
+
+  /**
+   * Records the delay of a sent span.
+   *
+   * @param delayNanos Time between the intended and the actual sending of the span.
+   */
+  public void onScheduleDelay(long delayNanos) {
+    scheduleDelay.record(delayNanos);
+  }
+
+  /**
+   * Records the time a span spent in the data queue.
+   *
+   * @param queueNanos Time between adding the span to the queue and taking it from there.
+   */
+  public void onQueueTime(long queueNanos) {
+    queueTime.record(queueNanos);
+  }
+
+  /**
+   * Records the duration of a single send call.
+   *
+   * @param latencyNanos Duration of the call.
+   */
+  public void onSendLatency(long latencyNanos) {
+    sendLatency.record(latencyNanos);
+  }
+
+  /**
+   * Counts an attempt to send a span again after a failure.
+   */
+  public void onRetried() {
+    retriedSpans++;
+  }
+
+  /**
+   * Counts a span which wasn't sent within its retry budget.
+   */
+  public void onFailed() {
+    failedSpans++;
+  }
+
+  /**
+   * Counts a span which wasn't retried because the retry queue was full.
+   */
+  public void onDropped() {
+    droppedSpans++;
+  }
+
+  /**
+   * Moves spans accepted by the sink, but lost by it later, from sent to dropped.
+   *
+   * @param spans Number of lost spans.
+   */
+  public void onLost(long spans) {
+    sentSpans -= spans;
+    droppedSpans += spans;
+  }
+
+  /**
+   * Adds counters of another worker to this one.
+   *
+   * @param other Statistics of another worker.
+   */
+  public void merge(SenderStatistics other) {
+    sentSpans += other.sentSpans;
+    retriedSpans += other.retriedSpans;
+    failedSpans += other.failedSpans;
+    droppedSpans += other.droppedSpans;
+    scheduleDelay.merge(other.scheduleDelay);
+    queueTime.merge(other.queueTime);
+    sendLatency.merge(other.sendLatency);
+    startMillis = startMillis == 0 ? other.startMillis : Math.min(startMillis, other.startMillis);
+    endMillis = Math.max(endMillis, other.endMillis);
+  }
+
+  /**
+   * Summarizes statistics of all workers.
+   *
+   * @param workers Statistics of workers.
+   * @return Total statistics.
+   */
+  public static SenderStatistics total(List<SenderStatistics> workers) {
+    return total("Total", workers);
+  }
+
+  /**
+   * Summarizes statistics of all workers under the given name.
+   *
+   * @param name    Name of the summary.
+   * @param workers Statistics of workers.
+   * @return Total statistics.
+   */
+  public static SenderStatistics total(String name, List<SenderStatistics> workers) {
+    final SenderStatistics total = new SenderStatistics(name);
+    workers.forEach(total::merge);
+    return total;
+  }
+
+  public String getWorkerName() {
+    return workerName;
+  }
+
+  public long getSentSpans() {
+    return sentSpans;
+  }
+
+  public long getRetriedSpans() {
+    return retriedSpans;
+  }
+
+  public long getFailedSpans() {
+    return failedSpans;
+  }
+
+  public long getDroppedSpans() {
+    return droppedSpans;
+  }
+
+  public LogHistogram getScheduleDelay() {
+    return scheduleDelay;
+  }
+
+  public LogHistogram getQueueTime() {
+    return queueTime;
+  }
+
+  public LogHistogram getSendLatency() {
+    return sendLatency;
+  }
+
+  /**
+   * @return Average rate of sent spans per second.
+   */
+  public double getSpansPerSecond() {
+    final long elapsed = endMillis - startMillis;
+    return elapsed > 0 ? 1000.0 * sentSpans / elapsed : 0;
+  }
+
+  @Override
+  public String toString() {
+    return workerName + ": sent spans " + sentSpans +
+        String.format(", %.1f spans/s", getSpansPerSecond()) +
+        ", retried " + retriedSpans + ", failed " + failedSpans + ", dropped " + droppedSpans +
+        "\n  schedule delay: " + scheduleDelay.toMillisString() +
+        "\n  time in queue: " + queueTime.toMillisString() +
+        "\n  send latency: " + sendLatency.toMillisString();
+  }
+}
@@ -9,7 +9,8 @@ import java.util.Map;
 
 /**
  * Class collects statistics about generated traces such as traces count, spans count and trace
- * duration per trace type.
+ * duration per trace type. Traces can be offered by several threads, when lazy traces are
+ * materialized by the senders, while the statistics are read when all traces are offered.
  *
  * @author Sirak Ghazaryan(sghazaryan@vmware.com)
  */
@@ -19,7 +20,7 @@ public class Statistics {
   private int errorsSum = 0;
   private int debugSpansSum = 0;
 
-  public void offer(String traceTypeName, Trace trace, long traceDuration) {
+  public synchronized void offer(String traceTypeName, Trace trace, long traceDuration) {
     tracesSum++;
 
     if (trace.isError()) {
@@ -34,6 +35,19 @@ public class Statistics {
     tracesByType.put(traceTypeName, tobeUpdated);
   }
 
+  /**
+   * Adds statistics of another generator to this one.
+   *
+   * @param other Another statistics.
+   */
+  public synchronized void merge(Statistics other) {
+    tracesSum += other.tracesSum;
+    errorsSum += other.errorsSum;
+    debugSpansSum += other.debugSpansSum;
+    other.tracesByType.forEach((k, v) ->
+        tracesByType.computeIfAbsent(k, type -> new TypeStatistic()).merge(v));
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -148,6 +162,18 @@ public class Statistics {
       traceDurationMin = Math.min(traceDurationMin, duration);
       traceDurationMax = Math.max(traceDurationMax, duration);
     }
+
+    void merge(TypeStatistic other) {
+      count += other.count;
+      errorCount += other.errorCount;
+      debugSpansCount += other.debugSpansCount;
+      spansSum += other.spansSum;
+      spansMin = Math.min(spansMin, other.spansMin);
+      spansMax = Math.max(spansMax, other.spansMax);
+      traceDuration += other.traceDuration;
+      traceDurationMin = Math.min(traceDurationMin, other.traceDurationMin);
+      traceDurationMax = Math.max(traceDurationMax, other.traceDurationMax);
+    }
   }
 
   public Map<String, TypeStatistic> getTracesByType() {
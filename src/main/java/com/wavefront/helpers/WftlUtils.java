@@ -14,20 +14,20 @@ import static com.wavefront.helpers.Defaults.HUNDRED_PERCENT;
  * @author Davit Baghdasaryan (dbagdasarya@vmware.com)
  */
 public class WftlUtils {
-  protected static final Random RANDOM = new Random(System.currentTimeMillis());
 
   /**
    * Randomly selects an item from the set.
    *
-   * @param set Set of values
-   * @param <T> Type of items in the set.
+   * @param set    Set of values
+   * @param random Random of the calling generator.
+   * @param <T>    Type of items in the set.
    * @return Randomly selected item.
    */
-  public static <T> T getRandomFromSet(@Nonnull Set<T> set) {
+  public static <T> T getRandomFromSet(@Nonnull Set<T> set, @Nonnull Random random) {
     if (set.isEmpty()) {
       return null;
     }
-    int rand = RANDOM.nextInt(set.size());
+    int rand = random.nextInt(set.size());
     Iterator<T> it = set.iterator();
     while (it.hasNext()) {
       if (rand == 0) {
@@ -43,9 +43,10 @@ public class WftlUtils {
    * According to the percentage value randomly makes decision about probability.
    *
    * @param percentage Probability percentage.
+   * @param random     Random of the calling generator.
    * @return True if the method decides that the case is possible.
    */
-  public static boolean isEffectivePercentage(double percentage) {
-    return (percentage > 0 && (RANDOM.nextDouble() <= (percentage / HUNDRED_PERCENT)));
+  public static boolean isEffectivePercentage(double percentage, @Nonnull Random random) {
+    return (percentage > 0 && (random.nextDouble() <= (percentage / HUNDRED_PERCENT)));
   }
 }
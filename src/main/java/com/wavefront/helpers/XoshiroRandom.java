@@ -0,0 +1,117 @@
+package com.wavefront.helpers;
+
+import java.util.Random;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Random based on the xoshiro256** generator. Unlike {@link Random}, which updates a shared
+ * atomic seed on every call, its state is plain fields, so every generator thread should have its
+ * own instance. Being a {@link Random}, it can be passed wherever a random is expected, and any
+ * other random can be used instead of it.
+ */
+@NotThreadSafe
+public class XoshiroRandom extends Random {
+  private static final long serialVersionUID = 1L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+  private long s0;
+  private long s1;
+  private long s2;
+  private long s3;
+
+  public XoshiroRandom() {
+    super();
+  }
+
+  public XoshiroRandom(long seed) {
+    super(seed);
+  }
+
+  /**
+   * Seeds the state with the SplitMix64 sequence of the seed. The state isn't initialized by
+   * field initializers, since this method is called by the {@link Random} constructor.
+   */
+  @Override
+  public void setSeed(long seed) {
+    s0 = splitMix(seed += 0x9e3779b97f4a7c15L);
+    s1 = splitMix(seed += 0x9e3779b97f4a7c15L);
+    s2 = splitMix(seed += 0x9e3779b97f4a7c15L);
+    s3 = splitMix(seed + 0x9e3779b97f4a7c15L);
+  }
+
+  /**
+   * Seed of an independent stream of a seeded sequence of streams, so the stream with any index
+   * can be started without going through the preceding ones.
+   *
+   * @param seed  Seed of the sequence.
+   * @param index Index of the stream.
+   * @return Seed of the stream.
+   */
+  public static long streamSeed(long seed, long index) {
+    return splitMix(seed + splitMix((index + 1) * 0x9e3779b97f4a7c15L));
+  }
+
+  /**
+   * @return New random with the state seeded from this one, for using in another thread.
+   */
+  public XoshiroRandom split() {
+    return new XoshiroRandom(nextLong());
+  }
+
+  @Override
+  public long nextLong() {
+    final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+    final long t = s1 << 17;
+    s2 ^= s0;
+    s3 ^= s1;
+    s1 ^= s2;
+    s0 ^= s3;
+    s2 ^= t;
+    s3 = Long.rotateLeft(s3, 45);
+    return result;
+  }
+
+  @Override
+  protected int next(int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  @Override
+  public int nextInt() {
+    return (int) (nextLong() >>> 32);
+  }
+
+  /**
+   * Lemire's multiply-shift method, the bias is rejected.
+   */
+  @Override
+  public int nextInt(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive");
+    }
+    long product = (nextLong() >>> 32) * bound;
+    if ((product & 0xffffffffL) < bound) {
+      final long threshold = (0x100000000L - bound) % bound;
+      while ((product & 0xffffffffL) < threshold) {
+        product = (nextLong() >>> 32) * bound;
+      }
+    }
+    return (int) (product >>> 32);
+  }
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return nextLong() < 0;
+  }
+
+  private static long splitMix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
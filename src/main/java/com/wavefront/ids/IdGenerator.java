@@ -0,0 +1,46 @@
+package com.wavefront.ids;
+
+import java.util.Random;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Strategy of generating trace and span IDs. Every instance is used by a single generator thread,
+ * unless it's stated otherwise by the implementation.
+ */
+public interface IdGenerator {
+
+  /**
+   * Supported ID generator types.
+   */
+  enum Type {
+    /**
+     * Random UUIDs of {@link UUID#randomUUID()}, backed by SecureRandom.
+     */
+    SECURE,
+    /**
+     * Random 128-bit IDs formatted as version 4 UUIDs, backed by a fast non-cryptographic random.
+     */
+    RANDOM,
+    /**
+     * Random 64-bit IDs, formatted as UUIDs with the upper 64 bits set to zero.
+     */
+    RANDOM_64
+  }
+
+  /**
+   * @return New ID.
+   */
+  UUID nextId();
+
+  /**
+   * Forks the generator for generating the IDs of a trace later, in another thread, while this
+   * one goes on.
+   *
+   * @param generatorRandom Random of the generator thread.
+   * @param traceRandom     Random of the trace, split from the generator random.
+   * @return Generator of the IDs of the trace.
+   */
+  IdGenerator fork(@Nonnull Random generatorRandom, @Nonnull Random traceRandom);
+}
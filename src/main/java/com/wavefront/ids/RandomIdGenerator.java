@@ -0,0 +1,63 @@
+package com.wavefront.ids;
+
+import com.wavefront.helpers.XoshiroRandom;
+
+import java.util.Random;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Generates IDs from a non-cryptographic random. The IDs are unique enough for load testing, and
+ * with a seeded random the same sequence of IDs is generated on every run.
+ */
+@NotThreadSafe
+public class RandomIdGenerator implements IdGenerator {
+  private static final ThreadLocal<RandomIdGenerator> THREAD_GENERATORS =
+      ThreadLocal.withInitial(() -> new RandomIdGenerator(new XoshiroRandom(), false));
+  @Nonnull
+  private final Random random;
+  private final boolean shortIds;
+
+  /**
+   * RandomIdGenerator constructor.
+   *
+   * @param random   Random of the generator thread.
+   * @param shortIds If true, 64-bit IDs are generated, otherwise 128-bit ones.
+   */
+  public RandomIdGenerator(@Nonnull Random random, boolean shortIds) {
+    this.random = random;
+    this.shortIds = shortIds;
+  }
+
+  /**
+   * @return Generator of 128-bit IDs of the current thread, for places where no generator is
+   * passed.
+   */
+  public static RandomIdGenerator current() {
+    return THREAD_GENERATORS.get();
+  }
+
+  @Override
+  public UUID nextId() {
+    if (shortIds) {
+      return new UUID(0, random.nextLong());
+    }
+    // Version 4 and IETF variant bits, as UUID.randomUUID() sets them.
+    final long mostSigBits = (random.nextLong() & ~0xf000L) | 0x4000L;
+    final long leastSigBits = (random.nextLong() & ~(0xc0L << 56)) | (0x80L << 56);
+    return new UUID(mostSigBits, leastSigBits);
+  }
+
+  /**
+   * IDs drawn from the generator random are drawn from the random of the trace, other randoms are
+   * split, so the IDs of the trace are drawn by its own random as well.
+   */
+  @Override
+  public IdGenerator fork(@Nonnull Random generatorRandom, @Nonnull Random traceRandom) {
+    final Random random = this.random == generatorRandom ? traceRandom :
+        new XoshiroRandom(this.random.nextLong());
+    return new RandomIdGenerator(random, shortIds);
+  }
+}
@@ -0,0 +1,28 @@
+package com.wavefront.ids;
+
+import java.util.Random;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Generates IDs by {@link UUID#randomUUID()}. IDs are unpredictable, but every ID takes a call of
+ * the shared SecureRandom, which is slow and may block waiting for entropy.
+ */
+@ThreadSafe
+public class SecureIdGenerator implements IdGenerator {
+
+  @Override
+  public UUID nextId() {
+    return UUID.randomUUID();
+  }
+
+  /**
+   * IDs are unpredictable anyway, so the generator is shared.
+   */
+  @Override
+  public IdGenerator fork(@Nonnull Random generatorRandom, @Nonnull Random traceRandom) {
+    return this;
+  }
+}
@@ -0,0 +1,138 @@
+package com.wavefront.proxy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reads lines from a stream without decoding them, so they can be validated in place.
+ */
+@NotThreadSafe
+class LineReader {
+  private final InputStream inputStream;
+  private byte[] buffer = new byte[64 * 1024];
+  private int start = 0;
+  private int end = 0;
+  private int lineStart = 0;
+  private int lineEnd = 0;
+  private long bytes = 0;
+
+  LineReader(InputStream inputStream) {
+    this.inputStream = inputStream;
+  }
+
+  /**
+   * Reads the next line. The line is available via {@link #getBuffer()}, {@link #getLineStart()}
+   * and {@link #getLineEnd()} until the next call.
+   *
+   * @return False at the end of the stream.
+   */
+  boolean readLine() throws IOException {
+    // Number of bytes already scanned for the line break, filling may move the data.
+    int scanned = 0;
+    while (true) {
+      for (int n = start + scanned; n < end; n++) {
+        if (buffer[n] == '\n') {
+          lineStart = start;
+          lineEnd = n > start && buffer[n - 1] == '\r' ? n - 1 : n;
+          start = n + 1;
+          return true;
+        }
+      }
+      scanned = end - start;
+      if (!fill()) {
+        // The last line may be not terminated.
+        if (start < end) {
+          lineStart = start;
+          lineEnd = end;
+          start = end;
+          return true;
+        }
+        return false;
+      }
+    }
+  }
+
+  /**
+   * @return The last read line decoded as a string.
+   */
+  String getLine() {
+    return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads exactly the given number of bytes.
+   */
+  byte[] readFully(int length) throws IOException {
+    final byte[] data = new byte[length];
+    final int buffered = Math.min(length, end - start);
+    System.arraycopy(buffer, start, data, 0, buffered);
+    start += buffered;
+    int read = buffered;
+    while (read < length) {
+      final int count = inputStream.read(data, read, length - read);
+      if (count < 0) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      read += count;
+      bytes += count;
+    }
+    return data;
+  }
+
+  /**
+   * Reads more data, compacting or growing the buffer if necessary.
+   *
+   * @return False at the end of the stream.
+   */
+  private boolean fill() throws IOException {
+    if (start > 0) {
+      System.arraycopy(buffer, start, buffer, 0, end - start);
+      end -= start;
+      start = 0;
+    }
+    if (end == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    final int count = inputStream.read(buffer, end, buffer.length - end);
+    if (count < 0) {
+      return false;
+    }
+    end += count;
+    bytes += count;
+    return true;
+  }
+
+  byte[] getBuffer() {
+    return buffer;
+  }
+
+  int getLineStart() {
+    return lineStart;
+  }
+
+  int getLineEnd() {
+    return lineEnd;
+  }
+
+  /**
+   * @return Number of bytes read from the stream so far.
+   */
+  long getBytes() {
+    return bytes;
+  }
+
+  @Nullable
+  static String headerValue(String line, String name) {
+    final int colon = line.indexOf(':');
+    if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+      return line.substring(colon + 1).trim();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,367 @@
+package com.wavefront.proxy;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.wavefront.helpers.RateLimitedLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lightweight stand-in for the Wavefront proxy, for measuring the loader throughput without a
+ * real proxy and network. It accepts spans on the given ports both as plain lines (RAW sink) and
+ * as HTTP reports of the SDK sender (POST /report?f=trace with optionally gzipped body). Received
+ * spans are validated and counted, nothing is forwarded.
+ * <p>
+ * Besides spans and bytes per second, the arrival-rate jitter is measured as the coefficient of
+ * variation of the number of spans received per 10 milliseconds, between the first and the last
+ * arrival.
+ */
+public class LocalProxy implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(LocalProxy.class.getCanonicalName());
+  private static final long TICK_MILLIS = 10;
+  private static final long REPORT_MILLIS = 1000;
+  private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+  private static final byte[] HTTP_ACCEPTED =
+      "HTTP/1.1 202 Accepted\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HTTP_LENGTH_REQUIRED =
+      "HTTP/1.1 411 Length Required\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+          .getBytes(StandardCharsets.US_ASCII);
+
+  private final List<Integer> ports;
+  private final boolean reportEverySecond;
+  private final List<ServerSocket> serverSockets = new ArrayList<>();
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+  private final ExecutorService connections =
+      Executors.newCachedThreadPool(daemon("local-proxy-connection"));
+  private final ScheduledExecutorService ticker =
+      Executors.newSingleThreadScheduledExecutor(daemon("local-proxy-ticker"));
+  private final RateLimitedLogger invalidLogger = new RateLimitedLogger(LOGGER, 5_000);
+  private final Map<Integer, LongAdder> spansByPort = new TreeMap<>();
+  private final LongAdder spans = new LongAdder();
+  /**
+   * Bytes received over the wire: the raw lines, or the bodies of HTTP requests as they are sent,
+   * possibly compressed.
+   */
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder invalidSpans = new LongAdder();
+  private final LongAdder otherLines = new LongAdder();
+
+  // Arrival statistics, updated by the ticker thread and on close.
+  private long lastTickSpans = 0;
+  private long idleTicks = 0;
+  private long activeTicks = 0;
+  private double tickSum = 0;
+  private double tickSumOfSquares = 0;
+  private long ticksSinceReport = 0;
+  private long lastReportSpans = 0;
+  private long lastReportBytes = 0;
+
+  /**
+   * LocalProxy constructor.
+   *
+   * @param ports             Ports to listen on.
+   * @param reportEverySecond If true, received spans and bytes are logged every second.
+   */
+  public LocalProxy(List<Integer> ports, boolean reportEverySecond) {
+    this.ports = List.copyOf(ports);
+    this.reportEverySecond = reportEverySecond;
+    this.ports.forEach(port -> spansByPort.put(port, new LongAdder()));
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Options options = new Options();
+    final JCommander jCommander = JCommander.newBuilder().addObject(options).build();
+    jCommander.parse(args);
+    if (options.help) {
+      jCommander.usage();
+      return;
+    }
+    final LocalProxy localProxy =
+        new LocalProxy(options.ports.isEmpty() ? List.of(30000) : options.ports, true);
+    localProxy.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      localProxy.close();
+      LOGGER.info(localProxy.getSummary());
+    }));
+    Thread.currentThread().join();
+  }
+
+  /**
+   * Starts listening on all ports.
+   *
+   * @throws IOException if any of the ports can't be bound.
+   */
+  public void start() throws IOException {
+    for (int port : ports) {
+      final ServerSocket serverSocket = new ServerSocket(port);
+      serverSockets.add(serverSocket);
+      final Thread acceptor = new Thread(() -> accept(serverSocket, port),
+          "local-proxy-" + port);
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+    ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    LOGGER.info("Local proxy is listening on ports " + ports);
+  }
+
+  /**
+   * Stops accepting connections and waits a bit for the connected clients to complete.
+   */
+  @Override
+  public void close() {
+    for (ServerSocket serverSocket : serverSockets) {
+      try {
+        serverSocket.close();
+      } catch (IOException e) {
+        LOGGER.warning("Failed to close local proxy socket: " + e.getMessage());
+      }
+    }
+    connections.shutdown();
+    try {
+      if (!connections.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        // Idle keep-alive connections of the SDK sender are never closed by the client.
+        for (Socket socket : sockets) {
+          socket.close();
+        }
+        connections.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LOGGER.warning("Failed to close local proxy connection: " + e.getMessage());
+    }
+    ticker.shutdownNow();
+    try {
+      ticker.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    tick();
+  }
+
+  public long getSpans() {
+    return spans.sum();
+  }
+
+  public long getInvalidSpans() {
+    return invalidSpans.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /**
+   * @return Coefficient of variation of spans received per 10 milliseconds.
+   */
+  public synchronized double getJitter() {
+    if (activeTicks == 0 || tickSum == 0) {
+      return 0;
+    }
+    final double mean = tickSum / activeTicks;
+    final double variance = Math.max(0, tickSumOfSquares / activeTicks - mean * mean);
+    return Math.sqrt(variance) / mean;
+  }
+
+  /**
+   * @return Summary of received data.
+   */
+  public synchronized String getSummary() {
+    final double seconds = activeTicks * TICK_MILLIS / 1000.0;
+    final StringBuilder summary = new StringBuilder("Local proxy: received spans " + getSpans() +
+        ", invalid " + getInvalidSpans() + ", other lines " + otherLines.sum() +
+        String.format(", %.1f MB", getBytes() / 1e6));
+    if (seconds > 0) {
+      summary.append(String.format(", %.1f spans/s, %.2f MB/s over %.2f s, jitter %.3f",
+          getSpans() / seconds, getBytes() / 1e6 / seconds, seconds, getJitter()));
+    }
+    if (spansByPort.size() > 1) {
+      summary.append(", spans by port ").append(spansByPort);
+    }
+    return summary.toString();
+  }
+
+  private void accept(ServerSocket serverSocket, int port) {
+    while (!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        sockets.add(socket);
+        connections.execute(() -> handle(socket, port));
+      } catch (SocketException e) {
+        // The server socket is closed.
+      } catch (IOException e) {
+        LOGGER.warning("Local proxy failed to accept a connection: " + e.getMessage());
+      }
+    }
+  }
+
+  private void handle(Socket socket, int port) {
+    final LongAdder portSpans = spansByPort.get(port);
+    try (socket) {
+      final LineReader reader = new LineReader(socket.getInputStream());
+      if (!reader.readLine()) {
+        return;
+      }
+      if (reader.getLine().matches("[A-Z]+ \\S+ HTTP/1\\.[01]")) {
+        handleHttp(reader, socket.getOutputStream(), portSpans);
+      } else {
+        do {
+          onSpanLine(reader, portSpans, true);
+        } while (reader.readLine());
+      }
+    } catch (IOException e) {
+      // The client went away.
+    } finally {
+      sockets.remove(socket);
+    }
+  }
+
+  private void handleHttp(LineReader reader, OutputStream outputStream, LongAdder portSpans)
+      throws IOException {
+    do {
+      final String requestLine = reader.getLine();
+      if (requestLine.isEmpty()) {
+        continue;
+      }
+      int contentLength = -1;
+      boolean gzip = false;
+      boolean close = requestLine.endsWith("HTTP/1.0");
+      while (reader.readLine() && reader.getLineEnd() > reader.getLineStart()) {
+        final String header = reader.getLine();
+        String value;
+        if ((value = LineReader.headerValue(header, "Content-Length")) != null) {
+          contentLength = Integer.parseInt(value);
+        } else if ((value = LineReader.headerValue(header, "Content-Encoding")) != null) {
+          gzip = value.equalsIgnoreCase("gzip");
+        } else if ((value = LineReader.headerValue(header, "Connection")) != null) {
+          close = value.equalsIgnoreCase("close");
+        }
+      }
+      if (contentLength < 0) {
+        outputStream.write(HTTP_LENGTH_REQUIRED);
+        outputStream.flush();
+        return;
+      }
+      final byte[] body = reader.readFully(contentLength);
+      bytes.add(contentLength);
+      InputStream inputStream = new ByteArrayInputStream(body);
+      if (gzip) {
+        inputStream = new GZIPInputStream(inputStream);
+      }
+      final boolean isTrace = "trace".equals(getFormat(requestLine));
+      final LineReader bodyReader = new LineReader(inputStream);
+      while (bodyReader.readLine()) {
+        if (isTrace) {
+          // The body is counted already.
+          onSpanLine(bodyReader, portSpans, false);
+        } else if (bodyReader.getLineEnd() > bodyReader.getLineStart()) {
+          // Metrics, histograms and span logs are reported by the SDK too.
+          otherLines.increment();
+        }
+      }
+      outputStream.write(HTTP_ACCEPTED);
+      outputStream.flush();
+      if (close) {
+        return;
+      }
+    } while (reader.readLine());
+  }
+
+  private static String getFormat(String requestLine) {
+    final int start = requestLine.indexOf("f=");
+    if (start < 0) {
+      return null;
+    }
+    int end = start + 2;
+    while (end < requestLine.length() && requestLine.charAt(end) != '&' &&
+        requestLine.charAt(end) != ' ') {
+      end++;
+    }
+    return requestLine.substring(start + 2, end);
+  }
+
+  /**
+   * @param countBytes If true, bytes of the line are counted as received.
+   */
+  private void onSpanLine(LineReader reader, LongAdder portSpans, boolean countBytes) {
+    final int start = reader.getLineStart();
+    final int end = reader.getLineEnd();
+    if (end == start) {
+      return;
+    }
+    if (SpanLineValidator.isValid(reader.getBuffer(), start, end)) {
+      spans.increment();
+      portSpans.increment();
+    } else {
+      invalidSpans.increment();
+      invalidLogger.warning("Local proxy received invalid span: " + reader.getLine());
+    }
+    if (countBytes) {
+      bytes.add(end - start + 1);
+    }
+  }
+
+  private synchronized void tick() {
+    final long total = spans.sum();
+    final long received = total - lastTickSpans;
+    lastTickSpans = total;
+    // Idle ticks count only between arrivals, not before the first and after the last one.
+    if (received > 0) {
+      activeTicks += idleTicks + 1;
+      idleTicks = 0;
+      tickSum += received;
+      tickSumOfSquares += (double) received * received;
+    } else if (activeTicks > 0) {
+      idleTicks++;
+    }
+    if (reportEverySecond && ++ticksSinceReport * TICK_MILLIS >= REPORT_MILLIS) {
+      final long totalBytes = bytes.sum();
+      final double seconds = ticksSinceReport * TICK_MILLIS / 1000.0;
+      LOGGER.info(String.format("Local proxy: %.1f spans/s, %.2f MB/s, invalid spans %d",
+          (total - lastReportSpans) / seconds, (totalBytes - lastReportBytes) / 1e6 / seconds,
+          invalidSpans.sum()));
+      ticksSinceReport = 0;
+      lastReportSpans = total;
+      lastReportBytes = totalBytes;
+    }
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return runnable -> {
+      final Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static class Options {
+    @Parameter(names = {"--help"}, help = true)
+    private boolean help = false;
+
+    @Parameter(names = {"--port"}, description = "Port to listen on, may be repeated. " +
+        "Default: 30000")
+    private List<Integer> ports = new ArrayList<>();
+  }
+}
@@ -0,0 +1,122 @@
+package com.wavefront.proxy;
+
+/**
+ * Validates lines of the Wavefront span format in place:
+ * <pre>
+ * "name" source="source" traceId=uuid spanId=uuid [parent=uuid] [followsFrom=uuid]
+ * ["key"="value"] startMillis durationMillis
+ * </pre>
+ * Names, sources, tag keys and values may be either quoted strings or tokens without spaces.
+ */
+final class SpanLineValidator {
+  private static final byte[] SOURCE = " source=".getBytes();
+  private static final byte[] TRACE_ID = " traceId=".getBytes();
+  private static final byte[] SPAN_ID = " spanId=".getBytes();
+  private static final byte[] PARENT = " parent=".getBytes();
+  private static final byte[] FOLLOWS_FROM = " followsFrom=".getBytes();
+  private static final int UUID_LENGTH = 36;
+
+  private SpanLineValidator() {
+  }
+
+  /**
+   * @return True if the line between start (inclusive) and end (exclusive) is a valid span.
+   */
+  static boolean isValid(byte[] line, int start, int end) {
+    int pos = skipValue(line, start, end);
+    pos = skipPrefixed(SOURCE, line, pos, end, false);
+    pos = skipPrefixed(TRACE_ID, line, pos, end, true);
+    pos = skipPrefixed(SPAN_ID, line, pos, end, true);
+    while (pos > 0 && pos < end) {
+      if (startsWith(PARENT, line, pos, end)) {
+        pos = skipPrefixed(PARENT, line, pos, end, true);
+      } else if (startsWith(FOLLOWS_FROM, line, pos, end)) {
+        pos = skipPrefixed(FOLLOWS_FROM, line, pos, end, true);
+      } else if (pos + 1 < end && line[pos] == ' ' && !isDigit(line[pos + 1])) {
+        pos = skipValue(line, pos + 1, end);
+        pos = pos > 0 && pos < end && line[pos] == '=' ? skipValue(line, pos + 1, end) : -1;
+      } else {
+        break;
+      }
+    }
+    pos = skipNumber(line, pos, end);
+    pos = skipNumber(line, pos, end);
+    return pos == end;
+  }
+
+  private static boolean startsWith(byte[] prefix, byte[] line, int pos, int end) {
+    if (pos < 0 || end - pos < prefix.length) {
+      return false;
+    }
+    for (int n = 0; n < prefix.length; n++) {
+      if (line[pos + n] != prefix[n]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int skipPrefixed(byte[] prefix, byte[] line, int pos, int end, boolean uuid) {
+    if (!startsWith(prefix, line, pos, end)) {
+      return -1;
+    }
+    pos += prefix.length;
+    return uuid ? skipUUID(line, pos, end) : skipValue(line, pos, end);
+  }
+
+  /**
+   * Skips a quoted string (with escaped quotes) or a token.
+   *
+   * @return Position after the value or -1 if it's invalid.
+   */
+  private static int skipValue(byte[] line, int pos, int end) {
+    if (pos < 0 || pos >= end) {
+      return -1;
+    }
+    if (line[pos] != '"') {
+      final int start = pos;
+      while (pos < end && line[pos] != ' ' && line[pos] != '=' && line[pos] != '"') {
+        pos++;
+      }
+      return pos > start ? pos : -1;
+    }
+    for (pos++; pos < end; pos++) {
+      if (line[pos] == '\\') {
+        pos++;
+      } else if (line[pos] == '"') {
+        return pos + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static int skipUUID(byte[] line, int pos, int end) {
+    if (end - pos < UUID_LENGTH) {
+      return -1;
+    }
+    for (int n = 0; n < UUID_LENGTH; n++) {
+      final byte c = line[pos + n];
+      final boolean valid = n == 8 || n == 13 || n == 18 || n == 23 ? c == '-' :
+          isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+      if (!valid) {
+        return -1;
+      }
+    }
+    return pos + UUID_LENGTH;
+  }
+
+  private static int skipNumber(byte[] line, int pos, int end) {
+    if (pos < 0 || pos + 1 >= end || line[pos] != ' ') {
+      return -1;
+    }
+    final int start = ++pos;
+    while (pos < end && isDigit(line[pos])) {
+      pos++;
+    }
+    return pos > start ? pos : -1;
+  }
+
+  private static boolean isDigit(byte c) {
+    return c >= '0' && c <= '9';
+  }
+}
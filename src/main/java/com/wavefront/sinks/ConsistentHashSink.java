@@ -0,0 +1,205 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.HashRing;
+import com.wavefront.datastructures.Span;
+import com.wavefront.helpers.RateLimitedLogger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sink distributing spans among several destinations (proxies) by consistent hashing of the
+ * trace ID, so all spans of a trace reach the same destination.
+ * <p>
+ * A destination falls behind when sending to it fails or takes too long. For a while its new
+ * traces are shed to the next destinations on the ring, while traces already sent to it stay
+ * there, as well as the shed traces stay where they were shed. Recent traces are remembered for
+ * that, up to the given capacity.
+ */
+@NotThreadSafe
+public class ConsistentHashSink implements SpanSink {
+  private static final Logger LOGGER =
+      Logger.getLogger(ConsistentHashSink.class.getCanonicalName());
+  private static final int VIRTUAL_NODES = 128;
+  private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long SHED_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long LOG_INTERVAL_MILLIS = 5000;
+  private final RateLimitedLogger sheddingLogger = new RateLimitedLogger(LOGGER,
+      LOG_INTERVAL_MILLIS);
+  private final List<String> names;
+  private final List<SpanSink> sinks;
+  private final HashRing ring;
+  /**
+   * Destinations of recent traces, the oldest ones are forgotten first.
+   */
+  private final Map<UUID, Integer> traceDestinations;
+  /**
+   * Moments until which the destinations are considered falling behind.
+   */
+  private final long[] behindUntilNanos;
+  private final long[] sentSpans;
+  private long shedTraces = 0;
+
+  /**
+   * ConsistentHashSink constructor.
+   *
+   * @param names          Names of the destinations, used for placing them on the hash ring.
+   * @param sinks          Sinks of the destinations.
+   * @param tracesCapacity Maximal number of remembered traces.
+   */
+  public ConsistentHashSink(@Nonnull List<String> names, @Nonnull List<SpanSink> sinks,
+                            int tracesCapacity) {
+    if (names.size() != sinks.size()) {
+      throw new IllegalArgumentException("Every destination must have a name!");
+    }
+    this.names = List.copyOf(names);
+    this.sinks = List.copyOf(sinks);
+    this.ring = new HashRing(names, VIRTUAL_NODES);
+    this.traceDestinations = new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<UUID, Integer> eldest) {
+        return size() > tracesCapacity;
+      }
+    };
+    this.behindUntilNanos = new long[sinks.size()];
+    Arrays.fill(behindUntilNanos, System.nanoTime());
+    this.sentSpans = new long[sinks.size()];
+  }
+
+  @Override
+  public void send(Span span) throws IOException {
+    final UUID traceUUID = span.getTraceUUID();
+    final Integer known = traceDestinations.get(traceUUID);
+    if (known != null) {
+      sendTo(known, span);
+      return;
+    }
+    // The trace is new, so it can go anywhere. Destinations are tried in the ring order until
+    // one of them accepts it.
+    while (true) {
+      final long now = System.nanoTime();
+      final int owner = ring.getNode(traceUUID);
+      final int destination =
+          ring.getNode(traceUUID, node -> now - behindUntilNanos[node] >= 0);
+      try {
+        sendTo(destination, span);
+      } catch (IOException e) {
+        if (hasDestinationsInTime(System.nanoTime())) {
+          continue;
+        }
+        throw e;
+      }
+      if (destination != owner) {
+        shedTraces++;
+      }
+      traceDestinations.put(traceUUID, destination);
+      return;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    forEachSink(SpanSink::flush);
+  }
+
+  @Override
+  public void onIdle() throws IOException {
+    forEachSink(SpanSink::onIdle);
+  }
+
+  @Override
+  public long getLostSpans() {
+    return sinks.stream().mapToLong(SpanSink::getLostSpans).sum();
+  }
+
+  /**
+   * @return Number of traces sent to other destinations than their own ones.
+   */
+  public long getShedTraces() {
+    return shedTraces;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      forEachSink(SpanSink::close);
+    } finally {
+      final StringBuilder summary = new StringBuilder("Spans by destination:");
+      for (int n = 0; n < sinks.size(); n++) {
+        summary.append(' ').append(names.get(n)).append('=').append(sentSpans[n]);
+      }
+      LOGGER.info(summary.append(", shed traces ").append(shedTraces).toString());
+    }
+  }
+
+  private void sendTo(int destination, Span span) throws IOException {
+    final long start = System.nanoTime();
+    try {
+      sinks.get(destination).send(span);
+    } catch (IOException e) {
+      fallBehind(destination, System.nanoTime(), e.getMessage());
+      throw e;
+    }
+    sentSpans[destination]++;
+    checkLatency(destination, start);
+  }
+
+  private void checkLatency(int destination, long start) {
+    final long now = System.nanoTime();
+    if (now - start > SLOW_NANOS) {
+      fallBehind(destination, now, "sending took " +
+          TimeUnit.NANOSECONDS.toMillis(now - start) + " ms");
+    }
+  }
+
+  private void fallBehind(int destination, long now, String reason) {
+    if (now - behindUntilNanos[destination] >= 0) {
+      sheddingLogger.warning(names.get(destination) + " is falling behind (" + reason +
+          "), its new traces are shed to other destinations.");
+    }
+    behindUntilNanos[destination] = now + SHED_NANOS;
+  }
+
+  private boolean hasDestinationsInTime(long now) {
+    for (long behindUntil : behindUntilNanos) {
+      if (now - behindUntil >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void forEachSink(SinkAction action) throws IOException {
+    IOException failure = null;
+    for (int n = 0; n < sinks.size(); n++) {
+      final long start = System.nanoTime();
+      try {
+        action.apply(sinks.get(n));
+        checkLatency(n, start);
+      } catch (IOException e) {
+        fallBehind(n, System.nanoTime(), e.getMessage());
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private interface SinkAction {
+    void apply(SpanSink sink) throws IOException;
+  }
+}
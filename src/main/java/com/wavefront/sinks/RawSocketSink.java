@@ -0,0 +1,182 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.Span;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sink writing spans in the Wavefront line format straight to the proxy tracing port. Spans are
+ * rendered by {@link SpanLineRenderer} and collected in reusable direct buffers, which are
+ * written with a single gathering write when the flush size is accumulated, or when the sender
+ * is idle. The channel is non-blocking, so a stalled proxy is detected by the write timeout.
+ * <p>
+ * The connection is established lazily and re-established on the next flush after a failure.
+ * Spans buffered when the flush fails are lost, their number is reported by
+ * {@link #getLostSpans()}.
+ */
+@NotThreadSafe
+public class RawSocketSink implements SpanSink {
+  private static final Logger LOGGER = Logger.getLogger(RawSocketSink.class.getCanonicalName());
+  private static final int MAX_BUFFER_SIZE = 64 * 1024;
+  private static final long IO_TIMEOUT_MILLIS = 30_000;
+  private final InetSocketAddress address;
+  private final SpanLineRenderer renderer;
+  private final ByteBuffer[] buffers;
+  /**
+   * Index of the buffer rendered spans are currently copied into.
+   */
+  private int current = 0;
+  private int bufferedSpans = 0;
+  private long lostSpans = 0;
+  private SocketChannel channel;
+  private Selector selector;
+
+  /**
+   * RawSocketSink constructor.
+   *
+   * @param host      Proxy host.
+   * @param port      Proxy tracing port.
+   * @param flushSize Number of bytes accumulated before writing them to the socket.
+   */
+  public RawSocketSink(String host, int port, int flushSize) {
+    if (flushSize <= 0) {
+      throw new IllegalArgumentException("Flush size must be positive!");
+    }
+    this.address = new InetSocketAddress(host, port);
+    final int bufferSize = Math.min(flushSize, MAX_BUFFER_SIZE);
+    this.renderer = new SpanLineRenderer(bufferSize);
+    this.buffers = new ByteBuffer[(flushSize + bufferSize - 1) / bufferSize];
+    for (int n = 0; n < buffers.length; n++) {
+      buffers[n] = ByteBuffer.allocateDirect(bufferSize);
+    }
+  }
+
+  @Override
+  public void send(Span span) throws IOException {
+    final int length = renderer.render(span);
+    if (length < 0) {
+      // The line is longer than a whole buffer, so it's written separately.
+      flush();
+      final ByteBuffer line = ByteBuffer.wrap(span.toString().getBytes(StandardCharsets.UTF_8));
+      write(new ByteBuffer[]{line}, 1);
+      return;
+    }
+    if (buffers[current].remaining() < length) {
+      if (current + 1 == buffers.length) {
+        flush();
+      } else {
+        current++;
+      }
+    }
+    renderer.copyTo(buffers[current]);
+    bufferedSpans++;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    final int count = buffers[current].position() > 0 ? current + 1 : current;
+    current = 0;
+    if (count == 0) {
+      return;
+    }
+    for (int n = 0; n < count; n++) {
+      buffers[n].flip();
+    }
+    try {
+      write(buffers, count);
+    } catch (IOException e) {
+      lostSpans += bufferedSpans;
+      throw e;
+    } finally {
+      bufferedSpans = 0;
+      for (int n = 0; n < count; n++) {
+        buffers[n].clear();
+      }
+    }
+  }
+
+  @Override
+  public long getLostSpans() {
+    return lostSpans;
+  }
+
+  @Override
+  public void onIdle() throws IOException {
+    flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      disconnect();
+    }
+  }
+
+  private void write(ByteBuffer[] data, int count) throws IOException {
+    try {
+      connect();
+      while (data[count - 1].hasRemaining()) {
+        if (channel.write(data, 0, count) == 0) {
+          await(SelectionKey.OP_WRITE);
+        }
+      }
+    } catch (IOException e) {
+      disconnect();
+      throw e;
+    }
+  }
+
+  private void connect() throws IOException {
+    if (channel != null) {
+      return;
+    }
+    selector = Selector.open();
+    channel = SocketChannel.open();
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    if (!channel.connect(address)) {
+      await(SelectionKey.OP_CONNECT);
+      channel.finishConnect();
+    }
+    LOGGER.info("Connected to " + address);
+  }
+
+  private void await(int operation) throws IOException {
+    final SelectionKey key = channel.register(selector, operation);
+    try {
+      if (selector.select(IO_TIMEOUT_MILLIS) == 0) {
+        throw new IOException("Timed out waiting for " + address);
+      }
+      selector.selectedKeys().clear();
+    } finally {
+      key.interestOps(0);
+    }
+  }
+
+  private void disconnect() {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+      if (selector != null) {
+        selector.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warning("Failed to close connection to " + address + ": " + e.getMessage());
+    }
+    channel = null;
+    selector = null;
+  }
+}
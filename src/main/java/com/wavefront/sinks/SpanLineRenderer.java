@@ -0,0 +1,386 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.RenderedTag;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.SpanLineTemplate;
+import com.wavefront.sdk.common.Pair;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Renders spans in the Wavefront span line format. The output is byte-identical to
+ * {@link com.wavefront.sdk.common.Utils#tracingSpanToLineData}, but no intermediate strings are
+ * created: the line is written into a reusable array, with UUIDs and numbers written digit by
+ * digit and strings sanitized and UTF-8 encoded on the fly. The rendered line is then copied to
+ * the destination buffer at once.
+ * <p>
+ * Spans having a {@link SpanLineTemplate} and tags being {@link RenderedTag} are rendered from
+ * the bytes prepared beforehand by {@link #templateOf(Span)} and {@link #tagOf(String, String)},
+ * only IDs, the start and the duration are written per span.
+ */
+@NotThreadSafe
+public class SpanLineRenderer {
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+  private static final byte[] SOURCE = " source=".getBytes();
+  private static final byte[] TRACE_ID = " traceId=".getBytes();
+  private static final byte[] SPAN_ID = " spanId=".getBytes();
+  private static final byte[] PARENT = " parent=".getBytes();
+  private static final byte[] FOLLOWS_FROM = " followsFrom=".getBytes();
+  private final byte[] line;
+  private int length = 0;
+
+  /**
+   * SpanLineRenderer constructor.
+   *
+   * @param maxLineLength Maximal length of a line in bytes.
+   */
+  public SpanLineRenderer(int maxLineLength) {
+    this.line = new byte[maxLineLength];
+  }
+
+  /**
+   * Renders the template of the lines of the spans like the given one.
+   *
+   * @param span Span, its name, source and numbers of parents and follows from spans are used.
+   * @return Template of the span lines.
+   * @throws IllegalArgumentException if the span has a blank name or source.
+   */
+  public static SpanLineTemplate templateOf(Span span) {
+    // Every character takes at most 4 bytes, IDs with their prefixes take less than 64 bytes.
+    final int maxLength = 4 * (span.getName().length() +
+        (span.getSource() == null ? 0 : span.getSource().length())) +
+        64 * (2 + size(span.getParents()) + size(span.getFollowsFrom())) + 16;
+    return new SpanLineRenderer(maxLength).renderTemplate(span);
+  }
+
+  /**
+   * Creates a tag, rendered if it's valid. Invalid tags are left to fail when the span is rendered,
+   * as other tags do.
+   *
+   * @param key   Tag key.
+   * @param value Tag value.
+   * @return Rendered tag or a simple pair if the key or the value is blank.
+   */
+  public static Pair<String, String> tagOf(@Nullable String key, @Nullable String value) {
+    if (isBlank(key) || isBlank(value)) {
+      return new Pair<>(key, value);
+    }
+    // Every character takes at most 4 bytes, plus quotes, the space and '='.
+    final int maxLength = 4 * (key.length() + value.length()) + 8;
+    return new RenderedTag(key, value,
+        new SpanLineRenderer(maxLength).renderTag(new Pair<>(key, value)));
+  }
+
+  /**
+   * Renders the line of the span. The line is kept until the next call.
+   *
+   * @param span Span to be rendered.
+   * @return Length of the line in bytes or -1 if it's longer than the maximal line length.
+   * @throws IllegalArgumentException if the span has a blank name, source or tag.
+   */
+  public int render(Span span) {
+    final SpanLineTemplate template = span.getLineTemplate();
+    final boolean templated = template != null && template.isTemplateOf(span);
+    validate(span, templated);
+    length = 0;
+    try {
+      if (templated) {
+        // The line starts with the template, IDs of the template span are overwritten.
+        put(template.getLine());
+        final int end = length;
+        final int[] slots = template.getSlots();
+        length = slots[0];
+        putUUID(span.getTraceUUID());
+        length = slots[1];
+        putUUID(span.getSpanUUID());
+        int slot = 2;
+        if (span.getParents() != null) {
+          for (UUID uuid : span.getParents()) {
+            length = slots[slot++];
+            putUUID(uuid);
+          }
+        }
+        if (span.getFollowsFrom() != null) {
+          for (UUID uuid : span.getFollowsFrom()) {
+            length = slots[slot++];
+            putUUID(uuid);
+          }
+        }
+        length = end;
+      } else {
+        putHead(span, null);
+      }
+      final List<Pair<String, String>> tags = span.getTags();
+      if (tags != null) {
+        for (Pair<String, String> tag : tags) {
+          if (tag instanceof RenderedTag) {
+            put(((RenderedTag) tag).getLine());
+          } else {
+            putTag(tag);
+          }
+        }
+      }
+      put(' ');
+      putLong(span.getStartMillis());
+      put(' ');
+      putLong(span.getDuration());
+      put('\n');
+      return length;
+    } catch (ArrayIndexOutOfBoundsException e) {
+      length = 0;
+      return -1;
+    }
+  }
+
+  /**
+   * Renders the beginning of the line of the span, up to the tags, as a template.
+   *
+   * @param span Span to be rendered.
+   * @return Template of the lines of the spans with the same name, source and number of parents.
+   * @throws IllegalArgumentException if the span has a blank name or source.
+   */
+  private SpanLineTemplate renderTemplate(Span span) {
+    validateHead(span);
+    length = 0;
+    final int[] slots = new int[2 + size(span.getParents()) + size(span.getFollowsFrom())];
+    putHead(span, slots);
+    return new SpanLineTemplate(span.getName(), span.getSource(), size(span.getParents()),
+        size(span.getFollowsFrom()), Arrays.copyOf(line, length), slots);
+  }
+
+  /**
+   * Renders the tag as a part of the line, starting with the space.
+   *
+   * @param tag Tag to be rendered.
+   * @return Rendered tag.
+   * @throws IllegalArgumentException if the tag has a blank key or value.
+   */
+  private byte[] renderTag(Pair<String, String> tag) {
+    validateTag(tag);
+    length = 0;
+    putTag(tag);
+    return Arrays.copyOf(line, length);
+  }
+
+  /**
+   * Copies the last rendered line to the buffer.
+   *
+   * @param buffer Destination buffer, must have enough remaining space.
+   */
+  public void copyTo(ByteBuffer buffer) {
+    buffer.put(line, 0, length);
+  }
+
+  /**
+   * Validates the span, except the parts rendered beforehand, which were validated then.
+   */
+  private static void validate(Span span, boolean templated) {
+    if (!templated) {
+      validateHead(span);
+    }
+    if (span.getTags() != null) {
+      for (Pair<String, String> tag : span.getTags()) {
+        if (!(tag instanceof RenderedTag)) {
+          validateTag(tag);
+        }
+      }
+    }
+  }
+
+  private static void validateHead(Span span) {
+    if (isBlank(span.getName())) {
+      throw new IllegalArgumentException("span name cannot be blank");
+    }
+    if (isBlank(span.getSource())) {
+      throw new IllegalArgumentException("span source cannot be blank");
+    }
+  }
+
+  private static void validateTag(Pair<String, String> tag) {
+    if (isBlank(tag._1)) {
+      throw new IllegalArgumentException("span tag key cannot be blank");
+    }
+    if (isBlank(tag._2)) {
+      throw new IllegalArgumentException("span tag value cannot be blank for tag key: " +
+          tag._1);
+    }
+  }
+
+  private static int size(@Nullable List<UUID> uuids) {
+    return uuids == null ? 0 : uuids.size();
+  }
+
+  /**
+   * Puts the name, the source and the IDs of the span.
+   *
+   * @param slots If not null, positions of the IDs are stored in it: the trace ID, the span ID,
+   *              the parents and the follows from spans.
+   */
+  private void putHead(Span span, @Nullable int[] slots) {
+    putValue(span.getName());
+    put(SOURCE);
+    putSanitized(span.getSource());
+    put(TRACE_ID);
+    int slot = 0;
+    if (slots != null) {
+      slots[slot++] = length;
+    }
+    putUUID(span.getTraceUUID());
+    put(SPAN_ID);
+    if (slots != null) {
+      slots[slot++] = length;
+    }
+    putUUID(span.getSpanUUID());
+    slot = putUUIDs(PARENT, span.getParents(), slots, slot);
+    putUUIDs(FOLLOWS_FROM, span.getFollowsFrom(), slots, slot);
+  }
+
+  private void putTag(Pair<String, String> tag) {
+    put(' ');
+    putSanitized(tag._1);
+    put('=');
+    putValue(tag._2);
+  }
+
+  private static boolean isBlank(@Nullable String s) {
+    return s == null || s.trim().isEmpty();
+  }
+
+  private void put(char c) {
+    line[length++] = (byte) c;
+  }
+
+  private void put(byte[] bytes) {
+    System.arraycopy(bytes, 0, line, length, bytes.length);
+    length += bytes.length;
+  }
+
+  /**
+   * Same as {@link com.wavefront.sdk.common.Utils#sanitize}: quoted, characters other than
+   * letters, digits and ",-._" are replaced with '-'.
+   */
+  private void putSanitized(String s) {
+    put('"');
+    for (int n = 0; n < s.length(); n++) {
+      final char c = s.charAt(n);
+      final boolean valid = (c >= ',' && c <= '9' && c != '/') || (c >= 'A' && c <= 'Z') ||
+          (c >= 'a' && c <= 'z') || c == '_' ||
+          (n == 0 && (c == '\u2206' || c == '\u0394' || c == '~'));
+      if (!valid) {
+        put('-');
+      } else if (c < 0x80) {
+        put(c);
+      } else {
+        putUtf8(c);
+      }
+    }
+    put('"');
+  }
+
+  /**
+   * Same as {@link com.wavefront.sdk.common.Utils#sanitizeValue}: trimmed, quoted, with escaped
+   * quotes and line breaks.
+   */
+  private void putValue(String s) {
+    int begin = 0;
+    int end = s.length();
+    while (begin < end && s.charAt(begin) <= ' ') {
+      begin++;
+    }
+    while (end > begin && s.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    put('"');
+    for (int n = begin; n < end; n++) {
+      final char c = s.charAt(n);
+      if (c == '"') {
+        put('\\');
+        put('"');
+      } else if (c == '\n') {
+        put('\\');
+        put('n');
+      } else if (c < 0x80) {
+        put(c);
+      } else if (Character.isHighSurrogate(c) && n + 1 < end &&
+          Character.isLowSurrogate(s.charAt(n + 1))) {
+        putUtf8(Character.toCodePoint(c, s.charAt(++n)));
+      } else {
+        putUtf8(c);
+      }
+    }
+    put('"');
+  }
+
+  private void putUtf8(int codePoint) {
+    if (codePoint < 0x800) {
+      line[length++] = (byte) (0xc0 | (codePoint >> 6));
+    } else if (codePoint < 0x10000) {
+      if (Character.isSurrogate((char) codePoint)) {
+        // Unpaired surrogates are replaced the same way as String.getBytes() does.
+        put('?');
+        return;
+      }
+      line[length++] = (byte) (0xe0 | (codePoint >> 12));
+      line[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+    } else {
+      line[length++] = (byte) (0xf0 | (codePoint >> 18));
+      line[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      line[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+    }
+    line[length++] = (byte) (0x80 | (codePoint & 0x3f));
+  }
+
+  private int putUUIDs(byte[] prefix, @Nullable List<UUID> uuids, @Nullable int[] slots,
+                       int slot) {
+    if (uuids != null) {
+      for (UUID uuid : uuids) {
+        put(prefix);
+        if (slots != null) {
+          slots[slot++] = length;
+        }
+        putUUID(uuid);
+      }
+    }
+    return slot;
+  }
+
+  private void putUUID(UUID uuid) {
+    final long msb = uuid.getMostSignificantBits();
+    final long lsb = uuid.getLeastSignificantBits();
+    putHex(msb >>> 32, 8);
+    put('-');
+    putHex(msb >>> 16, 4);
+    put('-');
+    putHex(msb, 4);
+    put('-');
+    putHex(lsb >>> 48, 4);
+    put('-');
+    putHex(lsb, 12);
+  }
+
+  private void putHex(long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      line[length++] = HEX_DIGITS[(int) (value >>> shift) & 0xf];
+    }
+  }
+
+  private void putLong(long value) {
+    if (value < 0) {
+      put(Long.toString(value).getBytes());
+      return;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      line[length++] = (byte) ('0' + (value / divisor) % 10);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.Span;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of generated spans. Every instance is used by a single sender thread, unless it's
+ * stated otherwise by the implementation.
+ */
+public interface SpanSink extends Closeable {
+
+  /**
+   * Supported sink types.
+   */
+  enum Type {
+    /**
+     * Spans are sent via Wavefront SDK sender.
+     */
+    SDK,
+    /**
+     * Spans are rendered in the Wavefront line format and written to the proxy tracing port.
+     */
+    RAW
+  }
+
+  /**
+   * Sends (or buffers for sending) the span.
+   *
+   * @param span Span to be sent.
+   * @throws IOException if the span can't be sent.
+   */
+  void send(Span span) throws IOException;
+
+  /**
+   * Sends all buffered spans.
+   *
+   * @throws IOException if buffered spans can't be sent.
+   */
+  void flush() throws IOException;
+
+  /**
+   * Called by the sender when there is nothing ready for sending, so buffered spans don't wait
+   * for the next span.
+   *
+   * @throws IOException if buffered spans can't be sent.
+   */
+  default void onIdle() throws IOException {
+  }
+
+  /**
+   * @return Number of spans accepted by {@link #send(Span)}, but lost by the sink later.
+   */
+  default long getLostSpans() {
+    return 0;
+  }
+}
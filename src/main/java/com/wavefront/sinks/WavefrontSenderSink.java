@@ -0,0 +1,45 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.Span;
+import com.wavefront.sdk.common.WavefrontSender;
+
+import java.io.IOException;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Sink sending spans via Wavefront SDK sender. The SDK buffers and flushes spans by itself.
+ */
+@ThreadSafe
+public class WavefrontSenderSink implements SpanSink {
+  private final WavefrontSender wavefrontSender;
+
+  public WavefrontSenderSink(WavefrontSender wavefrontSender) {
+    this.wavefrontSender = wavefrontSender;
+  }
+
+  @Override
+  public void send(Span span) throws IOException {
+    wavefrontSender.sendSpan(
+        span.getName(),
+        span.getStartMillis(),
+        span.getDuration(),
+        span.getSource(),
+        span.getTraceUUID(),
+        span.getSpanUUID(),
+        span.getParents(),
+        null,
+        span.getTags(),
+        null);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    wavefrontSender.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    wavefrontSender.close();
+  }
+}
@@ -0,0 +1,228 @@
+package com.wavefront.topology;
+
+import com.wavefront.datastructures.TagVariation;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import static com.wavefront.helpers.Defaults.HUNDRED_PERCENT;
+
+/**
+ * Trace topology compiled for generation. Services are numbered, children of the services are
+ * kept in compressed sparse rows and parents of the services in bit sets, so random selections
+ * are array reads and parent checks are bit tests instead of walking and searching sets. Arrays
+ * keep the iteration order of the topology sets, so a random draw selects the same service as
+ * selecting from the set does.
+ *
+ * @author Davit Baghdasaryan (dbagdasarya@vmware.com)
+ */
+public final class CompiledTopology {
+  /**
+   * Id returned when there is no service to select.
+   */
+  public static final int NO_SERVICE = -1;
+  private final String[] services;
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final int[] roots;
+  /**
+   * Children of service n are children[childOffsets[n]..childOffsets[n + 1]).
+   */
+  private final int[] childOffsets;
+  private final int[] children;
+  private final BitSet[] parents;
+  private final int[] spansNumbers;
+  private final ServiceTag[][] tags;
+
+  CompiledTopology(@Nonnull Set<String> rootLevelServices,
+                   @Nonnull Map<String, ServiceInfo> serviceInfos) {
+    final int count = serviceInfos.size();
+    this.services = new String[count];
+    this.spansNumbers = new int[count];
+    this.tags = new ServiceTag[count][];
+    int id = 0;
+    for (Map.Entry<String, ServiceInfo> entry : serviceInfos.entrySet()) {
+      services[id] = entry.getKey();
+      ids.put(entry.getKey(), id);
+      spansNumbers[id] = entry.getValue().spansNumber;
+      final List<ServiceTag> serviceTags = new ArrayList<>();
+      entry.getValue().tags.forEach((name, tag) -> serviceTags.add(new ServiceTag(tag)));
+      tags[id] = serviceTags.toArray(new ServiceTag[0]);
+      id++;
+    }
+
+    this.roots = toIds(rootLevelServices);
+    this.childOffsets = new int[count + 1];
+    final List<int[]> serviceChildren = new ArrayList<>(count);
+    for (int n = 0; n < count; n++) {
+      final int[] serviceIds = toIds(serviceInfos.get(services[n]).children);
+      serviceChildren.add(serviceIds);
+      childOffsets[n + 1] = childOffsets[n] + serviceIds.length;
+    }
+    this.children = new int[childOffsets[count]];
+    for (int n = 0; n < count; n++) {
+      System.arraycopy(serviceChildren.get(n), 0, children, childOffsets[n],
+          serviceChildren.get(n).length);
+    }
+
+    this.parents = new BitSet[count];
+    for (int n = 0; n < count; n++) {
+      parents[n] = new BitSet();
+      for (int parent : toIds(serviceInfos.get(services[n]).parents)) {
+        parents[n].set(parent);
+      }
+    }
+  }
+
+  /**
+   * @return Number of services, ids of the services are in range [0..count).
+   */
+  public int getServicesCount() {
+    return services.length;
+  }
+
+  /**
+   * @param service Service name.
+   * @return Id of the service or {@link #NO_SERVICE} if the topology doesn't have the service.
+   */
+  public int getServiceId(@Nonnull String service) {
+    final Integer id = ids.get(service);
+    return id == null ? NO_SERVICE : id;
+  }
+
+  /**
+   * @param service Service id.
+   * @return Service name.
+   */
+  public String getServiceName(int service) {
+    return services[service];
+  }
+
+  /**
+   * Randomly selects service eligible for using as service of the root span.
+   *
+   * @param random Random of the calling generator.
+   * @return Service id or {@link #NO_SERVICE} if there are no root level services.
+   */
+  public int getRandomRootService(@Nonnull Random random) {
+    return roots.length == 0 ? NO_SERVICE : roots[random.nextInt(roots.length)];
+  }
+
+  /**
+   * Randomly selects service from the children of previous level services. A few previous level
+   * services are tried randomly, and if all of them are leaves, the first one having children is
+   * taken.
+   *
+   * @param previousLevelServices Ids of the distinct previous level services.
+   * @param count                 Number of the previous level services in the array.
+   * @param random                Random of the calling generator.
+   * @return Service id or {@link #NO_SERVICE} if none of the previous level services have
+   * children.
+   */
+  public int getNextLevelService(@Nonnull int[] previousLevelServices, int count,
+                                 @Nonnull Random random) {
+    if (count == 0) {
+      return NO_SERVICE;
+    }
+
+    // Try to get random child service.
+    int service = NO_SERVICE;
+    for (int attempt = 0; attempt <= count && service == NO_SERVICE; attempt++) {
+      service = previousLevelServices[random.nextInt(count)];
+      if (childOffsets[service] == childOffsets[service + 1]) {
+        service = NO_SERVICE;
+      }
+    }
+
+    // If random getting failed take the first having children.
+    for (int n = 0; n < count && service == NO_SERVICE; n++) {
+      if (childOffsets[previousLevelServices[n]] != childOffsets[previousLevelServices[n] + 1]) {
+        service = previousLevelServices[n];
+      }
+    }
+
+    if (service == NO_SERVICE) {
+      return NO_SERVICE;
+    }
+    final int from = childOffsets[service];
+    return children[from + random.nextInt(childOffsets[service + 1] - from)];
+  }
+
+  /**
+   * Tests that the given some service is parent of another.
+   *
+   * @param child  Child service id.
+   * @param parent Parent service id.
+   * @return True if given parent is really parent of a child service.
+   */
+  public boolean isParent(int child, int parent) {
+    return parents[child].get(parent);
+  }
+
+  /**
+   * Generates span name for the given service in format "serviceName_00n", n is span number set in
+   * topology.json for the given service.
+   *
+   * @param service Service id.
+   * @param random  Random of the calling generator.
+   * @return Generated spanName.
+   */
+  public String getSpanName(int service, @Nonnull Random random) {
+    return String.format("%s_%03d", services[service], random.nextInt(spansNumbers[service]) + 1);
+  }
+
+  /**
+   * An instance of tags and their values set for the given service.
+   *
+   * @param service Service id.
+   * @param random  Random of the calling generator.
+   * @return Tags and their values, there is room for the debug and error tags.
+   */
+  public List<Pair<String, String>> getServiceTags(int service, @Nonnull Random random) {
+    final ServiceTag[] serviceTags = tags[service];
+    final List<Pair<String, String>> result = new ArrayList<>(serviceTags.length + 2);
+    for (ServiceTag tag : serviceTags) {
+      if (random.nextDouble() <= tag.probability) {
+        result.add(tag.pick(random));
+      }
+    }
+    return result;
+  }
+
+  private int[] toIds(Set<String> names) {
+    final int[] result = new int[names.size()];
+    int n = 0;
+    for (String name : names) {
+      result[n++] = ids.get(name);
+    }
+    return result;
+  }
+
+  /**
+   * Tag of a service with the values in the iteration order of the values set, every value is a
+   * ready tag rendered for the span lines.
+   */
+  private static final class ServiceTag {
+    private final double probability;
+    private final List<Pair<String, String>> values = new ArrayList<>();
+    private final Pair<String, String> noValue;
+
+    ServiceTag(TagVariation tag) {
+      this.probability = tag.percentage / HUNDRED_PERCENT;
+      tag.tagValues.forEach(value -> values.add(SpanLineRenderer.tagOf(tag.tagName, value)));
+      this.noValue = new Pair<>(tag.tagName, null);
+    }
+
+    Pair<String, String> pick(Random random) {
+      return values.isEmpty() ? noValue : values.get(random.nextInt(values.size()));
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.wavefront.topology;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.wavefront.datastructures.TagVariation;
@@ -9,8 +10,6 @@ import com.wavefront.sdk.common.Pair;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -19,8 +18,7 @@ import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import static com.wavefront.helpers.Defaults.HUNDRED_PERCENT;
-import static com.wavefront.helpers.WftlUtils.getRandomFromSet;
+import static com.wavefront.topology.CompiledTopology.NO_SERVICE;
 
 /**
  * Data structure representing trace topology loaded from the topology.json file.
@@ -31,7 +29,6 @@ import static com.wavefront.helpers.WftlUtils.getRandomFromSet;
 @JsonDeserialize(converter = TraceTopologySanitizer.class)
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 public class TraceTopology {
-  private static final Random RANDOM = new Random(System.currentTimeMillis());
   /**
    * Trace types definitions read from the topology.json.
    */
@@ -41,18 +38,26 @@ public class TraceTopology {
   List<ServiceConnection> serviceConnections;
   Set<String> rootLevelServices;
   Map<String, ServiceInfo> serviceInfos = new HashMap<>();
+  @JsonIgnore
+  CompiledTopology compiledTopology;
+
+  /**
+   * @return Topology compiled for generation, the methods below are its name-based shortcuts.
+   */
+  public CompiledTopology getCompiledTopology() {
+    return compiledTopology;
+  }
 
   /**
    * Randomly selects service eligible for using as service of the root span.
    *
+   * @param random Random of the calling generator.
    * @return Service name.
    */
   @Nullable
-  public String getRandomRootService() {
-    if (rootLevelServices == null || rootLevelServices.isEmpty()) {
-      return null;
-    }
-    return getRandomFromSet(rootLevelServices);
+  public String getRandomRootService(@Nonnull Random random) {
+    final int service = compiledTopology.getRandomRootService(random);
+    return service == NO_SERVICE ? null : compiledTopology.getServiceName(service);
   }
 
   /**
@@ -60,16 +65,13 @@ public class TraceTopology {
    * topology.json for the given service. Default value of the span number is 1.
    *
    * @param service Service name.
+   * @param random  Random of the calling generator.
    * @return Generated spanName.
    */
   @Nullable
-  public String getSpanName(@Nonnull String service) {
-    ServiceInfo serviceInfo = serviceInfos.get(service);
-    if (serviceInfo == null) {
-      return null;
-    }
-
-    return String.format("%s_%03d", service, RANDOM.nextInt(serviceInfo.spansNumber) + 1);
+  public String getSpanName(@Nonnull String service, @Nonnull Random random) {
+    final int id = compiledTopology.getServiceId(service);
+    return id == NO_SERVICE ? null : compiledTopology.getSpanName(id, random);
   }
 
   /**
@@ -77,42 +79,25 @@ public class TraceTopology {
    * serviceConnection of topology.json.
    *
    * @param previousLevelServices List of previous level services.
+   * @param random                Random of the calling generator.
    * @return Randomly selected service name.
    */
   @Nullable
-  public String getNextLevelService(Set<String> previousLevelServices) {
+  public String getNextLevelService(Set<String> previousLevelServices, @Nonnull Random random) {
     if (previousLevelServices == null || previousLevelServices.isEmpty()) {
       return null;
     }
 
-    ServiceInfo serviceInfo = null;
-
-    // Try to get random child service.
-    int maxAttempts = previousLevelServices.size();
-    while (serviceInfo == null && maxAttempts >= 0) {
-      serviceInfo = serviceInfos.get(getRandomFromSet(previousLevelServices));
-      if (serviceInfo.children.isEmpty()) {
-        serviceInfo = null;
-      }
-      maxAttempts--;
-    }
-
-    // If random getting failed iterate whole set and get the first.
-    if (serviceInfo == null) {
-      final Iterator<String> it = previousLevelServices.iterator();
-      while (it.hasNext() && serviceInfo == null) {
-        serviceInfo = serviceInfos.get(it.next());
-        if (serviceInfo.children.isEmpty()) {
-          serviceInfo = null;
-        }
+    final int[] ids = new int[previousLevelServices.size()];
+    int count = 0;
+    for (String service : previousLevelServices) {
+      final int id = compiledTopology.getServiceId(service);
+      if (id != NO_SERVICE) {
+        ids[count++] = id;
       }
     }
-
-    if (serviceInfo == null) {
-      return null;
-    } else {
-      return getRandomFromSet(serviceInfo.children);
-    }
+    final int service = compiledTopology.getNextLevelService(ids, count, random);
+    return service == NO_SERVICE ? null : compiledTopology.getServiceName(service);
   }
 
   /**
@@ -120,23 +105,14 @@ public class TraceTopology {
    * definition).
    *
    * @param service Service name.
+   * @param random  Random of the calling generator.
    * @return Set of tags and their values.
    */
   @Nullable
-  public List<Pair<String, String>> getServiceTags(@Nonnull String service) {
-    List<Pair<String, String>> tags = new LinkedList<>();
-    ServiceInfo serviceInfo = serviceInfos.get(service);
-    if (serviceInfo == null) {
-      return null;
-    }
-
-    serviceInfo.tags.forEach((k, v) -> {
-      if (RANDOM.nextDouble() <= (v.percentage / HUNDRED_PERCENT)) {
-        tags.add(new Pair<>(k, v.getRandomValue()));
-      }
-    });
-
-    return tags;
+  public List<Pair<String, String>> getServiceTags(@Nonnull String service,
+                                                   @Nonnull Random random) {
+    final int id = compiledTopology.getServiceId(service);
+    return id == NO_SERVICE ? null : compiledTopology.getServiceTags(id, random);
   }
 
   /**
@@ -147,11 +123,10 @@ public class TraceTopology {
    * @return True if given parent is really parent of a child service.
    */
   public boolean isParent(String child, String parent) {
-    final ServiceInfo serviceInfo = serviceInfos.get(child);
-    if (serviceInfo != null) {
-      return serviceInfo.parents.contains(parent);
-    }
-    return false;
+    final int childId = compiledTopology.getServiceId(child);
+    final int parentId = compiledTopology.getServiceId(parent);
+    return childId != NO_SERVICE && parentId != NO_SERVICE &&
+        compiledTopology.isParent(childId, parentId);
   }
 
   /**
@@ -36,6 +36,7 @@ public class TraceTopologySanitizer extends StdConverter<TraceTopology, TraceTop
     }
 
     serviceTagsSanitizer(value);
+    value.compiledTopology = new CompiledTopology(value.rootLevelServices, value.serviceInfos);
 
     return value;
   }
@@ -38,6 +38,9 @@ public class AbstractTraceLoaderTest {
     expect(applicationConfig.getSpanOutputFile()).andReturn("").anyTimes();
     expect(applicationConfig.getWfTracesFile()).andReturn("").anyTimes();
     expect(applicationConfig.getReportStat()).andReturn(false).anyTimes();
+    expect(applicationConfig.getSpillDirectory()).andReturn(null).anyTimes();
+    expect(applicationConfig.getLazyTraces()).andReturn(false).anyTimes();
+    expect(applicationConfig.getFusedSending()).andReturn(false).anyTimes();
   }
 
 
@@ -0,0 +1,244 @@
+package com.wavefront;
+
+import com.wavefront.datastructures.RingBuffer;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.Trace;
+import com.wavefront.datastructures.TraceRecipe;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataQueueTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Trace createTrace(int spansCount) {
+    final UUID traceUUID = UUID.randomUUID();
+    final Trace trace = new Trace(1, traceUUID);
+    for (int n = 0; n < spansCount; n++) {
+      trace.add(0, new Span("span_" + n, 0, 1, "localhost", traceUUID, UUID.randomUUID(), null,
+          null, null, null));
+    }
+    return trace;
+  }
+
+  @Test
+  public void testSpansOfTraceStayInOneShard() {
+    final DataQueue dataQueue = new DataQueue(false, 4096, RingBuffer.WaitStrategy.BLOCKING, 4);
+    assertEquals(4, dataQueue.getShardsCount());
+    for (int n = 0; n < 100; n++) {
+      dataQueue.addTrace(createTrace(5));
+    }
+    assertEquals(500, dataQueue.size());
+
+    int total = 0;
+    for (int shard = 0; shard < dataQueue.getShardsCount(); shard++) {
+      List<Span> spans = new ArrayList<>();
+      total += dataQueue.drainTo(shard, spans, Integer.MAX_VALUE);
+      for (Span span : spans) {
+        assertEquals(shard, dataQueue.getShard(span.getTraceUUID()));
+      }
+    }
+    assertEquals(500, total);
+    assertTrue(dataQueue.isEmpty());
+  }
+
+  @Test
+  public void testUnboundedQueueHasSingleShard() {
+    final DataQueue dataQueue = new DataQueue(true);
+    assertEquals(1, dataQueue.getShardsCount());
+    dataQueue.addTrace(createTrace(3));
+    assertEquals(3, dataQueue.size());
+    assertEquals(1, dataQueue.getEnteredTraceCount());
+    List<Span> spans = new ArrayList<>();
+    assertEquals(2, dataQueue.drainTo(0, spans, 2));
+    assertEquals(1, dataQueue.size());
+  }
+
+  @Test(timeout = 10_000)
+  public void testGeneratorWaitsWithinTimeHorizon() throws Exception {
+    final DataQueue dataQueue = new DataQueue(false, 4096, RingBuffer.WaitStrategy.BLOCKING, 1);
+    final long second = TimeUnit.SECONDS.toNanos(1);
+    dataQueue.setHorizon(second, 0);
+    // Nothing is in flight, so nothing is waited for.
+    dataQueue.awaitSenders(System.nanoTime() + 100 * second);
+
+    final long start = System.nanoTime() + 100 * second;
+    final Trace trace = createTrace(3);
+    final List<Span> spans = trace.getSpans().get(0);
+    for (int n = 0; n < spans.size(); n++) {
+      spans.get(n).setIntendedNanos(start + n * second);
+    }
+    dataQueue.addTrace(trace);
+    final CompletableFuture<Void> generator =
+        CompletableFuture.runAsync(() -> dataQueue.awaitSenders(start + 3 * second));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+    dataQueue.onReleased(spans.get(0));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+    // The senders' clock is within a second of the generator now.
+    dataQueue.onReleased(spans.get(2));
+    generator.get();
+    // The clock doesn't go back.
+    dataQueue.onReleased(spans.get(1));
+    dataQueue.addTrace(createTrace(1));
+    dataQueue.awaitSenders(start + 3 * second);
+  }
+
+  @Test(timeout = 10_000)
+  public void testGeneratorWaitsWithinSpansHorizon() throws Exception {
+    final DataQueue dataQueue = new DataQueue(false, 4096, RingBuffer.WaitStrategy.BLOCKING, 1);
+    dataQueue.setHorizon(0, 2);
+    final Trace trace = createTrace(3);
+    dataQueue.addTrace(trace);
+    final CompletableFuture<Void> generator =
+        CompletableFuture.runAsync(() -> dataQueue.awaitSenders(0));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+    dataQueue.onReleased(trace.getSpans().get(0).get(0));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+    dataQueue.onReleased(trace.getSpans().get(0).get(1));
+    generator.get();
+  }
+
+  @Test(timeout = 10_000)
+  public void testSpansBeyondCapacityAreSpilled() {
+    final DataQueue dataQueue = new DataQueue(false, 8, RingBuffer.WaitStrategy.BLOCKING, 2);
+    dataQueue.setSpill(folder.getRoot(), 1024);
+    final List<Trace> traces = new ArrayList<>();
+    for (int n = 0; n < 20; n++) {
+      traces.add(createTrace(5));
+      dataQueue.addTrace(traces.get(n));
+    }
+    assertEquals(100, dataQueue.size());
+    assertTrue(dataQueue.getSpilledSpanCount() >= 100 - 8);
+
+    // Spans of every shard are taken in the order they were added.
+    for (int shard = 0; shard < dataQueue.getShardsCount(); shard++) {
+      final List<Span> expected = new ArrayList<>();
+      for (Trace trace : traces) {
+        if (dataQueue.getShard(trace.getTraceUUID()) == shard) {
+          expected.addAll(trace.getSpans().get(0));
+        }
+      }
+      final List<Span> spans = new ArrayList<>();
+      while (dataQueue.drainTo(shard, spans, 3) > 0) {
+      }
+      assertEquals(expected.size(), spans.size());
+      for (int n = 0; n < spans.size(); n++) {
+        assertEquals(expected.get(n).getSpanUUID(), spans.get(n).getSpanUUID());
+      }
+    }
+    assertTrue(dataQueue.isEmpty());
+    assertEquals(0, dataQueue.getSpilledSpanCount());
+  }
+
+  @Test(timeout = 10_000)
+  public void testOffHeapQueueWaitsWhenFull() throws Exception {
+    final DataQueue dataQueue =
+        new DataQueue(false, 8, RingBuffer.WaitStrategy.BLOCKING, 2, true);
+    assertEquals(2, dataQueue.getShardsCount());
+    final Trace first = createTrace(4);
+    dataQueue.addTrace(first);
+    assertEquals(4, dataQueue.size());
+    assertTrue(dataQueue.getOffHeapBytes() > 0);
+
+    // The shard of the trace is full, so the next trace of the shard waits for the senders.
+    final int shard = dataQueue.getShard(first.getTraceUUID());
+    Trace second = createTrace(2);
+    while (dataQueue.getShard(second.getTraceUUID()) != shard) {
+      second = createTrace(2);
+    }
+    final Trace waiting = second;
+    final CompletableFuture<Void> generator =
+        CompletableFuture.runAsync(() -> dataQueue.addTrace(waiting));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+
+    final List<Span> spans = new ArrayList<>();
+    assertEquals(4, dataQueue.drainTo(shard, spans, 4));
+    generator.get();
+    while (dataQueue.drainTo(shard, spans, 4) > 0) {
+    }
+    assertEquals(6, spans.size());
+    for (int n = 0; n < spans.size(); n++) {
+      final Span expected = n < 4 ? first.getSpans().get(0).get(n) :
+          waiting.getSpans().get(0).get(n - 4);
+      assertEquals(expected.getSpanUUID(), spans.get(n).getSpanUUID());
+      assertEquals(expected.getName(), spans.get(n).getName());
+    }
+    assertTrue(dataQueue.isEmpty());
+    assertEquals(0, dataQueue.getOffHeapBytes());
+  }
+
+  @Test(timeout = 10_000)
+  public void testLazyTracesAreMaterializedWhenTaken() throws Exception {
+    final DataQueue dataQueue = new DataQueue(false, 2, RingBuffer.WaitStrategy.BLOCKING, 1);
+    dataQueue.setLazyTraces();
+    assertTrue(dataQueue.hasLazyTraces());
+    final AtomicInteger materialized = new AtomicInteger(0);
+    final List<Trace> traces = new ArrayList<>();
+    for (int n = 0; n < 2; n++) {
+      final Trace trace = createTrace(3);
+      traces.add(trace);
+      dataQueue.addRecipe(new TraceRecipe() {
+        @Override
+        public UUID getTraceUUID() {
+          return trace.getTraceUUID();
+        }
+
+        @Override
+        public int getSpansCount() {
+          return trace.getSpansCount();
+        }
+
+        @Override
+        public Trace materialize() {
+          materialized.incrementAndGet();
+          return trace;
+        }
+      });
+    }
+    assertEquals(6, dataQueue.size());
+    assertEquals(0, materialized.get());
+
+    // The capacity is counted in traces, so the next trace waits for the senders.
+    final Trace waiting = createTrace(1);
+    final CompletableFuture<Void> generator =
+        CompletableFuture.runAsync(() -> dataQueue.addTrace(waiting));
+    Thread.sleep(100);
+    assertFalse(generator.isDone());
+
+    final List<Span> spans = new ArrayList<>();
+    assertEquals(2, dataQueue.drainTo(0, spans, 2));
+    assertEquals(1, materialized.get());
+    assertEquals(2, dataQueue.drainTo(0, spans, 2));
+    assertEquals(2, materialized.get());
+    generator.get();
+    while (dataQueue.drainTo(0, spans, 2) > 0) {
+    }
+    assertEquals(7, spans.size());
+    traces.add(waiting);
+    int n = 0;
+    for (Trace trace : traces) {
+      for (Span span : trace.getSpans().get(0)) {
+        assertEquals(span.getSpanUUID(), spans.get(n++).getSpanUUID());
+      }
+    }
+    assertTrue(dataQueue.isEmpty());
+  }
+}
@@ -0,0 +1,145 @@
+package com.wavefront;
+
+import com.beust.jcommander.JCommander;
+import com.wavefront.config.GeneratorConfig;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.StatSpan;
+import com.wavefront.datastructures.Trace;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeededGenerationTest {
+  private static final String PATTERN_FOR_TEST = "patternForTest.json";
+  private static final String TOPOLOGY_FOR_TEST = "topologyForTest.json";
+
+  private static String getResource(String fileName) throws Exception {
+    return new File(Objects.requireNonNull(SeededGenerationTest.class.getClassLoader().
+        getResource(fileName)).toURI()).toString();
+  }
+
+  /**
+   * Generates traces of the given part and describes them without the start times, which depend
+   * on the clock.
+   */
+  private static Set<String> generate(String fileName, int workerIndex, int workers,
+                                      int threads, String... args) throws Exception {
+    final GeneratorConfig config = new GeneratorConfig();
+    final List<String> allArgs = new ArrayList<>(List.of("-f", getResource(fileName),
+        "--seed", "42", "--workerIndex", Integer.toString(workerIndex), "--workers",
+        Integer.toString(workers), "--generatorThreads", Integer.toString(threads)));
+    allArgs.addAll(List.of(args));
+    JCommander.newBuilder().addObject(config).build().parse(allArgs.toArray(new String[0]));
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    final DataQueue dataQueue = new DataQueue(true);
+    config.getGenerator(dataQueue).generateForFile();
+
+    final Set<String> traces = new HashSet<>();
+    Trace trace;
+    while ((trace = dataQueue.pollFirstTrace()) != null) {
+      if (trace.getSpans().get(0).get(0) instanceof StatSpan) {
+        continue;
+      }
+      final StringBuilder description = new StringBuilder(trace.getTraceUUID().toString());
+      for (List<Span> level : trace.getSpans()) {
+        for (Span span : level) {
+          description.append('|').append(span.getName()).append(' ').
+              append(span.getDuration()).append(' ').append(span.getSpanUUID()).append(' ').
+              append(span.getParents()).append(' ').append(span.getTags());
+        }
+      }
+      traces.add(description.toString());
+    }
+    return traces;
+  }
+
+  /**
+   * Generates spans of the given file in real time, with their tags, and the statistics spans
+   * describing all traces, but without the start times. Spans are taken while they are generated,
+   * as the senders take them.
+   */
+  private static List<String> generateSpans(String fileName, boolean lazyTraces)
+      throws Exception {
+    // The rate is raised, so the traces are generated right away.
+    final File file = File.createTempFile("seeded", ".json");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), Files.readString(Path.of(getResource(fileName))).
+        replaceFirst("\"spansRate\": \\d+", "\"spansRate\": 1000000"));
+    final GeneratorConfig config = new GeneratorConfig();
+    JCommander.newBuilder().addObject(config).build().parse("-f", file.toString(),
+        "--seed", "42");
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    final DataQueue dataQueue = new DataQueue(false);
+    if (lazyTraces) {
+      dataQueue.setLazyTraces();
+    }
+    final Thread generator = new Thread(config.getGenerator(dataQueue));
+    generator.start();
+
+    final List<String> spans = new ArrayList<>();
+    while (true) {
+      final boolean generating = generator.isAlive();
+      Span span;
+      while ((span = dataQueue.pollFirstSpan()) != null) {
+        spans.add(span.getName() + ' ' + span.getDuration() + ' ' + span.getTraceUUID() + ' ' +
+            span.getSpanUUID() + ' ' + span.getParents() + ' ' + span.getTags());
+      }
+      if (!generating) {
+        break;
+      }
+      Thread.sleep(1);
+    }
+    spans.sort(null);
+    return spans;
+  }
+
+  private static void assertPartsMatchSingleRun(String fileName, int traceCount,
+                                                String... args) throws Exception {
+    final Set<String> single = generate(fileName, 0, 1, 1, args);
+    assertEquals(traceCount, single.size());
+    assertEquals(single, generate(fileName, 0, 1, 1, args));
+
+    final Set<String> parts = new HashSet<>();
+    for (int workerIndex = 0; workerIndex < 3; workerIndex++) {
+      parts.addAll(generate(fileName, workerIndex, 3, 2, args));
+    }
+    assertEquals(single, parts);
+  }
+
+  @Test
+  public void testPatternPartsMatchSingleRun() throws Exception {
+    assertPartsMatchSingleRun(PATTERN_FOR_TEST, 6);
+  }
+
+  @Test
+  public void testTopologyPartsMatchSingleRun() throws Exception {
+    assertPartsMatchSingleRun(TOPOLOGY_FOR_TEST, 40);
+  }
+
+  @Test
+  public void testTopologyWithTemplatePoolPartsMatchSingleRun() throws Exception {
+    // Templates aren't refreshed in the seeded generation, so the interval doesn't matter.
+    assertPartsMatchSingleRun(TOPOLOGY_FOR_TEST, 40, "--templatePoolSize", "4",
+        "--templateRefreshInterval", "0.01s");
+  }
+
+  @Test(timeout = 60_000)
+  public void testLazyTracesMatchEagerGeneration() throws Exception {
+    for (String fileName : List.of(PATTERN_FOR_TEST, TOPOLOGY_FOR_TEST)) {
+      final List<String> eager = generateSpans(fileName, false);
+      assertEquals(eager, generateSpans(fileName, true));
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.wavefront;
+
+import com.wavefront.datastructures.RingBuffer;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.Trace;
+import com.wavefront.helpers.RateLimiter;
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.sinks.SpanSink;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpanSenderTest {
+
+  /**
+   * Sink failing the given number of first sends.
+   */
+  private static class FailingSink implements SpanSink {
+    private final List<Span> spans = new ArrayList<>();
+    private int failures;
+
+    FailingSink(int failures) {
+      this.failures = failures;
+    }
+
+    @Override
+    public void send(Span span) throws IOException {
+      if (failures > 0) {
+        failures--;
+        throw new IOException("Proxy is unavailable");
+      }
+      spans.add(span);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static Trace createTrace(int spansCount) {
+    final UUID traceUUID = UUID.randomUUID();
+    final Trace trace = new Trace(1, traceUUID);
+    for (int n = 0; n < spansCount; n++) {
+      trace.add(0, new Span("span_" + n, 0, 1, "localhost", traceUUID, UUID.randomUUID(), null,
+          null, null, null));
+    }
+    return trace;
+  }
+
+  private SenderStatistics send(FailingSink sink, int spansCount, int maxRetries)
+      throws InterruptedException {
+    final DataQueue dataQueue = new DataQueue(false, 1024, RingBuffer.WaitStrategy.BLOCKING, 1);
+    dataQueue.addTrace(createTrace(spansCount));
+
+    final SpanSender spanSender = new SpanSender(sink, null, new RateLimiter(100_000, 0),
+        dataQueue, 0, false, maxRetries, 16);
+    final Thread thread = new Thread(spanSender);
+    thread.start();
+    spanSender.stopSending();
+    thread.join(10_000);
+    return spanSender.getSenderStatistics();
+  }
+
+  @Test
+  public void testFailedSpansAreRetried() throws InterruptedException {
+    final FailingSink sink = new FailingSink(3);
+    final SenderStatistics statistics = send(sink, 5, 3);
+    assertEquals(5, sink.spans.size());
+    assertEquals(5, statistics.getSentSpans());
+    assertEquals(3, statistics.getRetriedSpans());
+    assertEquals(0, statistics.getFailedSpans());
+    assertEquals(5, statistics.getQueueTime().getCount());
+    assertEquals(5, statistics.getScheduleDelay().getCount());
+    assertEquals(8, statistics.getSendLatency().getCount());
+    // The first span was sent after three backoffs.
+    assertTrue(statistics.getScheduleDelay().getMax() >= TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test
+  public void testRetryBudgetIsRespected() throws InterruptedException {
+    final FailingSink sink = new FailingSink(2);
+    final SenderStatistics statistics = send(sink, 1, 1);
+    assertEquals(0, statistics.getSentSpans());
+    assertEquals(1, statistics.getRetriedSpans());
+    assertEquals(1, statistics.getFailedSpans());
+  }
+
+  @Test
+  public void testTraceIsSentByCallingThread() throws InterruptedException {
+    final FailingSink sink = new FailingSink(2);
+    final DataQueue dataQueue = new DataQueue(false, 1024, RingBuffer.WaitStrategy.BLOCKING, 1);
+    final SpanSender spanSender = new SpanSender(sink, null, new RateLimiter(100_000, 0),
+        dataQueue, 0, false, 3, 16);
+    spanSender.sendTrace(createTrace(3));
+    spanSender.sendTrace(createTrace(2));
+    // The caller waits while the sender backs off, at most the failed spans wait for retries.
+    assertTrue(sink.spans.size() >= 3);
+    assertTrue(dataQueue.isEmpty());
+
+    // Retries left are sent once generation completes.
+    final Thread thread = new Thread(spanSender);
+    spanSender.stopSending();
+    thread.start();
+    thread.join(10_000);
+    final SenderStatistics statistics = spanSender.getSenderStatistics();
+    assertEquals(5, sink.spans.size());
+    assertEquals(5, statistics.getSentSpans());
+    assertEquals(2, statistics.getRetriedSpans());
+    assertEquals(0, statistics.getQueueTime().getCount());
+  }
+}
@@ -0,0 +1,52 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.helpers.XoshiroRandom;
+import com.wavefront.ids.IdGenerator;
+import com.wavefront.ids.RandomIdGenerator;
+import com.wavefront.ids.SecureIdGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+
+/**
+ * Measures IDs per second of every ID generator type.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.IdGeneratorBenchmark
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IdGeneratorBenchmark {
+  @Param({"SECURE", "RANDOM", "RANDOM_64"})
+  private IdGenerator.Type type;
+  private IdGenerator idGenerator;
+
+  @Setup
+  public void setup() {
+    idGenerator = type == IdGenerator.Type.SECURE ? new SecureIdGenerator() :
+        new RandomIdGenerator(new XoshiroRandom(), type == IdGenerator.Type.RANDOM_64);
+  }
+
+  @Benchmark
+  public UUID nextId() {
+    return idGenerator.nextId();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(IdGeneratorBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,88 @@
+package com.wavefront.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wavefront.DataQueue;
+import com.wavefront.config.GeneratorConfig;
+import com.wavefront.generators.BasicGenerator;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.logging.Logger;
+
+/**
+ * Measures spans per second generated from the test pattern by a single generator thread, the
+ * spans counter is the result. Every operation generates a batch of traces.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.PatternGenerationBenchmark
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PatternGenerationBenchmark {
+  private static final int TRACES_PER_OPERATION = 1000;
+  private GeneratorConfig config;
+  private DataQueue dataQueue;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long spans;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      spans = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    final ObjectMapper mapper = new ObjectMapper();
+    final ObjectNode pattern;
+    try (InputStream input = getClass().getClassLoader().getResourceAsStream(
+        "patternForTest.json")) {
+      pattern = (ObjectNode) mapper.readTree(input);
+    }
+    pattern.put("totalTraceCount", TRACES_PER_OPERATION);
+    pattern.put("spansRate", 1_000_000);
+    final File file = File.createTempFile("patternForBenchmark", ".json");
+    file.deleteOnExit();
+    mapper.writeValue(file, pattern);
+    config = new GeneratorConfig();
+    JCommander.newBuilder().addObject(config).build().parse("-f", file.toString());
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    dataQueue = new DataQueue(false);
+  }
+
+  @Benchmark
+  public void generate(Counters counters) {
+    final BasicGenerator generator = config.getGenerator(dataQueue);
+    generator.generateForFile();
+    while (dataQueue.pollFirstSpan() != null) {
+      counters.spans++;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PatternGenerationBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,117 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.datastructures.RingBuffer;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.SpanDictionary;
+import com.wavefront.datastructures.SpanLineTemplate;
+import com.wavefront.datastructures.SpanRecordQueue;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares queueing span objects in a ring buffer with queueing them as binary records off the
+ * heap, with many spans in flight. Every operation queues a new span, like the ones generated
+ * from the topology, and takes the oldest one. The bytes taken by a queued span are printed in the
+ * setup, GC time and allocations are reported with -prof gc.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.QueueEncodingBenchmark
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QueueEncodingBenchmark {
+  private static final int NAMES = 64;
+  @Param({"1000000"})
+  private int inFlight;
+  @Param({"false", "true"})
+  private boolean offHeap;
+  private final Random random = new Random(42);
+  private final List<SpanLineTemplate> templates = new ArrayList<>();
+  private final List<List<Pair<String, String>>> tags = new ArrayList<>();
+  private RingBuffer<Span> ring;
+  private SpanRecordQueue records;
+
+  @Setup
+  public void setup() throws Exception {
+    for (int n = 0; n < NAMES; n++) {
+      tags.add(List.of(SpanLineRenderer.tagOf("application", "shop"),
+          SpanLineRenderer.tagOf("service", "service" + n % 8),
+          SpanLineRenderer.tagOf("cluster", "us-west"),
+          SpanLineRenderer.tagOf("shard", "shard" + n % 4),
+          SpanLineRenderer.tagOf("http.status_code", "200")));
+      final Span span = new Span("service" + n % 8 + "_" + n, 0, 0, "host-" + n % 8,
+          UUID.randomUUID(), UUID.randomUUID(), List.of(UUID.randomUUID()), null, null, null);
+      templates.add(SpanLineRenderer.templateOf(span));
+    }
+    ring = new RingBuffer<>(inFlight, RingBuffer.WaitStrategy.BLOCKING);
+    records = SpanRecordQueue.offHeap(1024 * 1024, new SpanDictionary(1 << 16));
+
+    final long heapBefore = usedHeap();
+    for (int n = 0; n < inFlight; n++) {
+      add(createSpan());
+    }
+    final long heap = usedHeap() - heapBefore;
+    System.out.printf("%nQueued span takes %.1f bytes on the heap and %.1f bytes off the heap%n",
+        (double) heap / inFlight, (double) records.getBytes() / inFlight);
+  }
+
+  @Benchmark
+  public Span queue() throws Exception {
+    add(createSpan());
+    return offHeap ? records.poll() : ring.poll();
+  }
+
+  private void add(Span span) throws Exception {
+    if (offHeap) {
+      records.add(span);
+    } else {
+      ring.put(span);
+    }
+  }
+
+  private Span createSpan() {
+    final int name = random.nextInt(NAMES);
+    final SpanLineTemplate template = templates.get(name);
+    final List<UUID> parents = new ArrayList<>(1);
+    parents.add(new UUID(random.nextLong(), random.nextLong()));
+    final Span span = new Span("service" + name % 8 + "_" + name, 1600000000000L + name,
+        random.nextInt(1000), "host-" + name % 8, new UUID(random.nextLong(), random.nextLong()),
+        new UUID(random.nextLong(), random.nextLong()), parents, null, tags.get(name), null);
+    span.setLineTemplate(template);
+    span.setIntendedNanos(System.nanoTime());
+    span.setQueuedNanos(span.getIntendedNanos());
+    return span;
+  }
+
+  private static long usedHeap() {
+    for (int n = 0; n < 3; n++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(QueueEncodingBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,74 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.helpers.XoshiroRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares drawing random values by several generator threads from a shared {@link Random}, as
+ * generators did before, with a random per thread.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.RandomBenchmark
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class RandomBenchmark {
+  private static final int BOUND = 1000;
+
+  @State(Scope.Benchmark)
+  public static class SharedState {
+    final Random random = new Random();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    final Random random = new Random();
+    final XoshiroRandom xoshiroRandom = new XoshiroRandom();
+    final SplittableRandom splittableRandom = new SplittableRandom();
+  }
+
+  @Benchmark
+  public int sharedRandom(SharedState state) {
+    return state.random.nextInt(BOUND);
+  }
+
+  @Benchmark
+  public int randomPerThread(ThreadState state) {
+    return state.random.nextInt(BOUND);
+  }
+
+  @Benchmark
+  public int threadLocalRandom() {
+    return ThreadLocalRandom.current().nextInt(BOUND);
+  }
+
+  @Benchmark
+  public int splittableRandomPerThread(ThreadState state) {
+    return state.splittableRandom.nextInt(BOUND);
+  }
+
+  @Benchmark
+  public int xoshiroRandomPerThread(ThreadState state) {
+    return state.xoshiroRandom.nextInt(BOUND);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RandomBenchmark.class.getSimpleName()).build()).run();
+  }
+}
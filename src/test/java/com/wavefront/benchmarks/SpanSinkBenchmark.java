@@ -0,0 +1,86 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.datastructures.Span;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sinks.SpanLineRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares the per-span cost of the SDK sender path (formatting the line to a string and encoding
+ * it) with rendering the line and copying it into a direct buffer as the RAW sink does, with and
+ * without the span line template and rendered tags of generated spans.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.SpanSinkBenchmark
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SpanSinkBenchmark {
+  private Span span;
+  private Span templatedSpan;
+  private SpanLineRenderer renderer;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setup() {
+    span = new Span("getUser", 1600000000000L, 123, "host-1.example.com", UUID.randomUUID(),
+        UUID.randomUUID(), List.of(UUID.randomUUID()), null,
+        List.of(new Pair<>("application", "shop"), new Pair<>("service", "users"),
+            new Pair<>("http.status_code", "200")), null);
+    templatedSpan = new Span(span.getName(), span.getStartMillis(), span.getDuration(),
+        span.getSource(), span.getTraceUUID(), span.getSpanUUID(), span.getParents(), null,
+        List.of(SpanLineRenderer.tagOf("application", "shop"),
+            SpanLineRenderer.tagOf("service", "users"),
+            SpanLineRenderer.tagOf("http.status_code", "200")), null);
+    templatedSpan.setLineTemplate(SpanLineRenderer.templateOf(templatedSpan));
+    renderer = new SpanLineRenderer(64 * 1024);
+    buffer = ByteBuffer.allocateDirect(64 * 1024);
+  }
+
+  @Benchmark
+  public byte[] sdkFormatting() {
+    return Utils.tracingSpanToLineData(span.getName(), span.getStartMillis(), span.getDuration(),
+        span.getSource(), span.getTraceUUID(), span.getSpanUUID(), span.getParents(), null,
+        span.getTags(), null, span.getSource()).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public ByteBuffer rawRendering() {
+    if (buffer.remaining() < renderer.render(span)) {
+      buffer.clear();
+    }
+    renderer.copyTo(buffer);
+    return buffer;
+  }
+
+  @Benchmark
+  public ByteBuffer templateRendering() {
+    if (buffer.remaining() < renderer.render(templatedSpan)) {
+      buffer.clear();
+    }
+    renderer.copyTo(buffer);
+    return buffer;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SpanSinkBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,149 @@
+package com.wavefront.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wavefront.DataQueue;
+import com.wavefront.config.GeneratorConfig;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Measures spans per second generated from the test topology by a single generator thread, with
+ * a single trace type of the given number of spans. Synthetic services, if any, are added below
+ * the root services, each of them having a few other synthetic children. The spans counter is the
+ * result. Every operation generates a batch of traces, including the trace templates. Template
+ * pool parameters can be changed by -p, e.g. -p templatePoolSize=16 -p
+ * templateRefreshInterval=0.001s.
+ * <p>
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wavefront.benchmarks.TopologyGenerationBenchmark
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TopologyGenerationBenchmark {
+  private static final int SPANS_PER_OPERATION = 100_000;
+  @Param({"10", "1000", "10000"})
+  private int spansCount;
+  @Param({"0", "2000"})
+  private int syntheticServices;
+  @Param({"1"})
+  private int templatePoolSize;
+  @Param({"0s"})
+  private String templateRefreshInterval;
+  private GeneratorConfig config;
+  private DataQueue dataQueue;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long spans;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      spans = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    final ObjectMapper mapper = new ObjectMapper();
+    final ObjectNode topology;
+    try (InputStream input = getClass().getClassLoader().getResourceAsStream(
+        "topologyForTest.json")) {
+      topology = (ObjectNode) mapper.readTree(input);
+    }
+    topology.put("totalTraceCount", Math.max(10, SPANS_PER_OPERATION / spansCount));
+    topology.put("spansRate", 1_000_000);
+    topology.put("templatePoolSize", templatePoolSize);
+    topology.put("templateRefreshInterval", templateRefreshInterval);
+    // A single trace type with the error conditions of the first one. Durations are long
+    // enough for the spans of the deepest level.
+    final ArrayNode traceTypes = (ArrayNode) topology.path("traceTopology").path("traceTypes");
+    final ObjectNode traceType = (ObjectNode) traceTypes.get(0);
+    traceType.put("tracePercentage", 100);
+    traceType.put("spansCount", spansCount);
+    final ObjectNode duration = (ObjectNode) traceType.path("traceDurations").get(0);
+    duration.put("startValue", 100_000_000);
+    duration.put("endValue", 200_000_000);
+    duration.put("percentage", 100);
+    ((ArrayNode) traceType.path("traceDurations")).removeAll().add(duration);
+    traceTypes.removeAll().add(traceType);
+    // Leaf services get children, so the trace can be as deep as needed.
+    final ArrayNode connections =
+        (ArrayNode) topology.path("traceTopology").path("serviceConnections");
+    final Set<String> services = new LinkedHashSet<>();
+    final Set<String> parents = new LinkedHashSet<>();
+    final Set<String> roots = new LinkedHashSet<>();
+    for (JsonNode connection : connections) {
+      connection.path("services").forEach(service -> parents.add(service.asText()));
+      connection.path("children").forEach(service -> services.add(service.asText()));
+      if (connection.path("root").asBoolean()) {
+        connection.path("services").forEach(service -> roots.add(service.asText()));
+      }
+    }
+    services.removeAll(parents);
+    parents.removeAll(roots);
+    final ObjectNode leaves = connections.addObject();
+    services.forEach(leaves.putArray("services")::add);
+    parents.forEach(leaves.putArray("children")::add);
+    if (syntheticServices > 0) {
+      final ObjectNode rootsConnection = connections.addObject();
+      roots.forEach(rootsConnection.putArray("services")::add);
+      final ArrayNode syntheticChildren = rootsConnection.putArray("children");
+      for (int n = 0; n < syntheticServices; n++) {
+        syntheticChildren.add("synthetic" + n);
+        final ObjectNode connection = connections.addObject();
+        connection.putArray("services").add("synthetic" + n);
+        final ArrayNode children = connection.putArray("children");
+        for (int child = 1; child <= 8; child++) {
+          children.add("synthetic" + (n * 31 + child) % syntheticServices);
+        }
+      }
+    }
+    final File file = File.createTempFile("topologyForBenchmark", ".json");
+    file.deleteOnExit();
+    mapper.writeValue(file, topology);
+    config = new GeneratorConfig();
+    JCommander.newBuilder().addObject(config).build().parse("-f", file.toString());
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    dataQueue = new DataQueue(false);
+  }
+
+  @Benchmark
+  public void generate(Counters counters) {
+    config.getGenerator(dataQueue).generateForFile();
+    while (dataQueue.pollFirstSpan() != null) {
+      counters.spans++;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TopologyGenerationBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -3,10 +3,14 @@ package com.wavefront.datastructures;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class ExactDistributionIteratorTest {
 
@@ -22,7 +26,7 @@ public class ExactDistributionIteratorTest {
       distributions.add(new ValueDistribution(1, 5, percentage));
     }
     ExactDistributionIterator<ValueDistribution> exactDistributionIterator =
-        new ExactDistributionIterator<>(distributions, count);
+        new ExactDistributionIterator<>(distributions, count, new Random());
     int sum = 0;
     for (ValueDistribution valueDistribution : distributions) {
       System.out.println("portion : " + valueDistribution.portion + ", percentage : " + valueDistribution.percentage);
@@ -31,4 +35,67 @@ public class ExactDistributionIteratorTest {
     System.out.println("sumOfPortions : " + sum);
     assertEquals(sum, count);
   }
+
+  @Test
+  public void testPartsGiveExactCounts() {
+    final int count = 1000;
+    final int parts = 3;
+    final long seed = new Random().nextLong();
+    final int[] expected = new int[5];
+    final ExactDistributionIterator<ValueDistribution> iterator =
+        new ExactDistributionIterator<>(createDistributions(), count, 0, count, new Random(seed),
+            new Random());
+    ValueDistribution distribution;
+    while ((distribution = iterator.getNextDistribution()) != null) {
+      expected[distribution.startValue]++;
+    }
+
+    final int[] actual = new int[5];
+    for (int part = 0; part < parts; part++) {
+      final int from = count * part / parts;
+      final int to = count * (part + 1) / parts;
+      final ExactDistributionIterator<ValueDistribution> partIterator =
+          new ExactDistributionIterator<>(createDistributions(), count, from, to,
+              new Random(seed), new Random());
+      int partCount = 0;
+      while ((distribution = partIterator.getNextDistribution()) != null) {
+        actual[distribution.startValue]++;
+        partCount++;
+      }
+      assertEquals(to - from, partCount);
+    }
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void testSeekableAccessGivesExactCounts() {
+    final int count = 1000;
+    final ExactDistributionIterator<ValueDistribution> iterator =
+        new ExactDistributionIterator<>(createDistributions(), count, 0, count, new Random(7),
+            new Random());
+    final ExactDistributionIterator<ValueDistribution> sameIterator =
+        new ExactDistributionIterator<>(createDistributions(), count, 0, count, new Random(7),
+            new Random());
+    final int[] counts = new int[5];
+    final Set<Integer> indexesInDistributions = new HashSet<>();
+    for (int index = count - 1; index >= 0; index--) {
+      final ValueDistribution distribution = iterator.getDistribution(index);
+      assertEquals(distribution.startValue, sameIterator.getDistribution(index).startValue);
+      counts[distribution.startValue]++;
+      indexesInDistributions.add(distribution.startValue * count +
+          iterator.getIndexInDistribution(index));
+    }
+    assertArrayEquals(new int[]{100, 250, 50, 400, 200}, counts);
+    assertEquals(count, indexesInDistributions.size());
+    assertNull(iterator.getDistribution(count));
+  }
+
+  private static List<ValueDistribution> createDistributions() {
+    final List<ValueDistribution> distributions = new ArrayList<>();
+    final int[] percentages = {10, 25, 5, 40, 20};
+    for (int n = 0; n < percentages.length; n++) {
+      distributions.add(new ValueDistribution(n, n, percentages[n]));
+    }
+    return distributions;
+  }
 }
@@ -0,0 +1,85 @@
+package com.wavefront.datastructures;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wavefront.config.GeneratorConfig;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateProfileTest {
+  private static final String PROFILE = "[" +
+      "{\"type\": \"ramp\", \"duration\": \"10s\", \"from\": 1000, \"to\": 200000}," +
+      "{\"type\": \"step\", \"duration\": \"10s\", \"from\": 1000, \"to\": 5000, \"steps\": 5}," +
+      "{\"type\": \"sine\", \"duration\": \"15s\", \"from\": 100, \"to\": 300, \"period\": \"10s\"}," +
+      "{\"type\": \"spike\", \"duration\": \"25s\", \"from\": 100, \"to\": 1000, " +
+      "\"period\": \"10s\", \"spikeDuration\": \"2s\"}" +
+      "]";
+
+  private RateProfile parse() throws Exception {
+    return new RateProfile(new ObjectMapper().readValue(PROFILE,
+        new TypeReference<List<RateProfile.Segment>>() {
+        }));
+  }
+
+  @Test
+  public void testRatesFollowSegments() throws Exception {
+    final RateProfile.Cursor cursor = parse().cursor();
+    cursor.advance(5);
+    assertEquals(100_500, cursor.getRate(), 1e-6);
+    cursor.advance(17);
+    assertEquals(4_000, cursor.getRate(), 1e-6);
+    cursor.advance(25);
+    assertEquals(300, cursor.getRate(), 1e-6);
+    cursor.advance(36);
+    assertEquals(1_000, cursor.getRate(), 1e-6);
+    cursor.advance(43);
+    assertEquals(100, cursor.getRate(), 1e-6);
+    cursor.advance(61);
+    assertTrue(cursor.isComplete());
+    assertEquals(0, cursor.getRate(), 1e-6);
+  }
+
+  @Test
+  public void testStepsSumUpToTotal() throws Exception {
+    final RateProfile profile = parse();
+    assertEquals(60, profile.getDurationSeconds(), 1e-9);
+    // Ramp, steps, one and a half periods of sine, two and a half periods of spikes.
+    final double total = 1_005_000 + 30_000 + 3_000 + 7_900;
+    assertEquals(total, profile.getTotalSpans(), 1e-6);
+
+    final RateProfile.Cursor cursor = profile.cursor();
+    double spans = 0;
+    for (int millis = 7; millis <= 70_000; millis += 7) {
+      spans += cursor.advance(millis / 1000.0);
+    }
+    assertEquals(total, spans, 1e-6);
+  }
+
+  @Test
+  public void testConstantProfile() {
+    final RateProfile.Cursor cursor = RateProfile.constant(100, null).cursor();
+    assertEquals(250, cursor.advance(2.5), 1e-9);
+    assertEquals(100, cursor.getRate(), 1e-9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testProfileWithTraceCountIsRejected() throws Exception {
+    // One second of 10 spans per second can't reach the count, so the run would never end.
+    final File file = File.createTempFile("profile", ".json");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), "{\"spansRate\": 100, \"duration\": \"1m\", " +
+        "\"traceTypesCount\": 1, \"totalTraceCount\": 1000, \"rateProfile\": " +
+        "[{\"type\": \"constant\", \"duration\": \"1s\", \"from\": 10}]}");
+    final GeneratorConfig config = new GeneratorConfig();
+    JCommander.newBuilder().addObject(config).build().parse("-f", file.toString());
+    config.initPropertiesFromFile();
+  }
+}
@@ -0,0 +1,85 @@
+package com.wavefront.datastructures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+  @Test
+  public void testCapacityIsRoundedToPowerOfTwo() {
+    assertEquals(1, new RingBuffer<Integer>(1, RingBuffer.WaitStrategy.BLOCKING).getCapacity());
+    assertEquals(8, new RingBuffer<Integer>(5, RingBuffer.WaitStrategy.BLOCKING).getCapacity());
+    assertEquals(16, new RingBuffer<Integer>(16, RingBuffer.WaitStrategy.BLOCKING).getCapacity());
+  }
+
+  @Test
+  public void testOfferAndPollKeepOrder() {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<>(4, RingBuffer.WaitStrategy.SPINNING);
+    for (int n = 0; n < 4; n++) {
+      assertTrue(ringBuffer.offer(n));
+    }
+    assertFalse(ringBuffer.offer(4));
+    assertEquals(4, ringBuffer.size());
+    for (int n = 0; n < 4; n++) {
+      assertEquals(Integer.valueOf(n), ringBuffer.poll());
+    }
+    assertNull(ringBuffer.poll());
+    assertTrue(ringBuffer.isEmpty());
+  }
+
+  @Test
+  public void testDrainToRespectsMax() {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<>(8, RingBuffer.WaitStrategy.BLOCKING);
+    for (int n = 0; n < 6; n++) {
+      ringBuffer.offer(n);
+    }
+    List<Integer> buffer = new ArrayList<>();
+    assertEquals(4, ringBuffer.drainTo(buffer, 4));
+    assertEquals(List.of(0, 1, 2, 3), buffer);
+    assertEquals(2, ringBuffer.drainTo(buffer, 4));
+    assertEquals(0, ringBuffer.drainTo(buffer, 4));
+  }
+
+  @Test
+  public void testMultipleProducersSingleConsumer() throws InterruptedException {
+    final int producers = 4;
+    final int perProducer = 100_000;
+    RingBuffer<Long> ringBuffer = new RingBuffer<>(64, RingBuffer.WaitStrategy.BLOCKING);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      Thread thread = new Thread(() -> {
+        try {
+          for (long n = 1; n <= perProducer; n++) {
+            ringBuffer.put(n);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    final AtomicLong sum = new AtomicLong();
+    List<Long> buffer = new ArrayList<>();
+    long received = 0;
+    while (received < (long) producers * perProducer) {
+      buffer.clear();
+      received += ringBuffer.drainTo(buffer, 16);
+      buffer.forEach(sum::addAndGet);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(producers * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+    assertTrue(ringBuffer.isEmpty());
+  }
+}
@@ -0,0 +1,83 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sinks.SpanLineRenderer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SpanRecordQueueTest {
+  private static Span createSpan(String name, List<Pair<String, String>> tags) {
+    final Span span = new Span(name, 1600000000000L, 10, "host \u00fcn\u00efcode",
+        UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>(List.of(UUID.randomUUID())), null,
+        tags, null);
+    span.setIntendedNanos(1000L);
+    span.setQueuedNanos(2000L);
+    return span;
+  }
+
+  @Test
+  public void testDictionaryValuesAreShared() throws Exception {
+    final SpanRecordQueue queue = SpanRecordQueue.offHeap(1024, new SpanDictionary(1 << 16));
+    final Pair<String, String> application = SpanLineRenderer.tagOf("application", "shop");
+    final Span span = createSpan("checkout", List.of(application, new Pair<>("index", "1")));
+    final SpanLineTemplate template = SpanLineRenderer.templateOf(span);
+    span.setLineTemplate(template);
+    queue.add(span);
+    queue.add(span);
+
+    for (int n = 0; n < 2; n++) {
+      final Span decoded = queue.poll();
+      assertEquals(span.toString(), decoded.toString());
+      assertEquals(span.getParents(), decoded.getParents());
+      assertEquals(span.getIntendedNanos(), decoded.getIntendedNanos());
+      assertEquals(span.getQueuedNanos(), decoded.getQueuedNanos());
+      // Rendered values are taken from the dictionary, so they are rendered from their bytes.
+      assertSame(application, decoded.getTags().get(0));
+      assertSame(template, decoded.getLineTemplate());
+      assertEquals(new Pair<>("index", "1"), decoded.getTags().get(1));
+    }
+    assertNull(queue.poll());
+    assertEquals(0, queue.getBytes());
+  }
+
+  @Test
+  public void testDictionaryIsShorterThanInline() throws Exception {
+    final List<Pair<String, String>> tags = List.of(SpanLineRenderer.tagOf("application", "shop"),
+        SpanLineRenderer.tagOf("service", "checkout"),
+        SpanLineRenderer.tagOf("cluster", "us-west"));
+    final SpanRecordQueue inline = SpanRecordQueue.offHeap(1024, null);
+    final SpanRecordQueue encoded = SpanRecordQueue.offHeap(1024, new SpanDictionary(1 << 16));
+    for (int n = 0; n < 10; n++) {
+      final Span span = createSpan("checkout_001", tags);
+      inline.add(span);
+      encoded.add(span);
+    }
+    // The UUIDs and the times take the same space.
+    assertTrue(encoded.getBytes() < inline.getBytes() * 2 / 3);
+  }
+
+  @Test
+  public void testValuesBeyondDictionaryAreInline() throws Exception {
+    final SpanRecordQueue queue = SpanRecordQueue.offHeap(1024, new SpanDictionary(1));
+    final List<Span> spans = new ArrayList<>();
+    for (int n = 0; n < 10; n++) {
+      spans.add(createSpan("span_" + n,
+          List.of(SpanLineRenderer.tagOf("index", Integer.toString(n)))));
+      queue.add(spans.get(n));
+    }
+    assertEquals(10, queue.size());
+    for (Span span : spans) {
+      assertEquals(span.toString(), queue.poll().toString());
+    }
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,38 @@
+package com.wavefront.datastructures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpanScheduleTest {
+
+  private Span createSpan(long startMillis) {
+    return new Span("span", startMillis, 1, "localhost", UUID.randomUUID(), UUID.randomUUID(),
+        null, null, null, null);
+  }
+
+  @Test
+  public void testOnlyDueSpansAreReleasedInOrder() {
+    SpanSchedule schedule = new SpanSchedule();
+    schedule.schedule(createSpan(300));
+    schedule.schedule(createSpan(100));
+    schedule.schedule(createSpan(200));
+    assertEquals(100, schedule.getNextDueMillis());
+
+    List<Span> ready = new ArrayList<>();
+    assertEquals(0, schedule.releaseDue(100, ready));
+    assertEquals(2, schedule.releaseDue(201, ready));
+    assertEquals(100, ready.get(0).getStartMillis());
+    assertEquals(200, ready.get(1).getStartMillis());
+    assertEquals(300, schedule.getNextDueMillis());
+
+    assertEquals(1, schedule.releaseDue(Long.MAX_VALUE, ready));
+    assertTrue(schedule.isEmpty());
+    assertEquals(Long.MAX_VALUE, schedule.getNextDueMillis());
+  }
+}
@@ -0,0 +1,111 @@
+package com.wavefront.datastructures;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpanSpillTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static Span createSpan(int n) {
+    final Span span = new Span("span_" + n + " \u00fcn\u00efcode", 1600000000000L + n, n,
+        "host-" + n, UUID.randomUUID(), UUID.randomUUID(),
+        n % 2 == 0 ? null : List.of(UUID.randomUUID()),
+        List.of(UUID.randomUUID(), UUID.randomUUID()),
+        List.of(new Pair<>("application", "shop"), new Pair<>("index", Integer.toString(n))),
+        n % 3 == 0 ? List.of(new SpanLog(n, Map.of("event", "error"))) : null);
+    span.setIntendedNanos(n * 1000L);
+    span.setQueuedNanos(n * 2000L);
+    return span;
+  }
+
+  private static void assertSameSpan(Span expected, Span actual) {
+    assertEquals(expected.getClass(), actual.getClass());
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(expected.getKind(), actual.getKind());
+    assertEquals(expected.getParents(), actual.getParents());
+    assertEquals(expected.getIntendedNanos(), actual.getIntendedNanos());
+    assertEquals(expected.getQueuedNanos(), actual.getQueuedNanos());
+  }
+
+  @Test
+  public void testSpansAreReadInOrder() throws Exception {
+    // Small segments, so spans are spread over many of them.
+    final SpanSpill spill = new SpanSpill(folder.getRoot(), 1024);
+    final List<Span> spans = new ArrayList<>();
+    for (int n = 0; n < 100; n++) {
+      spans.add(createSpan(n));
+      spill.add(spans.get(n));
+    }
+    final StatSpan statSpan = new StatSpan("stat", 1, 1, "localhost", UUID.randomUUID(),
+        UUID.randomUUID(), null, null, List.of(new Pair<>("Total traces", "1")), null);
+    spans.add(statSpan);
+    spill.add(statSpan);
+    assertEquals(101, spill.size());
+    assertTrue(spill.getCreatedSegments() > 1);
+
+    final List<Span> read = new ArrayList<>();
+    assertEquals(50, spill.drainTo(read, 50));
+    Span span;
+    while ((span = spill.poll()) != null) {
+      read.add(span);
+    }
+    assertEquals(spans.size(), read.size());
+    for (int n = 0; n < spans.size(); n++) {
+      assertSameSpan(spans.get(n), read.get(n));
+    }
+    assertTrue(spill.isEmpty());
+    assertNull(spill.poll());
+  }
+
+  @Test
+  public void testSegmentsAreRecycled() throws Exception {
+    final SpanSpill spill = new SpanSpill(folder.getRoot(), 1024);
+    for (int n = 0; n < 10_000; n++) {
+      final Span span = createSpan(n);
+      spill.add(span);
+      spill.add(span);
+      assertSameSpan(span, spill.poll());
+      assertSameSpan(span, spill.poll());
+    }
+    final int createdSegments = spill.getCreatedSegments();
+    final List<Span> spans = new ArrayList<>();
+    for (int n = 0; n < 10_000; n++) {
+      spans.add(createSpan(n));
+      spill.add(spans.get(spans.size() - 1));
+      if (spans.size() == 10) {
+        for (Span span : spans) {
+          assertSameSpan(span, spill.poll());
+        }
+        spans.clear();
+      }
+    }
+    // Segments are taken from the consumed ones, and the segment files are deleted.
+    assertTrue(spill.getCreatedSegments() <= createdSegments + 3);
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void testSpanLargerThanSegment() throws Exception {
+    final SpanSpill spill = new SpanSpill(folder.getRoot(), 64);
+    final Span span = createSpan(1);
+    spill.add(span);
+    spill.add(span);
+    assertSameSpan(span, spill.poll());
+    assertSameSpan(span, spill.poll());
+    assertNull(spill.poll());
+  }
+}
@@ -0,0 +1,132 @@
+package com.wavefront.distributed;
+
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.Trace;
+import com.wavefront.helpers.SenderStatistics;
+import com.wavefront.helpers.Statistics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinatorTest {
+  private static final int WORKERS = 3;
+
+  private static Trace createTrace(int spans) {
+    final UUID traceUUID = UUID.randomUUID();
+    final Trace trace = new Trace(1, traceUUID);
+    for (int n = 0; n < spans; n++) {
+      trace.add(0, new Span("span", 0, 1, "localhost", traceUUID, UUID.randomUUID(), null, null,
+          null, null));
+    }
+    return trace;
+  }
+
+  /**
+   * Worker generating (index + 1) traces of (index + 1) spans and sending them.
+   */
+  private static long runWorker(int port, int index) {
+    try (WorkerClient client = new WorkerClient("localhost:" + port, index, 10_000)) {
+      client.awaitStart(WORKERS, 42L);
+      final long startMillis = System.currentTimeMillis();
+      final Statistics statistics = new Statistics();
+      final SenderStatistics senderStatistics = new SenderStatistics("Worker " + index);
+      senderStatistics.start();
+      for (int n = 0; n <= index; n++) {
+        statistics.offer("type" + n, createTrace(index + 1), 10 * (index + 1));
+        for (int span = 0; span <= index; span++) {
+          senderStatistics.onSent();
+          senderStatistics.onSendLatency(1000);
+        }
+      }
+      senderStatistics.stop();
+      client.report(statistics, senderStatistics);
+      return startMillis;
+    } catch (IOException | InterruptedException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  @Test
+  public void testWorkersStartTogetherAndReportStatistics() throws Exception {
+    try (Coordinator coordinator = new Coordinator(0, WORKERS)) {
+      final List<CompletableFuture<Long>> workers = new ArrayList<>();
+      for (int n = WORKERS - 1; n >= 0; n--) {
+        final int index = n;
+        workers.add(CompletableFuture.supplyAsync(() -> runWorker(coordinator.getPort(), index)));
+      }
+      coordinator.awaitWorkers(10_000);
+      final long startMillis = coordinator.startWorkers(200);
+      final List<CoordinatorMessage> reports = coordinator.collectReports();
+      for (CompletableFuture<Long> worker : workers) {
+        assertTrue(worker.get() >= startMillis);
+      }
+
+      final Statistics statistics = new Statistics();
+      final List<SenderStatistics> senderStatistics = new ArrayList<>();
+      for (int n = 0; n < WORKERS; n++) {
+        assertEquals(n, reports.get(n).getWorkerIndex());
+        statistics.merge(reports.get(n).getStatistics());
+        senderStatistics.add(reports.get(n).getSenderStatistics());
+      }
+      assertEquals(6, statistics.getTracesSum());
+      assertEquals(3, statistics.getTracesByType().get("type0").getCount());
+      assertEquals(1, statistics.getTracesByType().get("type0").getSpansMin());
+      assertEquals(3, statistics.getTracesByType().get("type0").getSpansMax());
+      assertEquals(30, statistics.getTracesByType().get("type0").getTraceDurationMax());
+      assertEquals(1, statistics.getTracesByType().get("type2").getCount());
+      final SenderStatistics total = SenderStatistics.total(senderStatistics);
+      assertEquals("Worker 1", senderStatistics.get(1).getWorkerName());
+      assertEquals(14, total.getSentSpans());
+      assertEquals(14, total.getSendLatency().getCount());
+    }
+  }
+
+  /**
+   * Two workers connecting with the given seeds.
+   */
+  private static void connectWorkers(Coordinator coordinator, Long firstSeed, Long secondSeed) {
+    CompletableFuture.runAsync(() -> {
+      try (WorkerClient first = new WorkerClient("localhost:" + coordinator.getPort(), 0,
+          10_000);
+           WorkerClient second = new WorkerClient("localhost:" + coordinator.getPort(), 1,
+               10_000)) {
+        final CompletableFuture<Void> firstStart = CompletableFuture.runAsync(() -> {
+          try {
+            first.awaitStart(2, firstSeed);
+          } catch (IOException | InterruptedException e) {
+            throw new CompletionException(e);
+          }
+        });
+        second.awaitStart(2, secondSeed);
+        firstStart.join();
+      } catch (IOException | InterruptedException e) {
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+  @Test(expected = IOException.class)
+  public void testWorkersWithDifferentSeedsAreRejected() throws Exception {
+    try (Coordinator coordinator = new Coordinator(0, 2)) {
+      connectWorkers(coordinator, 1L, 2L);
+      coordinator.awaitWorkers(10_000);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWorkersWithoutSeedAreRejected() throws Exception {
+    try (Coordinator coordinator = new Coordinator(0, 2)) {
+      connectWorkers(coordinator, null, null);
+      coordinator.awaitWorkers(10_000);
+    }
+  }
+}
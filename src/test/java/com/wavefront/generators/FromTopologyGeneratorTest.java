@@ -0,0 +1,103 @@
+package com.wavefront.generators;
+
+import com.beust.jcommander.JCommander;
+import com.wavefront.DataQueue;
+import com.wavefront.config.GeneratorConfig;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.StatSpan;
+import com.wavefront.datastructures.Trace;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.topology.TraceTopology;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import static com.wavefront.helpers.Defaults.ERROR_TAG;
+import static com.wavefront.helpers.Defaults.SERVICE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FromTopologyGeneratorTest {
+  private static final String TOPOLOGY_FOR_TEST = "topologyForTest.json";
+
+  private static String getService(Span span) {
+    for (Pair<String, String> tag : span.getTags()) {
+      if (tag._1.equals(SERVICE)) {
+        return tag._2;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testParentsAndErrorsFollowTopology() throws Exception {
+    final GeneratorConfig config = new GeneratorConfig();
+    final String fileName = new File(Objects.requireNonNull(FromTopologyGeneratorTest.class.
+        getClassLoader().getResource(TOPOLOGY_FOR_TEST)).toURI()).toString();
+    JCommander.newBuilder().addObject(config).build().parse("-f", fileName, "--seed", "42",
+        "--templatePoolSize", "4");
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    final TraceTopology topology = config.getTraceTopology();
+    final DataQueue dataQueue = new DataQueue(true);
+    config.getGenerator(dataQueue).generateForFile();
+
+    int traces = 0;
+    int escalatedErrors = 0;
+    Trace trace;
+    while ((trace = dataQueue.pollFirstTrace()) != null) {
+      if (trace.getSpans().get(0).get(0) instanceof StatSpan) {
+        continue;
+      }
+      traces++;
+      final List<List<Span>> levels = trace.getSpans();
+      final Map<UUID, Span> spans = new HashMap<>();
+      assertEquals(1, levels.get(0).size());
+      assertNull(levels.get(0).get(0).getParents());
+      for (int level = 0; level < levels.size(); level++) {
+        final Map<UUID, Span> upperLevel = new HashMap<>();
+        if (level > 0) {
+          levels.get(level - 1).forEach(span -> upperLevel.put(span.getSpanUUID(), span));
+        }
+        for (Span span : levels.get(level)) {
+          spans.put(span.getSpanUUID(), span);
+          if (level == 0) {
+            continue;
+          }
+          // The parent found by the template index is in the previous level, of a service that
+          // can call the service of the span, and the span is within it.
+          assertEquals(1, span.getParents().size());
+          final Span parent = upperLevel.get(span.getParents().get(0));
+          assertNotNull(parent);
+          assertTrue(topology.isParent(getService(span), getService(parent)));
+          assertTrue(span.getStartMillis() >= parent.getStartMillis());
+          assertTrue(span.getStartMillis() + span.getDuration() <=
+              parent.getStartMillis() + Math.max(1, parent.getDuration()));
+        }
+      }
+
+      // Errors of the spans escalate to all their ancestors.
+      for (Span span : spans.values()) {
+        if (span.getParents() == null || !span.getTags().contains(ERROR_TAG)) {
+          continue;
+        }
+        escalatedErrors++;
+        Span ancestor = span;
+        while (ancestor.getParents() != null) {
+          ancestor = spans.get(ancestor.getParents().get(0));
+          assertTrue(ancestor.getTags().contains(ERROR_TAG));
+        }
+      }
+    }
+    assertEquals(40, traces);
+    assertTrue(escalatedErrors > 0);
+  }
+}
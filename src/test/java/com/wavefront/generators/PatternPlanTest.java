@@ -0,0 +1,128 @@
+package com.wavefront.generators;
+
+import com.beust.jcommander.JCommander;
+import com.wavefront.DataQueue;
+import com.wavefront.config.GeneratorConfig;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.StatSpan;
+import com.wavefront.datastructures.Trace;
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.wavefront.helpers.Defaults.ERROR_TAG;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PatternPlanTest {
+  private static final String PATTERN_FOR_TEST = "patternPlanForTest.json";
+  private static final Set<String> SERVICES = Set.of("cart", "payment");
+  private static final Set<String> REGIONS = Set.of("us", "eu");
+
+  private static List<Trace> generate() throws Exception {
+    final GeneratorConfig config = new GeneratorConfig();
+    final String fileName = new File(Objects.requireNonNull(PatternPlanTest.class.
+        getClassLoader().getResource(PATTERN_FOR_TEST)).toURI()).toString();
+    JCommander.newBuilder().addObject(config).build().parse("-f", fileName, "--seed", "42");
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    final DataQueue dataQueue = new DataQueue(true);
+    config.getGenerator(dataQueue).generateForFile();
+
+    final List<Trace> traces = new ArrayList<>();
+    Trace trace;
+    while ((trace = dataQueue.pollFirstTrace()) != null) {
+      if (!(trace.getSpans().get(0).get(0) instanceof StatSpan)) {
+        traces.add(trace);
+      }
+    }
+    return traces;
+  }
+
+  @Test
+  public void testTracesFollowPattern() throws Exception {
+    final List<Trace> traces = generate();
+    final Map<String, Integer> tracesByType = new HashMap<>();
+    int checkoutErrors = 0;
+    int spans = 0;
+    int spansWithRegion = 0;
+    for (Trace trace : traces) {
+      final List<List<Span>> levels = trace.getSpans();
+      assertEquals(3, levels.size());
+      assertEquals(1, levels.get(0).size());
+      final Span root = levels.get(0).get(0);
+      final String type = root.getName();
+      tracesByType.merge(type, 1, Integer::sum);
+      assertNull(root.getParents());
+      assertTrue(trace.getSpansCount() >= 4 && trace.getSpansCount() <= 8);
+
+      // Spans below the root are spread over the levels as 1, 2, 2, 1, 2, 2, ...
+      final int children = trace.getSpansCount() - 1;
+      assertEquals((children + 2) / 3, levels.get(1).size());
+      assertEquals(children - (children + 2) / 3, levels.get(2).size());
+
+      for (int level = 0; level < levels.size(); level++) {
+        final Set<UUID> upperLevel = new HashSet<>();
+        if (level > 0) {
+          levels.get(level - 1).forEach(span -> upperLevel.add(span.getSpanUUID()));
+        }
+        for (Span span : levels.get(level)) {
+          spans++;
+          if (level > 0) {
+            assertTrue(Set.of("name_a", "name_b", "name_c").contains(span.getName()));
+            assertFalse(type.equals("Refund") && span.getName().equals("name_c"));
+            assertEquals(1, span.getParents().size());
+            assertTrue(upperLevel.contains(span.getParents().get(0)));
+          }
+          // Missing default mandatory tags are added to the pattern.
+          final Map<String, String> tags = new HashMap<>();
+          boolean error = false;
+          for (Pair<String, String> tag : span.getTags()) {
+            if (tag.equals(ERROR_TAG)) {
+              error = true;
+            } else {
+              assertNull(tags.put(tag._1, tag._2));
+            }
+          }
+          assertEquals("shop", tags.remove("application"));
+          assertTrue(SERVICES.contains(tags.remove("service")));
+          assertEquals("us-west", tags.remove("cluster"));
+          assertEquals("primary", tags.remove("shard"));
+          final String region = tags.remove("region");
+          assertTrue(region == null || REGIONS.contains(region));
+          assertTrue(tags.isEmpty());
+          if (region != null) {
+            spansWithRegion++;
+          }
+          final boolean eu = "eu".equals(region);
+
+          if (type.equals("Checkout")) {
+            // Without error conditions only the root span gets the error rate of the type.
+            if (level == 0 && error) {
+              checkoutErrors++;
+            }
+            assertTrue(level == 0 || !error);
+          } else {
+            // The condition of the span name makes every matching span erroneous.
+            assertEquals(level > 0 && span.getName().equals("name_a") && eu, error);
+          }
+        }
+      }
+    }
+    assertEquals(Map.of("Checkout", 500, "Refund", 500), tracesByType);
+    assertTrue(checkoutErrors > 60 && checkoutErrors < 140);
+    assertTrue(spansWithRegion > spans * 0.4 && spansWithRegion < spans * 0.6);
+  }
+}
@@ -0,0 +1,71 @@
+package com.wavefront.generators;
+
+import com.wavefront.datastructures.Trace;
+import com.wavefront.datastructures.TraceType;
+import com.wavefront.ids.RandomIdGenerator;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TemplatePoolTest {
+  private static final int SIZE = 4;
+
+  private final TraceType traceType = new TraceType();
+  private final AtomicInteger built = new AtomicInteger();
+  private final TemplatePool.Builder builder = (type, random, idGenerator) -> {
+    built.incrementAndGet();
+    return new TraceTemplate(new Trace(1, idGenerator.nextId()), new int[1][], new int[1][]);
+  };
+
+  private static Set<TraceTemplate> takeAll(TemplatePool pool, TraceType traceType) {
+    final Random random = new Random(1);
+    final Set<TraceTemplate> templates = new HashSet<>();
+    for (int n = 0; n < 1000; n++) {
+      templates.add(pool.get(traceType, random));
+    }
+    return templates;
+  }
+
+  @Test
+  public void testTemplatesAreTakenFromPool() {
+    final Random random = new Random(1);
+    final TemplatePool pool = new TemplatePool(List.of(traceType), SIZE, builder, random,
+        new RandomIdGenerator(random, false));
+    assertEquals(SIZE, built.get());
+    assertEquals(SIZE, takeAll(pool, traceType).size());
+    assertNull(pool.get(new TraceType(), random));
+  }
+
+  @Test
+  public void testRefreshingReplacesTemplates() throws Exception {
+    final Random random = new Random(1);
+    final TemplatePool pool = new TemplatePool(List.of(traceType), SIZE, builder, random,
+        new RandomIdGenerator(random, false));
+    final Set<TraceTemplate> initial = takeAll(pool, traceType);
+
+    pool.startRefreshing(Duration.ofMillis(1), "template-refresher-test");
+    final long deadline = System.currentTimeMillis() + 10_000;
+    while (built.get() <= 2 * SIZE && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    pool.stopRefreshing();
+
+    assertTrue(built.get() > 2 * SIZE);
+    final Set<TraceTemplate> refreshed = takeAll(pool, traceType);
+    assertEquals(SIZE, refreshed.size());
+    for (TraceTemplate template : refreshed) {
+      assertFalse(initial.contains(template));
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.wavefront.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogHistogramTest {
+
+  @Test
+  public void testBucketsCoverAllValues() {
+    long previous = -1;
+    for (int bucket = 0; bucket <= LogHistogram.bucketOf(Long.MAX_VALUE); bucket++) {
+      final long highest = LogHistogram.highestValueOf(bucket);
+      assertEquals(bucket, LogHistogram.bucketOf(previous + 1));
+      assertEquals(bucket, LogHistogram.bucketOf(highest));
+      assertTrue(highest - previous - 1 <= highest / 64);
+      previous = highest;
+    }
+    assertEquals(Long.MAX_VALUE, previous);
+  }
+
+  @Test
+  public void testPercentilesOfMergedHistograms() {
+    final LogHistogram first = new LogHistogram();
+    final LogHistogram second = new LogHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      (value % 2 == 0 ? first : second).record(value * 1000);
+    }
+    first.merge(second);
+    assertEquals(100_000, first.getCount());
+    assertEquals(100_000_000, first.getMax());
+    assertEquals(50_000_000, first.getValueAtPercentile(50), 50_000_000 / 64.0);
+    assertEquals(99_000_000, first.getValueAtPercentile(99), 99_000_000 / 64.0);
+    assertEquals(99_900_000, first.getValueAtPercentile(99.9), 99_900_000 / 64.0);
+    assertEquals(100_000_000, first.getValueAtPercentile(100));
+  }
+}
@@ -0,0 +1,53 @@
+package com.wavefront.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+  @Test
+  public void testPacingIsAccurate() {
+    RateLimiter rateLimiter = new RateLimiter(10_000, 1);
+    long start = System.nanoTime();
+    for (int n = 0; n < 2_000; n++) {
+      rateLimiter.acquire();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    // 2000 permits at 10k/s take 0.2 s (the first permit is free).
+    assertTrue("Too fast: " + seconds, seconds >= 0.19);
+    assertTrue("Too slow: " + seconds, seconds < 0.4);
+  }
+
+  @Test
+  public void testHighRate() {
+    RateLimiter rateLimiter = new RateLimiter(2_000_000, 0);
+    long start = System.nanoTime();
+    for (int n = 0; n < 400_000; n++) {
+      rateLimiter.acquire();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    assertTrue("Too fast: " + seconds, seconds >= 0.15);
+    assertTrue("Too slow: " + seconds, seconds < 1);
+  }
+
+  @Test
+  public void testBurstAfterIdle() throws InterruptedException {
+    RateLimiter rateLimiter = new RateLimiter(10, 5);
+    Thread.sleep(600);
+    for (int n = 0; n < 5; n++) {
+      assertTrue(rateLimiter.tryAcquire(1));
+    }
+    assertFalse(rateLimiter.tryAcquire(1));
+  }
+
+  @Test
+  public void testIntendedTimeIsReturned() {
+    RateLimiter rateLimiter = new RateLimiter(1_000, 1);
+    long first = rateLimiter.acquire();
+    long second = rateLimiter.acquire();
+    assertEquals(1_000_000, second - first, 1_000);
+  }
+}
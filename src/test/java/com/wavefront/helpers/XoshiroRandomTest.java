@@ -0,0 +1,42 @@
+package com.wavefront.helpers;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XoshiroRandomTest {
+
+  @Test
+  public void testSeedDefinesSequence() {
+    final Random first = new XoshiroRandom(42);
+    final Random second = new XoshiroRandom(42);
+    for (int n = 0; n < 1000; n++) {
+      assertEquals(first.nextLong(), second.nextLong());
+    }
+    final Random split = ((XoshiroRandom) first).split();
+    assertNotEquals(first.nextLong(), split.nextLong());
+  }
+
+  @Test
+  public void testValuesAreUniform() {
+    final Random random = new XoshiroRandom();
+    final int bound = 7;
+    final int[] counts = new int[bound];
+    final int draws = 70000;
+    double sum = 0;
+    for (int n = 0; n < draws; n++) {
+      counts[random.nextInt(bound)]++;
+      final double value = random.nextDouble();
+      assertTrue(value >= 0 && value < 1);
+      sum += value;
+    }
+    for (int count : counts) {
+      assertTrue(Math.abs(count - draws / bound) < draws / bound / 10);
+    }
+    assertEquals(0.5, sum / draws, 0.01);
+  }
+}
@@ -0,0 +1,41 @@
+package com.wavefront.ids;
+
+import com.wavefront.helpers.XoshiroRandom;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RandomIdGeneratorTest {
+
+  @Test
+  public void testIdsAreVersion4Uuids() {
+    final IdGenerator idGenerator = new RandomIdGenerator(new XoshiroRandom(), false);
+    final Set<UUID> ids = new HashSet<>();
+    for (int n = 0; n < 10000; n++) {
+      final UUID id = idGenerator.nextId();
+      assertEquals(4, id.version());
+      assertEquals(2, id.variant());
+      assertEquals(id, UUID.fromString(id.toString()));
+      ids.add(id);
+    }
+    assertEquals(10000, ids.size());
+  }
+
+  @Test
+  public void testSeededIdsAreRepeated() {
+    final IdGenerator first = new RandomIdGenerator(new XoshiroRandom(7), true);
+    final IdGenerator second = new RandomIdGenerator(new XoshiroRandom(7), true);
+    for (int n = 0; n < 1000; n++) {
+      final UUID id = first.nextId();
+      assertEquals(id, second.nextId());
+      assertEquals(0, id.getMostSignificantBits());
+      assertTrue(id.toString().startsWith("00000000-0000-0000-"));
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.wavefront.proxy;
+
+import com.wavefront.datastructures.Span;
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalProxyTest {
+
+  private static int getFreePort() throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      return serverSocket.getLocalPort();
+    }
+  }
+
+  private static String createSpanLine(int n) {
+    return new Span("span \"" + n + "\"", 1600000000000L + n, n, "localhost", UUID.randomUUID(),
+        UUID.randomUUID(), List.of(UUID.randomUUID()), null,
+        List.of(new Pair<>("application", "app"), new Pair<>("service", "service " + n)),
+        null).toString();
+  }
+
+  private static void awaitSpans(LocalProxy localProxy, long expected)
+      throws InterruptedException {
+    for (int n = 0; n < 500 && localProxy.getSpans() + localProxy.getInvalidSpans() < expected;
+         n++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testSpanLineValidation() {
+    final byte[] valid = createSpanLine(1).trim().getBytes(StandardCharsets.UTF_8);
+    assertTrue(SpanLineValidator.isValid(valid, 0, valid.length));
+    final byte[] noSpanId = ("span source=localhost traceId=" + UUID.randomUUID() + " 1 2").
+        getBytes(StandardCharsets.UTF_8);
+    assertFalse(SpanLineValidator.isValid(noSpanId, 0, noSpanId.length));
+    final byte[] noDuration = ("span source=localhost traceId=" + UUID.randomUUID() +
+        " spanId=" + UUID.randomUUID() + " 1").getBytes(StandardCharsets.UTF_8);
+    assertFalse(SpanLineValidator.isValid(noDuration, 0, noDuration.length));
+  }
+
+  @Test
+  public void testRawLinesAreCounted() throws Exception {
+    final int port = getFreePort();
+    final LocalProxy localProxy = new LocalProxy(List.of(port), false);
+    localProxy.start();
+    try (Socket socket = new Socket("localhost", port)) {
+      final OutputStream outputStream = socket.getOutputStream();
+      for (int n = 0; n < 100; n++) {
+        outputStream.write(createSpanLine(n).getBytes(StandardCharsets.UTF_8));
+      }
+      outputStream.write("not a span\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+    awaitSpans(localProxy, 101);
+    localProxy.close();
+    assertEquals(100, localProxy.getSpans());
+    assertEquals(1, localProxy.getInvalidSpans());
+  }
+
+  @Test
+  public void testHttpRequestsAreCounted() throws Exception {
+    final int port = getFreePort();
+    final LocalProxy localProxy = new LocalProxy(List.of(port), false);
+    localProxy.start();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+      for (int n = 0; n < 10; n++) {
+        gzip.write(createSpanLine(n).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    try (Socket socket = new Socket("localhost", port)) {
+      final OutputStream outputStream = socket.getOutputStream();
+      for (int n = 0; n < 2; n++) {
+        outputStream.write(("POST /report?f=trace HTTP/1.1\r\nHost: localhost\r\n" +
+            "Content-Encoding: gzip\r\nContent-Length: " + body.size() + "\r\n\r\n").
+            getBytes(StandardCharsets.UTF_8));
+        outputStream.write(body.toByteArray());
+      }
+      outputStream.flush();
+      final InputStream inputStream = socket.getInputStream();
+      final byte[] response = new byte[12];
+      int read = 0;
+      while (read < response.length) {
+        read += inputStream.read(response, read, response.length - read);
+      }
+      assertEquals("HTTP/1.1 202", new String(response, StandardCharsets.US_ASCII));
+    }
+    awaitSpans(localProxy, 20);
+    localProxy.close();
+    assertEquals(20, localProxy.getSpans());
+    assertEquals(0, localProxy.getInvalidSpans());
+    // Compressed bodies are counted as they are sent, not the lines in them.
+    assertEquals(2 * body.size(), localProxy.getBytes());
+  }
+}
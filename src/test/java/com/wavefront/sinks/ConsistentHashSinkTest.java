@@ -0,0 +1,125 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.HashRing;
+import com.wavefront.datastructures.Span;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashSinkTest {
+  private static final List<String> PROXIES = List.of("http://proxy1", "http://proxy2",
+      "http://proxy3");
+
+  /**
+   * Sink collecting trace IDs of sent spans, which can be switched to failing.
+   */
+  private static class CollectingSink implements SpanSink {
+    private final List<UUID> traces = new ArrayList<>();
+    private boolean failing = false;
+
+    @Override
+    public void send(Span span) throws IOException {
+      if (failing) {
+        throw new IOException("Proxy is unavailable");
+      }
+      traces.add(span.getTraceUUID());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static Span createSpan(UUID traceUUID) {
+    return new Span("span", 0, 1, "localhost", traceUUID, UUID.randomUUID(), null, null, null,
+        null);
+  }
+
+  @Test
+  public void testRingIsBalancedAndConsistent() {
+    final HashRing ring = new HashRing(PROXIES, 128);
+    final HashRing extendedRing = new HashRing(List.of("http://proxy1", "http://proxy2",
+        "http://proxy3", "http://proxy4"), 128);
+    final int[] counts = new int[PROXIES.size()];
+    int moved = 0;
+    final int tracesCount = 30000;
+    for (int n = 0; n < tracesCount; n++) {
+      final UUID traceUUID = UUID.randomUUID();
+      final int node = ring.getNode(traceUUID);
+      counts[node]++;
+      if (extendedRing.getNode(traceUUID) != node) {
+        moved++;
+        // Only the traces of the new node move.
+        assertEquals(3, extendedRing.getNode(traceUUID));
+      }
+    }
+    for (int count : counts) {
+      assertTrue(count > tracesCount / PROXIES.size() * 0.8);
+    }
+    assertTrue(moved < tracesCount / 4 * 1.2);
+  }
+
+  @Test
+  public void testTracesAreShedWithoutBreakingAffinity() throws IOException {
+    final List<CollectingSink> sinks = List.of(new CollectingSink(), new CollectingSink(),
+        new CollectingSink());
+    final ConsistentHashSink sink = new ConsistentHashSink(PROXIES, new ArrayList<>(sinks), 1024);
+    final HashRing ring = new HashRing(PROXIES, 128);
+    final List<UUID> traces = new ArrayList<>();
+    for (int n = 0; n < 300; n++) {
+      traces.add(UUID.randomUUID());
+    }
+    for (UUID traceUUID : traces) {
+      sink.send(createSpan(traceUUID));
+    }
+    for (int n = 0; n < sinks.size(); n++) {
+      for (UUID traceUUID : sinks.get(n).traces) {
+        assertEquals(n, ring.getNode(traceUUID));
+      }
+    }
+
+    // The first proxy falls behind: its traces in flight keep going to it and fail, while its
+    // new traces go to the others.
+    sinks.get(0).failing = true;
+    int failed = 0;
+    for (UUID traceUUID : traces) {
+      try {
+        sink.send(createSpan(traceUUID));
+      } catch (IOException e) {
+        failed++;
+        assertEquals(0, ring.getNode(traceUUID));
+      }
+    }
+    assertEquals(sinks.get(0).traces.size(), failed);
+    final List<UUID> newTraces = new ArrayList<>();
+    for (int n = 0; n < 300; n++) {
+      final UUID traceUUID = UUID.randomUUID();
+      newTraces.add(traceUUID);
+      sink.send(createSpan(traceUUID));
+    }
+    assertTrue(sink.getShedTraces() > 0);
+
+    // The proxy is back, but the shed traces stay where they are.
+    sinks.get(0).failing = false;
+    final Set<UUID> before = new HashSet<>(sinks.get(0).traces);
+    for (UUID traceUUID : newTraces) {
+      sink.send(createSpan(traceUUID));
+    }
+    for (UUID traceUUID : sinks.get(0).traces) {
+      assertTrue(before.contains(traceUUID));
+    }
+  }
+}
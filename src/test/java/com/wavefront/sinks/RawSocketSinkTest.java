@@ -0,0 +1,127 @@
+package com.wavefront.sinks;
+
+import com.wavefront.datastructures.Span;
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RawSocketSinkTest {
+
+  private Span createSpan(int n) {
+    return new Span(" span \"" + n + "\" \u2211 \uD83D\uDE00 ", 1600000000000L + n, n,
+        "~local/host name", UUID.randomUUID(), UUID.randomUUID(),
+        List.of(UUID.randomUUID(), UUID.randomUUID()), List.of(UUID.randomUUID()),
+        List.of(new Pair<>("app lication", "value\n\"" + n + "\""),
+            new Pair<>("env", "dev \u2206")),
+        null);
+  }
+
+  @Test
+  public void testRenderingIsSameAsSdk() {
+    final SpanLineRenderer renderer = new SpanLineRenderer(4096);
+    final ByteBuffer buffer = ByteBuffer.allocate(4096);
+    for (int n = 0; n < 10; n++) {
+      final Span span = createSpan(n);
+      buffer.clear();
+      renderer.render(span);
+      renderer.copyTo(buffer);
+      assertEquals(span.toString(),
+          new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testTemplatedRenderingIsSameAsSdk() {
+    final SpanLineRenderer renderer = new SpanLineRenderer(4096);
+    final ByteBuffer buffer = ByteBuffer.allocate(4096);
+    for (int n = 0; n < 10; n++) {
+      final Span prototype = createSpan(n);
+      assert prototype.getTags() != null;
+      final List<Pair<String, String>> tags = new ArrayList<>();
+      prototype.getTags().forEach(tag -> tags.add(SpanLineRenderer.tagOf(tag._1, tag._2)));
+      tags.add(new Pair<>("plain", "tag " + n));
+      final Span span = new Span(prototype.getName(), prototype.getStartMillis(),
+          prototype.getDuration(), prototype.getSource(), UUID.randomUUID(), UUID.randomUUID(),
+          new ArrayList<>(List.of(UUID.randomUUID(), UUID.randomUUID())),
+          List.of(UUID.randomUUID()), tags, null);
+      span.setLineTemplate(SpanLineRenderer.templateOf(prototype));
+      assertTrue(span.getLineTemplate().isTemplateOf(span));
+      buffer.clear();
+      renderer.render(span);
+      renderer.copyTo(buffer);
+      assertEquals(span.toString(),
+          new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+
+      // Template of another span shape isn't used.
+      span.addParent(prototype);
+      assertFalse(span.getLineTemplate().isTemplateOf(span));
+      buffer.clear();
+      renderer.render(span);
+      renderer.copyTo(buffer);
+      assertEquals(span.toString(),
+          new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBlankTagIsNotRendered() {
+    final Span span = createSpan(0);
+    span.setLineTemplate(SpanLineRenderer.templateOf(span));
+    new SpanLineRenderer(4096).render(new Span(span.getName(), 0, 0, span.getSource(),
+        UUID.randomUUID(), UUID.randomUUID(), span.getParents(), span.getFollowsFrom(),
+        List.of(SpanLineRenderer.tagOf("blank", " ")), null));
+  }
+
+  @Test
+  public void testTooLongLineIsNotRendered() {
+    assertEquals(-1, new SpanLineRenderer(100).render(createSpan(0)));
+  }
+
+  @Test
+  public void testSpansAreWrittenToSocket() throws Exception {
+    final int count = 1000;
+    final List<String> expected = new ArrayList<>();
+    try (ServerSocket server = new ServerSocket(0)) {
+      final CompletableFuture<List<String>> received = CompletableFuture.supplyAsync(() -> {
+        final List<String> lines = new ArrayList<>();
+        try (Socket socket = server.accept();
+             BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            lines.add(line + "\n");
+          }
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        return lines;
+      });
+
+      // Small flush size makes the sink go through all of its buffers many times.
+      final RawSocketSink sink = new RawSocketSink("localhost", server.getLocalPort(), 1000);
+      for (int n = 0; n < count; n++) {
+        final Span span = createSpan(n);
+        expected.add(span.toString());
+        sink.send(span);
+      }
+      sink.close();
+      assertEquals(expected, received.get(10, TimeUnit.SECONDS));
+    }
+  }
+}
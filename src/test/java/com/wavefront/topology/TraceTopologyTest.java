@@ -0,0 +1,154 @@
+package com.wavefront.topology;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wavefront.DataQueue;
+import com.wavefront.config.GeneratorConfig;
+import com.wavefront.datastructures.Span;
+import com.wavefront.datastructures.StatSpan;
+import com.wavefront.datastructures.Trace;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.wavefront.helpers.Defaults.SERVICE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceTopologyTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+  private GeneratorConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    config = createConfig(new File(Objects.requireNonNull(getClass().getClassLoader().
+        getResource("topologyForTest.json")).toURI()));
+  }
+
+  private static GeneratorConfig createConfig(File file) throws Exception {
+    final GeneratorConfig config = new GeneratorConfig();
+    JCommander.newBuilder().addObject(config).build().parse("-f", file.toString(), "--seed",
+        "42");
+    config.initPropertiesFromFile();
+    config.initMissingPropertiesWithDefaults();
+    return config;
+  }
+
+  private static String getService(Span span) {
+    assert span.getTags() != null;
+    return span.getTags().stream().filter(tag -> tag._1.equals(SERVICE)).findFirst().
+        orElseThrow()._2;
+  }
+
+  @Test
+  public void testCompiledTopologyFollowsConnections() {
+    final TraceTopology topology = config.getTraceTopology();
+    final CompiledTopology compiled = topology.getCompiledTopology();
+    final Random random = new Random(1);
+
+    assertTrue(topology.isParent("laundry", "overnight"));
+    assertTrue(topology.isParent("ranking", "barter"));
+    assertFalse(topology.isParent("overnight", "laundry"));
+    assertFalse(topology.isParent("unknown", "overnight"));
+    assertEquals(CompiledTopology.NO_SERVICE, compiled.getServiceId("unknown"));
+
+    for (int n = 0; n < 100; n++) {
+      assertTrue(Set.of("order", "request").contains(
+          compiled.getServiceName(compiled.getRandomRootService(random))));
+    }
+    for (int service = 0; service < compiled.getServicesCount(); service++) {
+      assertEquals(service, compiled.getServiceId(compiled.getServiceName(service)));
+      final int child = compiled.getNextLevelService(new int[]{service}, 1, random);
+      if (child == CompiledTopology.NO_SERVICE) {
+        // Only leaves have no children.
+        for (int other = 0; other < compiled.getServicesCount(); other++) {
+          assertFalse(compiled.isParent(other, service));
+        }
+      } else {
+        assertTrue(compiled.isParent(child, service));
+      }
+    }
+
+    final int leaf = compiled.getServiceId("ranking");
+    final int overnight = compiled.getServiceId("overnight");
+    for (int n = 0; n < 100; n++) {
+      assertNotEquals(CompiledTopology.NO_SERVICE,
+          compiled.getNextLevelService(new int[]{leaf, overnight}, 2, random));
+    }
+  }
+
+  @Test
+  public void testGeneratedSpansFollowConnections() {
+    assertGeneratedSpansFollowConnections(config, 40);
+  }
+
+  @Test(timeout = 60_000)
+  public void testTracesTooShortForTheirDepthAreGeneratedWithSeed() throws Exception {
+    final ObjectMapper mapper = new ObjectMapper();
+    final ObjectNode topology;
+    try (InputStream input = getClass().getClassLoader().getResourceAsStream(
+        "topologyForTest.json")) {
+      topology = (ObjectNode) mapper.readTree(input);
+    }
+    topology.put("totalTraceCount", 100);
+    for (JsonNode traceType : topology.path("traceTopology").path("traceTypes")) {
+      for (JsonNode duration : traceType.path("traceDurations")) {
+        ((ObjectNode) duration).put("startValue", 2);
+        ((ObjectNode) duration).put("endValue", 4);
+      }
+    }
+    final File file = folder.newFile("shortTopology.json");
+    mapper.writeValue(file, topology);
+    assertGeneratedSpansFollowConnections(createConfig(file), 100);
+  }
+
+  private static void assertGeneratedSpansFollowConnections(GeneratorConfig config,
+                                                            int traceCount) {
+    final TraceTopology topology = config.getTraceTopology();
+    final DataQueue dataQueue = new DataQueue(true);
+    config.getGenerator(dataQueue).generateForFile();
+
+    int traces = 0;
+    Trace trace;
+    while ((trace = dataQueue.pollFirstTrace()) != null) {
+      if (trace.getSpans().get(0).get(0) instanceof StatSpan) {
+        continue;
+      }
+      traces++;
+      final Map<UUID, Span> spans = new HashMap<>();
+      trace.getSpans().forEach(level -> level.forEach(span -> spans.put(span.getSpanUUID(),
+          span)));
+      for (int n = 1; n < trace.getSpans().size(); n++) {
+        for (Span span : trace.getSpans().get(n)) {
+          final List<UUID> parents = span.getParents();
+          assert parents != null;
+          final Span parent = spans.get(parents.get(0));
+          assertTrue(trace.getSpans().get(n - 1).contains(parent));
+          assertTrue(topology.isParent(getService(span), getService(parent)));
+          assertTrue(span.getDuration() > 0);
+          assertTrue(span.getStartMillis() >= parent.getStartMillis());
+          assertTrue(span.getStartMillis() + span.getDuration() <=
+              parent.getStartMillis() + Math.max(1, parent.getDuration()));
+        }
+      }
+    }
+    assertEquals(traceCount, traces);
+  }
+}